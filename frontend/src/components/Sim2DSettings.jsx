@@ -67,6 +67,19 @@ const Sim2DSettings = () => {
     return Object.keys(newErrors).length === 0;
   };
 
+  const waitForResult = async (jobId) => {
+    for (;;) {
+      await new Promise(resolve => setTimeout(resolve, 1000));
+      const response = await fetch(`${API_URL}/api/simulate2d/${jobId}/result`);
+      if (response.status === 200) {
+        return response.json();
+      }
+      if (response.status !== 202) {
+        return null;
+      }
+    }
+  };
+
   const handleSubmit = async (e) => {
     e.preventDefault();
 
@@ -90,9 +103,15 @@ const Sim2DSettings = () => {
         },
         body: JSON.stringify(payload)
       });
+      if (!response.ok) {
+        throw new Error('Simulation failed');
+      }
+
+      // The backend queues the run and returns a job; poll until it finishes
+      const job = await response.json();
+      const result = await waitForResult(job.jobId);
 
-      if (response.ok) {
-        const result = await response.json();
+      if (result) {
 
         // Flatten the response for SimulationResults component and fix image path
         // The backend returns a relative path like "/output/sim2d/result.png"
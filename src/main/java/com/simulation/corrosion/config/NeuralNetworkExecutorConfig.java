@@ -0,0 +1,56 @@
+package com.simulation.corrosion.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for neural network training and test jobs and parameter sweeps.
+ */
+@Configuration
+public class NeuralNetworkExecutorConfig {
+
+    /**
+     * Runs neural network jobs, each in its own workspace. Bounded in both
+     * threads and queued jobs; a job submitted while the queue is full is
+     * rejected.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService nnetExecutor(
+            @Value("${app.nnet.max-concurrent-jobs:2}") int maxConcurrentJobs,
+            @Value("${app.nnet.queue-capacity:16}") int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threads = r -> {
+            Thread t = new Thread(r, "nnet-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        return new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threads, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Work-stealing pool the candidates of parameter sweeps train on;
+     * {@code 0} uses one worker per available processor. Mini-batch training
+     * splits its batches across the same pool.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool nnetSweepPool(@Value("${app.nnet.sweep.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Virtual threads that send sweep events to the clients following them. */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService nnetStreamExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
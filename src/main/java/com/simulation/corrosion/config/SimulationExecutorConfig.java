@@ -0,0 +1,54 @@
+package com.simulation.corrosion.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors used by the asynchronous 2D simulation jobs.
+ */
+@Configuration
+public class SimulationExecutorConfig {
+
+    /**
+     * Runs simulation jobs. Bounded in both threads and queued jobs; a job
+     * submitted while the queue is full is rejected.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService simulationExecutor(
+            @Value("${app.simulation.max-concurrent-jobs:2}") int maxConcurrentJobs,
+            @Value("${app.simulation.queue-capacity:16}") int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threads = r -> {
+            Thread t = new Thread(r, "simulation-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        return new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threads, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Pool the CA steps of running jobs are split across; {@code 0} uses one
+     * worker per available processor.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool simulationStepPool(@Value("${app.simulation.step-parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Virtual threads for writing simulation output files. */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService simulationIoExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
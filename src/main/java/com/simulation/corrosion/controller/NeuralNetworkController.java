@@ -2,21 +2,30 @@ package com.simulation.corrosion.controller;
 
 import com.simulation.corrosion.dto.NeuralNetworkRequestDTO;
 import com.simulation.corrosion.dto.NeuralNetworkResponseDTO;
+import com.simulation.corrosion.dto.NeuralNetworkSweepDTO;
+import com.simulation.corrosion.dto.NeuralNetworkSweepRequestDTO;
 import com.simulation.corrosion.service.NeuralNetworkService;
+import com.simulation.corrosion.service.NeuralNetworkSweepJob;
+import com.simulation.corrosion.service.NeuralNetworkSweepService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Modern REST controller for neural network operations
@@ -28,9 +37,12 @@ import java.util.Map;
 public class NeuralNetworkController {
 
     private final NeuralNetworkService neuralNetworkService;
+    private final NeuralNetworkSweepService sweepService;
 
-    public NeuralNetworkController(@Qualifier("modernNeuralNetworkService") NeuralNetworkService neuralNetworkService) {
+    public NeuralNetworkController(@Qualifier("modernNeuralNetworkService") NeuralNetworkService neuralNetworkService,
+                                   NeuralNetworkSweepService sweepService) {
         this.neuralNetworkService = neuralNetworkService;
+        this.sweepService = sweepService;
     }
 
     @PostMapping(value = "/train", consumes = "multipart/form-data")
@@ -45,7 +57,9 @@ public class NeuralNetworkController {
             @RequestParam("noTestData") String noTestData,
             @RequestParam("serverPath") String serverPath,
             @RequestParam("trainFileName") String trainFileName,
-            @RequestParam(value = "trainFile", required = false) MultipartFile trainFile) {
+            @RequestParam(value = "trainFile", required = false) MultipartFile trainFile,
+            @RequestParam(value = "batchSize", required = false) String batchSize,
+            @RequestParam(value = "textWeights", required = false) String textWeights) {
         try {
             NeuralNetworkRequestDTO request = new NeuralNetworkRequestDTO();
             request.setInNodes(inNodes);
@@ -57,12 +71,17 @@ public class NeuralNetworkController {
             request.setNoTestData(noTestData);
             request.setServerPath(serverPath);
             request.setTrainFileName(trainFileName);
+            request.setBatchSize(batchSize);
+            request.setTextWeights(textWeights);
             NeuralNetworkResponseDTO response = neuralNetworkService.trainNetwork(request, trainFile);
             if (response.isSuccess()) {
                 return ResponseEntity.ok(response);
             } else {
                 return ResponseEntity.badRequest().body(response);
             }
+        } catch (RejectedExecutionException e) {
+            // Too many queued jobs; answered with 503 by the global handler
+            throw e;
         } catch (Exception e) {
             NeuralNetworkResponseDTO errorResponse = new NeuralNetworkResponseDTO(
                 e.getMessage(), false, "failed"
@@ -83,7 +102,8 @@ public class NeuralNetworkController {
             @RequestParam("noTestData") String noTestData,
             @RequestParam("serverPath") String serverPath,
             @RequestParam("testFileName") String testFileName,
-            @RequestParam(value = "testFile", required = false) MultipartFile testFile) {
+            @RequestParam(value = "testFile", required = false) MultipartFile testFile,
+            @RequestParam(value = "modelId", required = false) String modelId) {
         try {
             NeuralNetworkRequestDTO request = new NeuralNetworkRequestDTO();
             request.setInNodes(inNodes);
@@ -95,6 +115,7 @@ public class NeuralNetworkController {
             request.setNoTestData(noTestData);
             request.setServerPath(serverPath);
             request.setTestFileName(testFileName);
+            request.setModelId(modelId);
             NeuralNetworkResponseDTO response = neuralNetworkService.testNetwork(request, testFile);
             if (response.isSuccess()) {
                 return ResponseEntity.ok(response);
@@ -109,6 +130,78 @@ public class NeuralNetworkController {
         }
     }
 
+    @PostMapping(value = "/test/stream", consumes = "multipart/form-data")
+    @Operation(summary = "Test neural network as NDJSON",
+            description = "The predictions of /test, one JSON object per row as they are computed, then a summary")
+    public ResponseEntity<ResponseBodyEmitter> streamTestNetwork(
+            @RequestParam("inNodes") String inNodes,
+            @RequestParam("outNodes") String outNodes,
+            @RequestParam("noLayers") String noLayers,
+            @RequestParam("noFirstLayer") String noFirstLayer,
+            @RequestParam("noSecLayer") String noSecLayer,
+            @RequestParam("noTrainData") String noTrainData,
+            @RequestParam("noTestData") String noTestData,
+            @RequestParam("serverPath") String serverPath,
+            @RequestParam("testFileName") String testFileName,
+            @RequestParam(value = "testFile", required = false) MultipartFile testFile,
+            @RequestParam(value = "modelId", required = false) String modelId) throws IOException {
+        NeuralNetworkRequestDTO request = new NeuralNetworkRequestDTO();
+        request.setInNodes(inNodes);
+        request.setOutNodes(outNodes);
+        request.setNoLayers(noLayers);
+        request.setNoFirstLayer(noFirstLayer);
+        request.setNoSecLayer(noSecLayer);
+        request.setNoTrainData(noTrainData);
+        request.setNoTestData(noTestData);
+        request.setServerPath(serverPath);
+        request.setTestFileName(testFileName);
+        request.setModelId(modelId);
+        ResponseBodyEmitter emitter = neuralNetworkService.streamTestNetwork(request, testFile);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(emitter);
+    }
+
+    @PostMapping("/sweep")
+    @Operation(summary = "Start a hyperparameter sweep",
+            description = "Train one network per candidate setting concurrently and rank them by training error")
+    public ResponseEntity<NeuralNetworkSweepDTO> startSweep(@RequestBody NeuralNetworkSweepRequestDTO request)
+            throws IOException {
+        NeuralNetworkSweepJob sweep = sweepService.submit(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(sweep.toDTO());
+    }
+
+    @GetMapping("/sweep/{sweepId}")
+    @Operation(summary = "Get sweep status", description = "Progress of a sweep and its leaderboard so far")
+    public ResponseEntity<NeuralNetworkSweepDTO> getSweep(@PathVariable String sweepId) {
+        NeuralNetworkSweepJob sweep = sweepService.getSweep(sweepId);
+        return sweep == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(sweep.toDTO());
+    }
+
+    @GetMapping(value = "/sweep/{sweepId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Follow a sweep", description = "Error curves, finished candidates and the final leaderboard as SSE")
+    public ResponseEntity<SseEmitter> streamSweepEvents(@PathVariable String sweepId) {
+        SseEmitter emitter = sweepService.streamEvents(sweepId);
+        return emitter == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(emitter);
+    }
+
+    @GetMapping(value = "/sweep/{sweepId}/stream", produces = "application/x-ndjson")
+    @Operation(summary = "Follow a sweep as NDJSON", description = "The events of /events, one JSON object per line")
+    public ResponseEntity<ResponseBodyEmitter> streamSweepNdjson(@PathVariable String sweepId) {
+        ResponseBodyEmitter emitter = sweepService.streamNdjson(sweepId);
+        if (emitter == null)
+            return ResponseEntity.notFound().build();
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(emitter);
+    }
+
+    @DeleteMapping("/sweep/{sweepId}")
+    @Operation(summary = "Cancel a sweep", description = "Skip queued candidates and stop running ones")
+    public ResponseEntity<NeuralNetworkSweepDTO> cancelSweep(@PathVariable String sweepId) {
+        NeuralNetworkSweepJob sweep = sweepService.getSweep(sweepId);
+        if (sweep == null)
+            return ResponseEntity.notFound().build();
+        sweepService.cancel(sweepId);
+        return ResponseEntity.ok(sweep.toDTO());
+    }
+
     @GetMapping("/status")
     @Operation(summary = "Get network status", description = "Get the current status of the neural network")
     public ResponseEntity<Map<String, Object>> getNetworkStatus() {
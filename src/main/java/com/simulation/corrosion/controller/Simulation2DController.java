@@ -1,10 +1,17 @@
 package com.simulation.corrosion.controller;
 
+import com.simulation.corrosion.dto.Simulation2DJobDTO;
 import com.simulation.corrosion.dto.Simulation2DRequestDTO;
 import com.simulation.corrosion.dto.Simulation2DResponseDTO;
+import com.simulation.corrosion.service.Simulation2DJob;
 import com.simulation.corrosion.service.Simulation2DService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/simulate2d")
@@ -13,7 +20,52 @@ public class Simulation2DController {
     private Simulation2DService simulation2DService;
 
     @PostMapping
-    public Simulation2DResponseDTO runSimulation(@RequestBody Simulation2DRequestDTO request) {
-        return simulation2DService.runSimulation(request);
+    public ResponseEntity<Simulation2DJobDTO> runSimulation(@RequestBody Simulation2DRequestDTO request) {
+        Simulation2DJob job = simulation2DService.submit(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toDTO());
     }
-} 
\ No newline at end of file
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Simulation2DJobDTO> getStatus(@PathVariable String jobId) {
+        Simulation2DJob job = simulation2DService.getJob(jobId);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job.toDTO());
+    }
+
+    @GetMapping("/{jobId}/result")
+    public ResponseEntity<?> getResult(@PathVariable String jobId) {
+        Simulation2DJob job = simulation2DService.getJob(jobId);
+        if (job == null)
+            return ResponseEntity.notFound().build();
+        Simulation2DResponseDTO result = job.getResult();
+        if (result != null)
+            return ResponseEntity.ok(result);
+        // Still running: 202 with the status; failed or cancelled: 409
+        HttpStatus status = job.isFinished() ? HttpStatus.CONFLICT : HttpStatus.ACCEPTED;
+        return ResponseEntity.status(status).body(job.toDTO());
+    }
+
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEvents(@PathVariable String jobId,
+                                                   @RequestParam(defaultValue = "false") boolean frames) {
+        SseEmitter emitter = simulation2DService.streamEvents(jobId, frames);
+        return emitter == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(emitter);
+    }
+
+    @GetMapping(value = "/{jobId}/stream", produces = "application/x-ndjson")
+    public ResponseEntity<ResponseBodyEmitter> streamNdjson(@PathVariable String jobId,
+                                                            @RequestParam(defaultValue = "false") boolean frames) {
+        ResponseBodyEmitter emitter = simulation2DService.streamNdjson(jobId, frames);
+        if (emitter == null)
+            return ResponseEntity.notFound().build();
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(emitter);
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Simulation2DJobDTO> cancel(@PathVariable String jobId) {
+        Simulation2DJob job = simulation2DService.getJob(jobId);
+        if (job == null)
+            return ResponseEntity.notFound().build();
+        simulation2DService.cancel(jobId);
+        return ResponseEntity.ok(job.toDTO());
+    }
+}
@@ -40,4 +40,13 @@ public class NeuralNetworkRequestDTO {
     // Additional fields for file uploads
     private String trainFileName;
     private String testFileName;
+
+    // Samples per weight update when training; online training if empty
+    private String batchSize;
+
+    // "true" to also write the weights as text (WFile.txt, WtFile.txt)
+    private String textWeights;
+
+    // Trained model to test against; the latest one for the topology if empty
+    private String modelId;
 } 
\ No newline at end of file
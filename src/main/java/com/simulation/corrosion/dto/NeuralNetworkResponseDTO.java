@@ -19,6 +19,7 @@ public class NeuralNetworkResponseDTO {
     private String resultsFile;
     private String weightsFile;
     private String errorFile;
+    private String modelId;
 
     private Map<String, Object> trainingResults;
     private Map<String, Object> testingResults;
@@ -0,0 +1,47 @@
+package com.simulation.corrosion.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One candidate setting of a sweep and how its training went. The error is
+ * the largest per-sample error of an epoch, as written to {@code EFile.txt}.
+ */
+@Data
+@NoArgsConstructor
+public class NeuralNetworkSweepCandidateDTO {
+
+    private int candidate;
+    // Position on the leaderboard once finished, 1 being the lowest error
+    private Integer rank;
+    private double eta;
+    private double alpha;
+    private int hiddenNodes;
+    private int epochs;
+
+    private String status;
+    private int epochsRun;
+    private Integer bestEpoch;
+    private Float bestError;
+    private Float lastError;
+    private Long durationMs;
+    private String error;
+
+    public NeuralNetworkSweepCandidateDTO copy() {
+        NeuralNetworkSweepCandidateDTO c = new NeuralNetworkSweepCandidateDTO();
+        c.candidate = candidate;
+        c.rank = rank;
+        c.eta = eta;
+        c.alpha = alpha;
+        c.hiddenNodes = hiddenNodes;
+        c.epochs = epochs;
+        c.status = status;
+        c.epochsRun = epochsRun;
+        c.bestEpoch = bestEpoch;
+        c.bestError = bestError;
+        c.lastError = lastError;
+        c.durationMs = durationMs;
+        c.error = error;
+        return c;
+    }
+}
@@ -0,0 +1,23 @@
+package com.simulation.corrosion.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Status of a hyperparameter sweep. The leaderboard lists finished
+ * candidates by their best error, then failed ones, then those still to go.
+ */
+@Data
+@NoArgsConstructor
+public class NeuralNetworkSweepDTO {
+
+    private String sweepId;
+    private String status;
+    private String message;
+    private String strategy;
+    private int totalCandidates;
+    private int finishedCandidates;
+    private List<NeuralNetworkSweepCandidateDTO> leaderboard;
+}
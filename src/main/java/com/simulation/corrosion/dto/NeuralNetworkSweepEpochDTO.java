@@ -0,0 +1,24 @@
+package com.simulation.corrosion.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One point of a sweep candidate's error curve: an {@code EFile.txt} line.
+ */
+@Data
+@NoArgsConstructor
+public class NeuralNetworkSweepEpochDTO {
+
+    private int candidate;
+    private int epoch;
+    private float error;
+    /** Epoch events this client missed because it fell behind. */
+    private long dropped;
+
+    public NeuralNetworkSweepEpochDTO(int candidate, int epoch, float error) {
+        this.candidate = candidate;
+        this.epoch = epoch;
+        this.error = error;
+    }
+}
@@ -0,0 +1,51 @@
+package com.simulation.corrosion.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for a hyperparameter sweep over the backpropagation network. The
+ * network is trained on the uploaded (or bundled) training data once per
+ * candidate setting.
+ * <p>
+ * With the {@code grid} strategy every combination of the listed values is
+ * a candidate. With {@code random}, {@code samples} candidates are drawn:
+ * eta and alpha uniformly between the smallest and largest listed value,
+ * hidden nodes and epochs from the lists.
+ */
+@Data
+@NoArgsConstructor
+public class NeuralNetworkSweepRequestDTO {
+
+    private Integer inNodes;
+    private Integer outNodes;
+    // 3 if empty
+    private Integer noLayers;
+    private Integer noTrainData;
+
+    // Samples per weight update; online training if empty
+    private Integer batchSize;
+
+    // "grid" (default) or "random"
+    private String strategy;
+
+    // Learning rates; the legacy 0.57861 if empty
+    private List<Double> etas;
+
+    // Momentum factors; the legacy 0.7506 if empty
+    private List<Double> alphas;
+
+    // First hidden layer sizes; required
+    private List<Integer> hiddenNodes;
+
+    // Epoch limits; the legacy 500 if empty
+    private List<Integer> epochs;
+
+    // Candidates drawn by the random strategy
+    private Integer samples;
+
+    // Seed for the random strategy, so a sweep can be repeated
+    private Long seed;
+}
@@ -0,0 +1,57 @@
+package com.simulation.corrosion.dto;
+
+/**
+ * Statistics for one completed iteration of a 2D simulation job, as pushed
+ * to streaming clients.
+ */
+public class Simulation2DIterationDTO {
+    private String jobId;
+    private int iteration;
+    private int totalIterations;
+    private String stat2D;
+    private String wavelet2D;
+    private String events;
+    private double corrosionPercentage;
+    private float maxDepth;
+    private int[][] frame;
+    private long dropped;
+
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+    public int getIteration() { return iteration; }
+    public void setIteration(int iteration) { this.iteration = iteration; }
+    public int getTotalIterations() { return totalIterations; }
+    public void setTotalIterations(int totalIterations) { this.totalIterations = totalIterations; }
+    public String getStat2D() { return stat2D; }
+    public void setStat2D(String stat2D) { this.stat2D = stat2D; }
+    public String getWavelet2D() { return wavelet2D; }
+    public void setWavelet2D(String wavelet2D) { this.wavelet2D = wavelet2D; }
+    public String getEvents() { return events; }
+    public void setEvents(String events) { this.events = events; }
+    public double getCorrosionPercentage() { return corrosionPercentage; }
+    public void setCorrosionPercentage(double corrosionPercentage) { this.corrosionPercentage = corrosionPercentage; }
+    public float getMaxDepth() { return maxDepth; }
+    public void setMaxDepth(float maxDepth) { this.maxDepth = maxDepth; }
+    /** Downsampled lattice, the deepest cell of each block clamped to 0-255; null unless requested. */
+    public int[][] getFrame() { return frame; }
+    public void setFrame(int[][] frame) { this.frame = frame; }
+    /** Iteration events this client missed because it fell behind. */
+    public long getDropped() { return dropped; }
+    public void setDropped(long dropped) { this.dropped = dropped; }
+
+    /** Shallow copy, so one computed event can be sent with or without its frame. */
+    public Simulation2DIterationDTO copy() {
+        Simulation2DIterationDTO c = new Simulation2DIterationDTO();
+        c.jobId = jobId;
+        c.iteration = iteration;
+        c.totalIterations = totalIterations;
+        c.stat2D = stat2D;
+        c.wavelet2D = wavelet2D;
+        c.events = events;
+        c.corrosionPercentage = corrosionPercentage;
+        c.maxDepth = maxDepth;
+        c.frame = frame;
+        c.dropped = dropped;
+        return c;
+    }
+}
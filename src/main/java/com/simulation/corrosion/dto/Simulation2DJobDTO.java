@@ -0,0 +1,23 @@
+package com.simulation.corrosion.dto;
+
+/**
+ * Status of an asynchronous 2D simulation job.
+ */
+public class Simulation2DJobDTO {
+    private String jobId;
+    private String status;
+    private int iteration;
+    private int totalIterations;
+    private String message;
+
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public int getIteration() { return iteration; }
+    public void setIteration(int iteration) { this.iteration = iteration; }
+    public int getTotalIterations() { return totalIterations; }
+    public void setTotalIterations(int totalIterations) { this.totalIterations = totalIterations; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -17,6 +17,14 @@ public class Simulation2DRequestDTO {
     private int pitSpacing;
     private int pitSize;
 
+    // Optional seed for reproducible runs
+    private Long seed;
+
+    // Engine options; blank names fall back to the defaults
+    private String gridBackend;
+    private String rateMode;
+    private boolean sparse;
+
     // Getters and setters
     public int getNoRows() {
         return noRows;
@@ -121,4 +129,36 @@ public class Simulation2DRequestDTO {
     public void setPitSize(int pitSize) {
         this.pitSize = pitSize;
     }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    public String getGridBackend() {
+        return gridBackend;
+    }
+
+    public void setGridBackend(String gridBackend) {
+        this.gridBackend = gridBackend;
+    }
+
+    public String getRateMode() {
+        return rateMode;
+    }
+
+    public void setRateMode(String rateMode) {
+        this.rateMode = rateMode;
+    }
+
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    public void setSparse(boolean sparse) {
+        this.sparse = sparse;
+    }
 }
\ No newline at end of file
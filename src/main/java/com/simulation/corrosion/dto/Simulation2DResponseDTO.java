@@ -5,6 +5,7 @@ import java.util.Map;
 public class Simulation2DResponseDTO {
     private boolean success;
     private String message;
+    private String jobId;
     private String processedImagePath;
     private Map<String, Object> stats;
     private Double pitSize;
@@ -15,6 +16,8 @@ public class Simulation2DResponseDTO {
     public void setSuccess(boolean success) { this.success = success; }
     public String getMessage() { return message; }
     public void setMessage(String message) { this.message = message; }
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
     public String getProcessedImagePath() { return processedImagePath; }
     public void setProcessedImagePath(String processedImagePath) { this.processedImagePath = processedImagePath; }
     public Map<String, Object> getStats() { return stats; }
@@ -0,0 +1,83 @@
+package com.simulation.corrosion.service;
+
+import com.simulation.legacy.sim.NnetModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Trained networks kept in memory for inference, keyed by topology and the
+ * training run that produced them. The least recently used model is
+ * evicted once more than {@code app.nnet.model-cache-size} are held.
+ */
+@Component
+public class NeuralNetworkModelRegistry {
+
+    /** Layer sizes of a network, as given by {@link NnetModel#topology}. */
+    public record Topology(int[] units) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Topology t && Arrays.equals(units, t.units);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(units);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(units);
+        }
+    }
+
+    /** One training run's model. */
+    public record Run(String id, NnetModel model) {
+    }
+
+    private record Key(Topology topology, String runId) {
+    }
+
+    private final int capacity;
+    private final Map<Key, NnetModel> models;
+    private final Map<Topology, String> latest = new HashMap<>();
+
+    public NeuralNetworkModelRegistry(@Value("${app.nnet.model-cache-size:8}") int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.models = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, NnetModel> eldest) {
+                return size() > NeuralNetworkModelRegistry.this.capacity;
+            }
+        };
+    }
+
+    /** Adds a freshly trained model and makes it the latest for its topology. */
+    public synchronized Run register(Topology topology, NnetModel model) {
+        String runId = UUID.randomUUID().toString();
+        models.put(new Key(topology, runId), model);
+        latest.put(topology, runId);
+        return new Run(runId, model);
+    }
+
+    /** The model of the given run, or null if it was never trained here or has been evicted. */
+    public synchronized NnetModel get(Topology topology, String runId) {
+        return models.get(new Key(topology, runId));
+    }
+
+    /** The most recent model trained for {@code topology}, or null if there is none or it was evicted. */
+    public synchronized Run latest(Topology topology) {
+        String runId = latest.get(topology);
+        NnetModel model = runId == null ? null : models.get(new Key(topology, runId));
+        return model == null ? null : new Run(runId, model);
+    }
+
+    public synchronized int size() {
+        return models.size();
+    }
+}
@@ -2,20 +2,36 @@ package com.simulation.corrosion.service;
 
 import com.simulation.corrosion.dto.NeuralNetworkRequestDTO;
 import com.simulation.corrosion.dto.NeuralNetworkResponseDTO;
+import com.simulation.legacy.sim.NnetModel;
 import com.simulation.legacy.sim.nnet;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
 
 /**
  * Modern Spring Boot service for neural network operations
@@ -24,12 +40,40 @@ import java.util.stream.Collectors;
 @Service("modernNeuralNetworkService")
 public class NeuralNetworkService {
 
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /** Prediction records written to a test stream per send. */
+    private static final int STREAM_CHUNK_ROWS = 256;
+
     @Value("${app.upload.path:output/upload}")
     private String uploadPath;
 
     @Value("${app.output.path:output/nnet_sia}")
     private String outputPath;
 
+    @Value("${app.nnet.work-path:output/nnet_jobs}")
+    private String workPath = "output/nnet_jobs";
+
+    @Value("${app.nnet.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs = 1800000L;
+
+    private final ExecutorService nnetExecutor;
+
+    private final ExecutorService nnetStreamExecutor;
+
+    private final NeuralNetworkModelRegistry modelRegistry;
+
+    /** Guards the shared output and upload files while a job publishes or reads them. */
+    private final Object publishLock = new Object();
+
+    public NeuralNetworkService(@Qualifier("nnetExecutor") ExecutorService nnetExecutor,
+            @Qualifier("nnetStreamExecutor") ExecutorService nnetStreamExecutor,
+            NeuralNetworkModelRegistry modelRegistry) {
+        this.nnetExecutor = nnetExecutor;
+        this.nnetStreamExecutor = nnetStreamExecutor;
+        this.modelRegistry = modelRegistry;
+    }
+
     /**
      * Train the neural network with the given parameters
      */
@@ -40,54 +84,70 @@ public class NeuralNetworkService {
             validateRequest(request);
             createDirectories();
 
-            String fileName = "traindata.txt";
-            if (trainFile != null && !trainFile.isEmpty()) {
-                fileName = StringUtils.hasText(request.getTrainFileName()) ? request.getTrainFileName()
-                        : "traindata.txt";
-                Path filePath = Paths.get(uploadPath, fileName);
-                trainFile.transferTo(filePath);
-                preprocessDataFile(filePath, Integer.parseInt(request.getInNodes()),
-                        Integer.parseInt(request.getOutNodes()));
-            } else {
-                // Check if default file exists if none provided
-                Path filePath = Paths.get(uploadPath, fileName);
-                if (!Files.exists(filePath)) {
-                    // Try to copy from resources if available
-                    try {
-                        File resourceFile = new ClassPathResource("legacy-resources/sim/traindata.txt").getFile();
-                        if (resourceFile.exists()) {
-                            Files.copy(resourceFile.toPath(), filePath);
+            Path workspace = createWorkspace();
+            try {
+                String fileName = "traindata.txt";
+                Path input = workspace.resolve("upload").resolve("traindata.txt");
+                boolean uploaded = trainFile != null && !trainFile.isEmpty();
+                if (uploaded) {
+                    fileName = StringUtils.hasText(request.getTrainFileName()) ? request.getTrainFileName()
+                            : "traindata.txt";
+                    trainFile.transferTo(input);
+                    preprocessDataFile(input, Integer.parseInt(request.getInNodes()),
+                            Integer.parseInt(request.getOutNodes()));
+                } else {
+                    // Check if default file exists if none provided
+                    Path filePath = Paths.get(uploadPath, fileName);
+                    if (!Files.exists(filePath)) {
+                        // Try to copy from resources if available
+                        try {
+                            File resourceFile = new ClassPathResource("legacy-resources/sim/traindata.txt").getFile();
+                            if (resourceFile.exists()) {
+                                Files.copy(resourceFile.toPath(), filePath);
+                            }
+                        } catch (Exception ignored) {
                         }
-                    } catch (Exception ignored) {
                     }
+                    copyIfExists(filePath, input);
                 }
-            }
+                copyIfExists(Paths.get(uploadPath, "testdata.txt"), workspace.resolve("upload").resolve("testdata.txt"));
 
-            String[] args = {
-                    request.getInNodes(),
-                    request.getOutNodes(),
-                    request.getNoLayers(),
-                    request.getNoFirstLayer(),
-                    request.getNoSecLayer(),
-                    request.getNoTrainData(),
-                    request.getNoTestData(),
-                    "train",
-                    getServerPath()
-            };
+                runJob(buildArgs(request, "train", workspace));
+                NeuralNetworkModelRegistry.Topology topology = topology(request);
+                NnetModel model = NnetModel.loadBinary(workspace.resolve("nnet_sia").resolve("WFile.bin"),
+                        topology.units());
 
-            nnet.runNeuralNetwork(args);
+                // Parse Training Results while the error file is still in the workspace
+                parseTrainingMetrics(response, workspace.resolve("nnet_sia"));
 
-            response.setSuccess(true);
-            response.setMessage("Training completed successfully");
-            response.setStatus("trained");
-            response.setOutputPath(outputPath);
-            response.setInNodes(Integer.parseInt(request.getInNodes()));
-            response.setOutNodes(Integer.parseInt(request.getOutNodes()));
-            response.setNoLayers(Integer.parseInt(request.getNoLayers()));
+                synchronized (publishLock) {
+                    if (!textWeights(request)) {
+                        // Text weights of an earlier run would not match the new WFile.bin
+                        Files.deleteIfExists(Paths.get(outputPath, "WFile.txt"));
+                        Files.deleteIfExists(Paths.get(outputPath, "WtFile.txt"));
+                    }
+                    publish(workspace, "EFile.txt", "WFile.bin", "WFile.txt", "WtFile.txt");
+                    response.setModelId(modelRegistry.register(topology, model).id());
+                    // Training clears the previous test results, as it always has
+                    Files.deleteIfExists(Paths.get(outputPath, "results.txt"));
+                    if (uploaded) {
+                        Files.copy(input, Paths.get(uploadPath, fileName), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
 
-            // Parse Training Results
-            parseTrainingMetrics(response);
+                response.setSuccess(true);
+                response.setMessage("Training completed successfully");
+                response.setStatus("trained");
+                response.setOutputPath(outputPath);
+                response.setInNodes(Integer.parseInt(request.getInNodes()));
+                response.setOutNodes(Integer.parseInt(request.getOutNodes()));
+                response.setNoLayers(Integer.parseInt(request.getNoLayers()));
+            } finally {
+                deleteWorkspace(workspace);
+            }
 
+        } catch (RejectedExecutionException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             response.setSuccess(false);
@@ -108,39 +168,38 @@ public class NeuralNetworkService {
             validateRequest(request);
             createDirectories();
 
+            int inNodes = Integer.parseInt(request.getInNodes());
+            int outNodes = Integer.parseInt(request.getOutNodes());
+            NeuralNetworkModelRegistry.Run run = resolveModel(request);
+
             String fileName = "testdata.txt";
+            List<String> lines;
             if (testFile != null && !testFile.isEmpty()) {
                 fileName = StringUtils.hasText(request.getTestFileName()) ? request.getTestFileName() : "testdata.txt";
+                lines = preprocessLines(new String(testFile.getBytes(), StandardCharsets.UTF_8).lines().toList(),
+                        inNodes, outNodes);
+                // Kept so that later tests without an upload use the same data
+                synchronized (publishLock) {
+                    Files.write(Paths.get(uploadPath, fileName), lines);
+                }
+            } else {
                 Path filePath = Paths.get(uploadPath, fileName);
-                testFile.transferTo(filePath);
-                preprocessDataFile(filePath, Integer.parseInt(request.getInNodes()),
-                        Integer.parseInt(request.getOutNodes()));
+                if (!Files.exists(filePath)) {
+                    throw new IllegalArgumentException("No test data available; upload a test file");
+                }
+                lines = Files.readAllLines(filePath);
             }
 
-            String[] args = {
-                    request.getInNodes(),
-                    request.getOutNodes(),
-                    request.getNoLayers(),
-                    request.getNoFirstLayer(),
-                    request.getNoSecLayer(),
-                    request.getNoTrainData(),
-                    request.getNoTestData(),
-                    "test",
-                    getServerPath()
-            };
-
-            nnet.runNeuralNetwork(args);
-
             response.setSuccess(true);
             response.setMessage("Testing completed successfully");
             response.setStatus("tested");
             response.setOutputPath(outputPath);
-            response.setInNodes(Integer.parseInt(request.getInNodes()));
-            response.setOutNodes(Integer.parseInt(request.getOutNodes()));
+            response.setModelId(run.id());
+            response.setInNodes(inNodes);
+            response.setOutNodes(outNodes);
             response.setNoLayers(Integer.parseInt(request.getNoLayers()));
 
-            // Parse Test Results
-            parseTestResults(response, request, fileName);
+            evaluate(response, run.model(), lines, inNodes, outNodes, Integer.parseInt(request.getNoTestData()));
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -152,9 +211,304 @@ public class NeuralNetworkService {
         return response;
     }
 
-    protected void parseTrainingMetrics(NeuralNetworkResponseDTO response) {
+    /**
+     * Tests the network like {@link #testNetwork}, but streams the results as
+     * newline-delimited JSON while they are computed: one record per test row
+     * with its {@code row} (line number), {@code predicted}, {@code actual}
+     * and {@code error}, then a summary record with the {@code count},
+     * {@code loss}, {@code accuracy} and {@code mae}. Memory use does not grow
+     * with the test set.
+     *
+     * @throws IllegalArgumentException if the request is invalid or there is no model or test data
+     */
+    public ResponseBodyEmitter streamTestNetwork(NeuralNetworkRequestDTO request, MultipartFile testFile)
+            throws IOException {
+        validateRequest(request);
+        createDirectories();
+        int inNodes = Integer.parseInt(request.getInNodes());
+        int outNodes = Integer.parseInt(request.getOutNodes());
+        int maxRows = Integer.parseInt(request.getNoTestData());
+        NeuralNetworkModelRegistry.Run run = resolveModel(request);
+
+        Path source;
+        Path keep = null;
+        if (testFile != null && !testFile.isEmpty()) {
+            String fileName = StringUtils.hasText(request.getTestFileName()) ? request.getTestFileName()
+                    : "testdata.txt";
+            // The upload is only valid during this call; the rows are read after it returns
+            source = Files.createTempFile(Paths.get(uploadPath), "test-", ".part");
+            testFile.transferTo(source);
+            keep = Paths.get(uploadPath, fileName);
+        } else {
+            source = Paths.get(uploadPath, "testdata.txt");
+            if (!Files.exists(source)) {
+                throw new IllegalArgumentException("No test data available; upload a test file");
+            }
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeoutMs);
+        Path upload = keep;
+        nnetStreamExecutor.execute(() -> streamPredictions(emitter, run, source, upload, inNodes, outNodes, maxRows));
+        return emitter;
+    }
+
+    /**
+     * Reads the test rows once, sending predictions in chunks of
+     * {@link #STREAM_CHUNK_ROWS}. An uploaded file is cleaned up on the way
+     * through and, once fully read, kept for later tests as
+     * {@link #testNetwork} keeps it.
+     */
+    private void streamPredictions(ResponseBodyEmitter emitter, NeuralNetworkModelRegistry.Run run, Path source,
+            Path upload, int inNodes, int outNodes, int maxRows) {
+        int cols = inNodes + outNodes;
+        String header = inNodes + " " + outNodes;
+        float[] row = new float[cols];
+        float[] output = new float[run.model().outputs()];
+        StringWriter chunk = new StringWriter();
+        Path cleaned = null;
+        try (JsonGenerator json = JSON.createGenerator(chunk)) {
+            json.setRootValueSeparator(null);
+            if (upload != null) {
+                cleaned = Files.createTempFile(upload.getParent(), "test-", ".tmp");
+            }
+            int count = 0;
+            double totalErrorSq = 0;
+            double totalAbsError = 0;
+            try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+                    BufferedWriter kept = cleaned == null ? null
+                            : Files.newBufferedWriter(cleaned, StandardCharsets.UTF_8)) {
+                Iterator<String> lines = kept == null ? reader.lines().iterator()
+                        : preprocessLines(reader, inNodes, outNodes).iterator();
+                for (int i = 0; lines.hasNext(); i++) {
+                    String line = lines.next();
+                    if (kept != null) {
+                        kept.write(line);
+                        kept.newLine();
+                    } else if (i >= maxRows) {
+                        break;
+                    }
+                    if (i >= maxRows || (i == 0 && line.trim().equals(header)) || !parseRow(line, row))
+                        continue;
+                    run.model().predict(row, output);
+                    double error = (double) output[0] - row[inNodes];
+                    json.writeStartObject();
+                    json.writeNumberField("row", i);
+                    json.writeNumberField("predicted", (double) output[0]);
+                    json.writeNumberField("actual", (double) row[inNodes]);
+                    json.writeNumberField("error", error);
+                    json.writeEndObject();
+                    json.writeRaw('\n');
+                    totalErrorSq += error * error;
+                    totalAbsError += Math.abs(error);
+                    if (++count % STREAM_CHUNK_ROWS == 0) {
+                        sendChunk(emitter, json, chunk);
+                    }
+                }
+            }
+            if (cleaned != null) {
+                synchronized (publishLock) {
+                    Files.move(cleaned, upload, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            json.writeStartObject();
+            json.writeStringField("status", "tested");
+            json.writeStringField("modelId", run.id());
+            json.writeNumberField("count", count);
+            if (count > 0) {
+                double mae = totalAbsError / count;
+                json.writeNumberField("loss", totalErrorSq / count);
+                json.writeNumberField("accuracy", Math.max(0, 1 - mae));
+                json.writeNumberField("mae", mae);
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+            sendChunk(emitter, json, chunk);
+            emitter.complete();
+        } catch (IOException | RuntimeException e) {
+            // Most likely the client went away; otherwise the stream just ends early
+            emitter.completeWithError(e);
+        } finally {
+            if (upload != null) {
+                deleteQuietly(source);
+                deleteQuietly(cleaned);
+            }
+        }
+    }
+
+    private static void sendChunk(ResponseBodyEmitter emitter, JsonGenerator json, StringWriter chunk)
+            throws IOException {
+        json.flush();
+        // The response itself is declared application/x-ndjson by the controller
+        emitter.send(chunk.toString(), MediaType.TEXT_PLAIN);
+        chunk.getBuffer().setLength(0);
+    }
+
+    private static void deleteQuietly(Path file) {
         try {
-            Path eFilePath = Paths.get(outputPath, "EFile.txt");
+            if (file != null)
+                Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static NeuralNetworkModelRegistry.Topology topology(NeuralNetworkRequestDTO request) {
+        return new NeuralNetworkModelRegistry.Topology(NnetModel.topology(
+                Integer.parseInt(request.getInNodes()),
+                Integer.parseInt(request.getNoFirstLayer()),
+                Integer.parseInt(request.getOutNodes()),
+                Integer.parseInt(request.getNoLayers())));
+    }
+
+    /**
+     * The model named by the request, or else the latest one trained for its
+     * topology. If none is cached the published weights are loaded once.
+     */
+    private NeuralNetworkModelRegistry.Run resolveModel(NeuralNetworkRequestDTO request) throws IOException {
+        NeuralNetworkModelRegistry.Topology topology = topology(request);
+        if (StringUtils.hasText(request.getModelId())) {
+            NnetModel model = modelRegistry.get(topology, request.getModelId());
+            if (model == null) {
+                throw new IllegalArgumentException(
+                        "Unknown model " + request.getModelId() + " for topology " + topology);
+            }
+            return new NeuralNetworkModelRegistry.Run(request.getModelId(), model);
+        }
+        synchronized (publishLock) {
+            NeuralNetworkModelRegistry.Run run = modelRegistry.latest(topology);
+            if (run == null) {
+                Path binary = Paths.get(outputPath, "WFile.bin");
+                Path text = Paths.get(outputPath, "WFile.txt");
+                NnetModel model;
+                if (Files.exists(binary)) {
+                    model = NnetModel.loadBinary(binary, topology.units());
+                } else if (Files.exists(text)) {
+                    model = NnetModel.load(text, topology.units());
+                } else {
+                    throw new IllegalArgumentException("No trained network available; train one first");
+                }
+                run = modelRegistry.register(topology, model);
+            }
+            return run;
+        }
+    }
+
+    /**
+     * Runs {@code model} over the test rows in {@code lines}. Rows are picked
+     * as the legacy test mode picks them: among the first {@code maxRows}
+     * lines, those with exactly one number per input and output node.
+     */
+    private void evaluate(NeuralNetworkResponseDTO response, NnetModel model, List<String> lines,
+            int inNodes, int outNodes, int maxRows) {
+        int cols = inNodes + outNodes;
+        float[] row = new float[cols];
+        float[] output = new float[model.outputs()];
+        List<double[]> pairs = new ArrayList<>();
+        int start = !lines.isEmpty() && lines.get(0).trim().equals(inNodes + " " + outNodes) ? 1 : 0;
+        for (int i = start; i < Math.min(maxRows, lines.size()); i++) {
+            if (!parseRow(lines.get(i), row))
+                continue;
+            model.predict(row, output);
+            pairs.add(new double[] { output[0], row[inNodes] });
+        }
+        setTestResults(response, pairs);
+    }
+
+    /** Parses {@code line} into {@code row} if it holds exactly {@code row.length} numbers. */
+    private static boolean parseRow(String line, float[] row) {
+        String[] parts = line.trim().split("\\s+");
+        if (parts.length != row.length)
+            return false;
+        try {
+            for (int k = 0; k < row.length; k++)
+                row[k] = Float.parseFloat(parts[k]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private String[] buildArgs(NeuralNetworkRequestDTO request, String mode, Path workspace) {
+        return new String[] {
+                request.getInNodes(),
+                request.getOutNodes(),
+                request.getNoLayers(),
+                request.getNoFirstLayer(),
+                request.getNoSecLayer(),
+                request.getNoTrainData(),
+                request.getNoTestData(),
+                mode,
+                workspace.toString() + File.separator,
+                StringUtils.hasText(request.getBatchSize()) ? request.getBatchSize() : "1",
+                // Jobs train in a workspace that is deleted afterwards, so a checkpoint could never be resumed
+                "0",
+                String.valueOf(textWeights(request))
+        };
+    }
+
+    /** Text weight dumps are written only when asked for; WFile.bin is always written. */
+    private static boolean textWeights(NeuralNetworkRequestDTO request) {
+        return Boolean.parseBoolean(request.getTextWeights());
+    }
+
+    /**
+     * Runs one legacy job on the bounded pool and waits for it. Each job has
+     * its own server path, so jobs do not share any files while running.
+     */
+    private void runJob(String[] args) throws Exception {
+        Future<?> future = nnetExecutor.submit(() -> {
+            nnet.runNeuralNetwork(args);
+            return null;
+        });
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /** A fresh server path for one job, laid out as the legacy code expects. */
+    private Path createWorkspace() throws IOException {
+        Path root = Paths.get(workPath).toAbsolutePath();
+        Files.createDirectories(root);
+        Path workspace = Files.createTempDirectory(root, "job-");
+        Files.createDirectories(workspace.resolve("upload"));
+        Files.createDirectories(workspace.resolve("nnet_sia"));
+        return workspace;
+    }
+
+    private void deleteWorkspace(Path workspace) {
+        try {
+            FileSystemUtils.deleteRecursively(workspace);
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + workspace + ": " + e.getMessage());
+        }
+    }
+
+    private static void copyIfExists(Path from, Path to) throws IOException {
+        if (Files.exists(from)) {
+            Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Moves the named job outputs into the shared output directory. Callers hold {@link #publishLock}. */
+    private void publish(Path workspace, String... names) throws IOException {
+        for (String name : names) {
+            Path produced = workspace.resolve("nnet_sia").resolve(name);
+            if (Files.exists(produced)) {
+                Files.move(produced, Paths.get(outputPath, name), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    protected void parseTrainingMetrics(NeuralNetworkResponseDTO response, Path resultDir) {
+        try {
+            Path eFilePath = resultDir.resolve("EFile.txt");
             if (Files.exists(eFilePath)) {
                 List<String> lines = Files.readAllLines(eFilePath);
                 Map<String, Object> trainResults = new HashMap<>();
@@ -181,98 +535,45 @@ public class NeuralNetworkService {
         }
     }
 
-    protected void parseTestResults(NeuralNetworkResponseDTO response, NeuralNetworkRequestDTO request,
-            String testFileName) {
-        try {
-            Path resultsPath = Paths.get(outputPath, "results.txt");
-            Path testDataPath = Paths.get(uploadPath, testFileName);
-
-            if (!Files.exists(resultsPath) || !Files.exists(testDataPath))
-                return;
-
-            List<String> resultLines = Files.readAllLines(resultsPath);
-            List<String> dataLines = Files.readAllLines(testDataPath);
-
-            // Skip header in data if present
-            // preprocessDataFile ensures clean data but original might be used if
-            // overwritten?
-            // Actually preprocess overwrites, so dataLines should be clean numbers
-            // But lets be safe and filter empty lines
-            dataLines = dataLines.stream().filter(l -> !l.trim().isEmpty()).collect(Collectors.toList());
-            if (dataLines.size() > 0 && dataLines.get(0).contains(" ")) {
-                // Check if first line is dimensions (e.g. "3 1")
-                String[] parts = dataLines.get(0).trim().split("\\s+");
-                if (parts.length == 2 && parts[0].length() < 3 && parts[1].length() < 3) {
-                    dataLines.remove(0);
-                }
-            }
-
-            List<Map<String, Object>> predictions = new ArrayList<>();
-            int inNodes = Integer.parseInt(request.getInNodes());
-            int outNodes = Integer.parseInt(request.getOutNodes());
-            int cols = inNodes + outNodes;
-
-            double totalErrorSq = 0;
-            double totalAbsError = 0;
-            int count = 0;
-
-            for (int i = 0; i < Math.min(resultLines.size(), dataLines.size()); i++) {
-                String rLine = resultLines.get(i); // "Input: ... => Output: ..."
-                String dLine = dataLines.get(i); // "0.1 0.2 ... 0.9" (Input + Target)
-
-                if (!rLine.contains("=>"))
-                    continue;
-
-                // Parse Predicted Output
-                String[] rParts = rLine.split("=> Output:");
-                if (rParts.length < 2)
-                    continue;
-                String[] outStrs = rParts[1].trim().split("\\s+");
-                double predicted = Double.parseDouble(outStrs[0]); // Assuming 1 output for simplicity in table, or take
-                                                                   // first
-
-                // Parse Actual from Data File (Last N columns)
-                String[] dParts = dLine.trim().split("\\s+");
-                if (dParts.length < cols)
-                    continue; // Malformed data line
-
-                // Actual is the last column(s)
-                double actual = Double.parseDouble(dParts[inNodes]); // Assuming 1 output node at index inNodes
-
-                double error = predicted - actual;
-
-                Map<String, Object> pred = new HashMap<>();
-                pred.put("predicted", predicted);
-                pred.put("actual", actual);
-                pred.put("error", error);
-                predictions.add(pred);
-
-                totalErrorSq += error * error;
-                totalAbsError += Math.abs(error);
-                count++;
-            }
-
-            if (count > 0) {
-                double mse = totalErrorSq / count;
-                double mae = totalAbsError / count;
+    /** Fills in predictions and error metrics from (predicted, actual) pairs. */
+    private void setTestResults(NeuralNetworkResponseDTO response, List<double[]> pairs) {
+        List<Map<String, Object>> predictions = new ArrayList<>();
+        double totalErrorSq = 0;
+        double totalAbsError = 0;
+        int count = 0;
+
+        for (double[] pair : pairs) {
+            double predicted = pair[0];
+            double actual = pair[1];
+            double error = predicted - actual;
+
+            Map<String, Object> pred = new HashMap<>();
+            pred.put("predicted", predicted);
+            pred.put("actual", actual);
+            pred.put("error", error);
+            predictions.add(pred);
+
+            totalErrorSq += error * error;
+            totalAbsError += Math.abs(error);
+            count++;
+        }
 
-                Map<String, Object> testRes = new HashMap<>();
-                testRes.put("loss", mse);
-                testRes.put("accuracy", Math.max(0, 1 - mae)); // Rough accuracy
-                response.setTestingResults(testRes);
+        if (count > 0) {
+            double mse = totalErrorSq / count;
+            double mae = totalAbsError / count;
 
-                Map<String, Object> errAnalysis = new HashMap<>();
-                errAnalysis.put("mse", mse);
-                errAnalysis.put("mae", mae);
-                errAnalysis.put("r2", 1 - mse); // Not true R2 but placeholder
-                response.setErrorAnalysis(errAnalysis);
+            Map<String, Object> testRes = new HashMap<>();
+            testRes.put("loss", mse);
+            testRes.put("accuracy", Math.max(0, 1 - mae)); // Rough accuracy
+            response.setTestingResults(testRes);
 
-                response.setPredictions(predictions);
-            }
+            Map<String, Object> errAnalysis = new HashMap<>();
+            errAnalysis.put("mse", mse);
+            errAnalysis.put("mae", mae);
+            errAnalysis.put("r2", 1 - mse); // Not true R2 but placeholder
+            response.setErrorAnalysis(errAnalysis);
 
-        } catch (Exception e) {
-            System.err.println("Failed to parse test results: " + e.getMessage());
-            e.printStackTrace();
+            response.setPredictions(predictions);
         }
     }
 
@@ -291,6 +592,7 @@ public class NeuralNetworkService {
             status.put("status", "ready");
             status.put("uploadPath", uploadPath);
             status.put("outputPath", outputPath);
+            status.put("cachedModels", modelRegistry == null ? 0 : modelRegistry.size());
         } catch (IOException e) {
             status.put("trainDataAvailable", false);
             status.put("testDataAvailable", false);
@@ -319,6 +621,8 @@ public class NeuralNetworkService {
             throw new IllegalArgumentException("Number of training data cannot be empty");
         if (!StringUtils.hasText(request.getNoTestData()))
             throw new IllegalArgumentException("Number of test data cannot be empty");
+        if (StringUtils.hasText(request.getBatchSize()) && Integer.parseInt(request.getBatchSize()) < 1)
+            throw new IllegalArgumentException("Batch size must be at least 1");
     }
 
     private void createDirectories() throws IOException {
@@ -326,45 +630,70 @@ public class NeuralNetworkService {
         Files.createDirectories(Paths.get(outputPath));
     }
 
-    private String getServerPath() {
-        return Paths.get(outputPath).getParent().toString() + "/";
-    }
-
     private void preprocessDataFile(Path filePath, int numInputs, int numOutputs) throws IOException {
         List<String> lines = Files.readAllLines(filePath);
         if (lines.isEmpty())
             return;
-        boolean hasHeader = false;
+        Files.write(filePath, preprocessLines(lines, numInputs, numOutputs));
+    }
+
+    private List<String> preprocessLines(List<String> lines, int numInputs, int numOutputs) {
+        if (lines.isEmpty())
+            return lines;
+        List<String> newLines = new ArrayList<>();
         String firstLine = lines.get(0).trim();
+        if (!isHeader(firstLine)) {
+            newLines.add(numInputs + " " + numOutputs);
+        } else {
+            newLines.add(firstLine);
+            lines = lines.subList(1, lines.size());
+        }
+        for (String line : lines) {
+            if (!line.trim().isEmpty())
+                newLines.add(normalizeRow(line, numInputs + numOutputs));
+        }
+        return newLines;
+    }
+
+    /** As {@link #preprocessLines(List, int, int)}, one line at a time. */
+    private static Stream<String> preprocessLines(BufferedReader reader, int numInputs, int numOutputs)
+            throws IOException {
+        String firstLine = reader.readLine();
+        if (firstLine == null)
+            return Stream.empty();
+        Stream<String> head = Stream.of(firstLine.trim());
+        Stream<String> rows = reader.lines();
+        if (!isHeader(firstLine.trim())) {
+            head = Stream.of(numInputs + " " + numOutputs);
+            rows = Stream.concat(Stream.of(firstLine), rows);
+        }
+        return Stream.concat(head, rows.filter(line -> !line.trim().isEmpty())
+                .map(line -> normalizeRow(line, numInputs + numOutputs)));
+    }
+
+    /** A first line like {@code "3 1"} giving the input and output node counts. */
+    private static boolean isHeader(String firstLine) {
         String[] headerParts = firstLine.split("\\s+");
         if (headerParts.length == 2 && firstLine.length() < 10) {
             try {
                 Integer.parseInt(headerParts[0]);
                 Integer.parseInt(headerParts[1]);
-                hasHeader = true;
+                return true;
             } catch (NumberFormatException ignored) {
             }
         }
-        List<String> newLines = new ArrayList<>();
-        if (!hasHeader) {
-            newLines.add(numInputs + " " + numOutputs);
-        } else {
-            newLines.add(firstLine);
-            lines = lines.subList(1, lines.size());
+        return false;
+    }
+
+    /** Pads a data line with zeros, or cuts it, to exactly {@code cols} values. */
+    private static String normalizeRow(String line, int cols) {
+        List<String> row = new ArrayList<>(Arrays.asList(line.trim().split("\\s+")));
+        while (row.size() < cols) {
+            row.add("0");
         }
-        for (String line : lines) {
-            String[] parts = line.trim().split("\\s+");
-            if (parts.length == 0 || line.trim().isEmpty())
-                continue;
-            List<String> row = new ArrayList<>(Arrays.asList(parts));
-            while (row.size() < numInputs + numOutputs) {
-                row.add("0");
-            }
-            if (row.size() > numInputs + numOutputs) {
-                row = row.subList(0, numInputs + numOutputs);
-            }
-            newLines.add(String.join(" ", row));
+        if (row.size() > cols) {
+            row = row.subList(0, cols);
         }
-        Files.write(filePath, newLines);
+        return String.join(" ", row);
     }
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package com.simulation.corrosion.service;
+
+import com.simulation.corrosion.dto.NeuralNetworkSweepDTO;
+import com.simulation.corrosion.dto.NeuralNetworkSweepEpochDTO;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * One client following a sweep, over SSE or as NDJSON.
+ * <p>
+ * Training threads only {@link #offer} into a bounded buffer and never
+ * block; a separate sender thread drains the events into the emitter at
+ * whatever pace the client reads. When a client falls behind, the oldest
+ * pending error curve point is dropped and counted, as simulation
+ * iterations are. Candidate results and the final status are never
+ * dropped; there is one per candidate, so they cannot pile up.
+ */
+class NeuralNetworkSweepEventStream implements Runnable {
+
+    static final String EPOCH = "epoch";
+    static final String CANDIDATE = "candidate";
+    static final String STATUS = "status";
+
+    private record Event(String name, Object data) {
+    }
+
+    private final ResponseBodyEmitter emitter;
+    private final int capacity;
+    private final Deque<Event> pending = new ArrayDeque<>();
+    private long dropped;
+    private boolean finishing;
+    private boolean closed;
+
+    NeuralNetworkSweepEventStream(ResponseBodyEmitter emitter, int capacity) {
+        this.emitter = emitter;
+        this.capacity = Math.max(2, capacity);
+        emitter.onCompletion(this::disconnect);
+        emitter.onTimeout(this::disconnect);
+        emitter.onError(e -> disconnect());
+    }
+
+    /** Queues an event; an epoch event makes room by dropping the oldest pending one if the client is behind. */
+    synchronized void offer(String name, Object data) {
+        if (closed || finishing) {
+            return;
+        }
+        if (EPOCH.equals(name) && pending.size() >= capacity) {
+            dropped++;
+            if (!dropOldestEpoch()) {
+                return;   // nothing but candidate results pending; this point goes instead
+            }
+        }
+        pending.addLast(new Event(name, data));
+        notifyAll();
+    }
+
+    private boolean dropOldestEpoch() {
+        for (Iterator<Event> it = pending.iterator(); it.hasNext();) {
+            if (EPOCH.equals(it.next().name())) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Queues the final sweep status; the stream ends once it has been sent. */
+    synchronized void finish(NeuralNetworkSweepDTO status) {
+        if (closed || finishing) {
+            return;
+        }
+        finishing = true;
+        pending.addLast(new Event(STATUS, status));
+        notifyAll();
+    }
+
+    private synchronized void disconnect() {
+        closed = true;
+        pending.clear();
+        notifyAll();
+    }
+
+    private synchronized Event take() throws InterruptedException {
+        while (pending.isEmpty() && !closed) {
+            wait();
+        }
+        if (closed) {
+            return null;
+        }
+        Event event = pending.pollFirst();
+        if (event.data() instanceof NeuralNetworkSweepEpochDTO epoch) {
+            // The event is shared by every client, each with its own count
+            NeuralNetworkSweepEpochDTO copy = new NeuralNetworkSweepEpochDTO(epoch.getCandidate(), epoch.getEpoch(),
+                    epoch.getError());
+            copy.setDropped(dropped);
+            return new Event(event.name(), copy);
+        }
+        return event;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Event event;
+            while ((event = take()) != null) {
+                send(event);
+                if (STATUS.equals(event.name())) {
+                    emitter.complete();
+                    disconnect();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+            disconnect();
+        } catch (IOException | IllegalStateException e) {
+            // Client went away
+            disconnect();
+        }
+    }
+
+    private void send(Event event) throws IOException {
+        if (emitter instanceof SseEmitter sse) {
+            sse.send(SseEmitter.event().name(event.name()).data(event.data(), MediaType.APPLICATION_JSON));
+        } else {
+            // The response itself is declared application/x-ndjson by the controller
+            emitter.send(event.data(), MediaType.APPLICATION_JSON);
+            emitter.send("\n", MediaType.TEXT_PLAIN);
+        }
+    }
+}
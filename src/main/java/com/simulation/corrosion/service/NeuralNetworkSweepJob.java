@@ -0,0 +1,188 @@
+package com.simulation.corrosion.service;
+
+import com.simulation.corrosion.dto.NeuralNetworkSweepCandidateDTO;
+import com.simulation.corrosion.dto.NeuralNetworkSweepDTO;
+import com.simulation.corrosion.dto.NeuralNetworkSweepEpochDTO;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * State of one hyperparameter sweep. Its candidates train concurrently, so
+ * every update and every status snapshot is taken under the job's lock.
+ */
+public class NeuralNetworkSweepJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    static final String CANDIDATE_QUEUED = "queued";
+    static final String CANDIDATE_RUNNING = "running";
+    static final String CANDIDATE_COMPLETED = "completed";
+    static final String CANDIDATE_FAILED = "failed";
+    static final String CANDIDATE_CANCELLED = "cancelled";
+
+    /** Finished candidates by best error, then failed ones, then the rest, each in candidate order. */
+    private static final Comparator<NeuralNetworkSweepCandidateDTO> LEADERBOARD = Comparator
+            .comparingInt((NeuralNetworkSweepCandidateDTO c) -> switch (c.getStatus()) {
+                case CANDIDATE_COMPLETED -> 0;
+                case CANDIDATE_FAILED -> 1;
+                default -> 2;
+            })
+            .thenComparing(c -> c.getBestError() == null ? Float.POSITIVE_INFINITY : c.getBestError())
+            .thenComparingInt(NeuralNetworkSweepCandidateDTO::getCandidate);
+
+    private final String id = UUID.randomUUID().toString();
+    private final String strategy;
+    private final long createdAt = System.currentTimeMillis();
+    private final NeuralNetworkSweepCandidateDTO[] candidates;
+    private final List<NeuralNetworkSweepEventStream> streams = new CopyOnWriteArrayList<>();
+    private volatile Status status = Status.QUEUED;
+    private volatile String message = "Queued";
+    private volatile boolean cancelRequested;
+    private int finished;
+
+    NeuralNetworkSweepJob(String strategy, List<NeuralNetworkSweepCandidateDTO> candidates) {
+        this.strategy = strategy;
+        this.candidates = candidates.toArray(new NeuralNetworkSweepCandidateDTO[0]);
+        for (int i = 0; i < this.candidates.length; i++) {
+            this.candidates[i].setCandidate(i);
+            this.candidates[i].setStatus(CANDIDATE_QUEUED);
+        }
+    }
+
+    public String getId() { return id; }
+    public long getCreatedAt() { return createdAt; }
+    public Status getStatus() { return status; }
+    public boolean isCancelRequested() { return cancelRequested; }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    int size() {
+        return candidates.length;
+    }
+
+    /** The settings of candidate {@code index}. */
+    synchronized NeuralNetworkSweepCandidateDTO candidate(int index) {
+        return candidates[index].copy();
+    }
+
+    synchronized void started(int index) {
+        candidates[index].setStatus(CANDIDATE_RUNNING);
+        if (status == Status.QUEUED) {
+            status = Status.RUNNING;
+            message = "Running";
+        }
+    }
+
+    void epoch(int index, int epoch, float error) {
+        synchronized (this) {
+            NeuralNetworkSweepCandidateDTO c = candidates[index];
+            c.setEpochsRun(epoch + 1);
+            c.setLastError(error);
+            if (c.getBestError() == null || error < c.getBestError()) {
+                c.setBestError(error);
+                c.setBestEpoch(epoch);
+            }
+        }
+        if (!streams.isEmpty()) {
+            NeuralNetworkSweepEpochDTO event = new NeuralNetworkSweepEpochDTO(index, epoch, error);
+            for (NeuralNetworkSweepEventStream stream : streams) {
+                stream.offer(NeuralNetworkSweepEventStream.EPOCH, event);
+            }
+        }
+    }
+
+    /**
+     * Records the outcome of candidate {@code index}; the sweep finishes
+     * with its last candidate.
+     */
+    void finished(int index, String outcome, long durationMs, String error) {
+        NeuralNetworkSweepCandidateDTO event;
+        boolean last;
+        synchronized (this) {
+            NeuralNetworkSweepCandidateDTO c = candidates[index];
+            c.setStatus(outcome);
+            c.setDurationMs(durationMs);
+            c.setError(error);
+            event = c.copy();
+            last = ++finished == candidates.length;
+            if (last) {
+                finish();
+            }
+        }
+        for (NeuralNetworkSweepEventStream stream : streams) {
+            stream.offer(NeuralNetworkSweepEventStream.CANDIDATE, event);
+        }
+        if (last) {
+            finishStreams();
+        }
+    }
+
+    private void finish() {
+        long failed = Arrays.stream(candidates).filter(c -> CANDIDATE_FAILED.equals(c.getStatus())).count();
+        if (cancelRequested) {
+            message = "Cancelled";
+            status = Status.CANCELLED;
+        } else if (failed == candidates.length) {
+            message = "All " + failed + " candidates failed";
+            status = Status.FAILED;
+        } else {
+            message = failed == 0 ? "Sweep completed"
+                    : "Sweep completed; " + failed + " of " + candidates.length + " candidates failed";
+            status = Status.COMPLETED;
+        }
+    }
+
+    void subscribe(NeuralNetworkSweepEventStream stream) {
+        streams.add(stream);
+        // Finished before (or while) subscribing: just report the outcome
+        if (isFinished()) {
+            stream.finish(toDTO());
+        }
+    }
+
+    private void finishStreams() {
+        NeuralNetworkSweepDTO dto = toDTO();
+        for (NeuralNetworkSweepEventStream stream : streams) {
+            stream.finish(dto);
+        }
+        streams.clear();
+    }
+
+    /** Asks the sweep to stop: queued candidates are skipped, running ones stop at their next epoch. */
+    boolean cancel() {
+        if (isFinished()) {
+            return false;
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    public synchronized NeuralNetworkSweepDTO toDTO() {
+        NeuralNetworkSweepCandidateDTO[] board = new NeuralNetworkSweepCandidateDTO[candidates.length];
+        for (int i = 0; i < board.length; i++) {
+            board[i] = candidates[i].copy();
+        }
+        Arrays.sort(board, LEADERBOARD);
+        int rank = 0;
+        for (NeuralNetworkSweepCandidateDTO c : board) {
+            if (CANDIDATE_COMPLETED.equals(c.getStatus())) {
+                c.setRank(++rank);
+            }
+        }
+        NeuralNetworkSweepDTO dto = new NeuralNetworkSweepDTO();
+        dto.setSweepId(id);
+        dto.setStatus(status.name().toLowerCase());
+        dto.setMessage(message);
+        dto.setStrategy(strategy);
+        dto.setTotalCandidates(candidates.length);
+        dto.setFinishedCandidates(finished);
+        dto.setLeaderboard(List.of(board));
+        return dto;
+    }
+}
@@ -0,0 +1,362 @@
+package com.simulation.corrosion.service;
+
+import com.simulation.corrosion.dto.NeuralNetworkSweepCandidateDTO;
+import com.simulation.corrosion.dto.NeuralNetworkSweepRequestDTO;
+import com.simulation.legacy.sim.nnet;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Hyperparameter sweeps over the legacy backpropagation network. Each
+ * candidate setting is one ordinary {@link nnet} training run in its own
+ * workspace; the candidates of all sweeps share a work-stealing pool, so a
+ * sweep uses every core while its candidates last and idle workers pick up
+ * the next queued candidate of any sweep. The pool's own queue is unbounded,
+ * so at most {@code app.nnet.sweep.max-active} sweeps are admitted at a
+ * time; further ones are rejected until one of them finishes.
+ */
+@Service
+public class NeuralNetworkSweepService {
+    static final String GRID = "grid";
+    static final String RANDOM = "random";
+
+    // Sda's built-in settings, used for whatever a request leaves out
+    private static final double DEFAULT_ETA = 0.57861;
+    private static final double DEFAULT_ALPHA = 0.7506;
+    private static final int DEFAULT_EPOCHS = 500;
+    private static final int DEFAULT_SAMPLES = 16;
+
+    private final ForkJoinPool nnetSweepPool;
+    private final ExecutorService nnetStreamExecutor;
+    private final Map<String, NeuralNetworkSweepJob> sweeps = new ConcurrentHashMap<>();
+    /** Sweeps admitted whose candidates have not all finished yet. */
+    private int active;
+
+    @Value("${app.upload.path:output/upload}")
+    private String uploadPath = "output/upload";
+
+    @Value("${app.nnet.work-path:output/nnet_jobs}")
+    private String workPath = "output/nnet_jobs";
+
+    @Value("${app.nnet.sweep.max-candidates:64}")
+    private int maxCandidates = 64;
+
+    @Value("${app.nnet.sweep.max-epochs:5000}")
+    private int maxEpochs = 5000;
+
+    @Value("${app.nnet.sweep.max-active:4}")
+    private int maxActive = 4;
+
+    @Value("${app.nnet.sweep.max-retained:20}")
+    private int maxRetained = 20;
+
+    @Value("${app.nnet.sweep.stream-buffer:256}")
+    private int streamBuffer = 256;
+
+    @Value("${app.nnet.sweep.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs = 1800000L;
+
+    public NeuralNetworkSweepService(@Qualifier("nnetSweepPool") ForkJoinPool nnetSweepPool,
+                                     @Qualifier("nnetStreamExecutor") ExecutorService nnetStreamExecutor) {
+        this.nnetSweepPool = nnetSweepPool;
+        this.nnetStreamExecutor = nnetStreamExecutor;
+    }
+
+    /**
+     * Queues every candidate of a sweep and returns the sweep straight away.
+     * The training data is the uploaded {@code traindata.txt}, or the bundled
+     * one if nothing has been uploaded, as of this call.
+     *
+     * @throws IllegalArgumentException if the request is invalid
+     * @throws RejectedExecutionException if {@code app.nnet.sweep.max-active} sweeps are already running
+     */
+    public NeuralNetworkSweepJob submit(NeuralNetworkSweepRequestDTO request) throws IOException {
+        validateRequest(request);
+        String strategy = request.getStrategy() == null ? GRID : request.getStrategy().toLowerCase();
+        List<NeuralNetworkSweepCandidateDTO> candidates = RANDOM.equals(strategy)
+                ? randomCandidates(request) : gridCandidates(request);
+        if (candidates.size() > maxCandidates) {
+            throw new IllegalArgumentException(
+                    "Sweep has " + candidates.size() + " candidates, at most " + maxCandidates + " are allowed");
+        }
+        admit();
+
+        NeuralNetworkSweepJob job = new NeuralNetworkSweepJob(strategy, candidates);
+        Path dir = Paths.get(workPath).toAbsolutePath().resolve("sweep-" + job.getId());
+        Path data = dir.resolve("traindata.txt");
+        try {
+            Files.createDirectories(dir);
+            copyTrainingData(data);
+        } catch (IOException | RuntimeException e) {
+            deleteDirectory(dir);
+            release();
+            throw e;
+        }
+        pruneFinishedSweeps();
+        sweeps.put(job.getId(), job);
+
+        CompletableFuture<?>[] runs = new CompletableFuture<?>[job.size()];
+        for (int i = 0; i < runs.length; i++) {
+            int index = i;
+            runs[i] = CompletableFuture.runAsync(() -> train(job, index, request, dir, data), nnetSweepPool);
+        }
+        CompletableFuture.allOf(runs).whenComplete((ignored, e) -> {
+            release();
+            deleteDirectory(dir);
+        });
+        return job;
+    }
+
+    private synchronized void admit() {
+        if (active >= maxActive) {
+            throw new RejectedExecutionException(active + " sweeps are already running");
+        }
+        active++;
+    }
+
+    private synchronized void release() {
+        active--;
+    }
+
+    public NeuralNetworkSweepJob getSweep(String sweepId) {
+        return sweeps.get(sweepId);
+    }
+
+    /** Returns {@code false} if the sweep is unknown or already finished. */
+    public boolean cancel(String sweepId) {
+        NeuralNetworkSweepJob job = sweeps.get(sweepId);
+        return job != null && job.cancel();
+    }
+
+    /**
+     * Follows a sweep over Server-Sent Events: an {@code epoch} event for
+     * every epoch of every candidate, a {@code candidate} event as each one
+     * finishes, then a final {@code status} event with the leaderboard.
+     *
+     * @return {@code null} if the sweep is unknown
+     */
+    public SseEmitter streamEvents(String sweepId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        return subscribe(sweepId, emitter) ? emitter : null;
+    }
+
+    /** As {@link #streamEvents}, written as newline-delimited JSON. */
+    public ResponseBodyEmitter streamNdjson(String sweepId) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeoutMs);
+        return subscribe(sweepId, emitter) ? emitter : null;
+    }
+
+    private boolean subscribe(String sweepId, ResponseBodyEmitter emitter) {
+        NeuralNetworkSweepJob job = sweeps.get(sweepId);
+        if (job == null) {
+            return false;
+        }
+        NeuralNetworkSweepEventStream stream = new NeuralNetworkSweepEventStream(emitter, streamBuffer);
+        nnetStreamExecutor.execute(stream);
+        job.subscribe(stream);
+        return true;
+    }
+
+    /** Trains one candidate in a workspace of its own under the sweep's directory. */
+    private void train(NeuralNetworkSweepJob job, int index, NeuralNetworkSweepRequestDTO request, Path dir,
+            Path data) {
+        if (job.isCancelRequested()) {
+            job.finished(index, NeuralNetworkSweepJob.CANDIDATE_CANCELLED, 0, null);
+            return;
+        }
+        job.started(index);
+        NeuralNetworkSweepCandidateDTO candidate = job.candidate(index);
+        long start = System.nanoTime();
+        Path workspace = dir.resolve("candidate-" + index);
+        try {
+            Files.createDirectories(workspace.resolve("upload"));
+            Files.createDirectories(workspace.resolve("nnet_sia"));
+            Files.copy(data, workspace.resolve("upload").resolve("traindata.txt"));
+            // Sda opens the test file even when only training
+            Files.createFile(workspace.resolve("upload").resolve("testdata.txt"));
+
+            nnet.runNeuralNetwork(buildArgs(request, candidate, workspace), (epoch, error) -> {
+                if (job.isCancelRequested()) {
+                    throw new CancellationException();
+                }
+                job.epoch(index, epoch, error);
+            });
+            job.finished(index, NeuralNetworkSweepJob.CANDIDATE_COMPLETED, elapsedMs(start), null);
+        } catch (CancellationException e) {
+            job.finished(index, NeuralNetworkSweepJob.CANDIDATE_CANCELLED, elapsedMs(start), null);
+        } catch (Exception e) {
+            job.finished(index, NeuralNetworkSweepJob.CANDIDATE_FAILED, elapsedMs(start), String.valueOf(e));
+        } finally {
+            deleteDirectory(workspace);
+        }
+    }
+
+    private static String[] buildArgs(NeuralNetworkSweepRequestDTO request, NeuralNetworkSweepCandidateDTO candidate,
+            Path workspace) {
+        return new String[] {
+                String.valueOf(request.getInNodes()),
+                String.valueOf(request.getOutNodes()),
+                "3",
+                String.valueOf(candidate.getHiddenNodes()),
+                "0",
+                String.valueOf(request.getNoTrainData()),
+                "0",
+                "train",
+                workspace.toString() + File.separator,
+                String.valueOf(request.getBatchSize() == null ? 1 : request.getBatchSize()),
+                "0",
+                "false",
+                String.valueOf((float) candidate.getEta()),
+                String.valueOf((float) candidate.getAlpha()),
+                String.valueOf(candidate.getEpochs())
+        };
+    }
+
+    /** Every combination of the listed values. */
+    private static List<NeuralNetworkSweepCandidateDTO> gridCandidates(NeuralNetworkSweepRequestDTO request) {
+        List<NeuralNetworkSweepCandidateDTO> candidates = new ArrayList<>();
+        for (int hidden : request.getHiddenNodes())
+            for (int epochs : orDefault(request.getEpochs(), DEFAULT_EPOCHS))
+                for (double eta : orDefault(request.getEtas(), DEFAULT_ETA))
+                    for (double alpha : orDefault(request.getAlphas(), DEFAULT_ALPHA))
+                        candidates.add(candidate(eta, alpha, hidden, epochs));
+        return candidates;
+    }
+
+    /**
+     * {@code samples} draws: eta and alpha uniform between the smallest and
+     * largest listed value, hidden nodes and epochs picked from the lists.
+     */
+    private List<NeuralNetworkSweepCandidateDTO> randomCandidates(NeuralNetworkSweepRequestDTO request) {
+        int samples = request.getSamples() == null ? Math.min(DEFAULT_SAMPLES, maxCandidates) : request.getSamples();
+        if (samples < 1) {
+            throw new IllegalArgumentException("Samples must be at least 1");
+        }
+        Random random = request.getSeed() == null ? new Random() : new Random(request.getSeed());
+        List<Double> etas = orDefault(request.getEtas(), DEFAULT_ETA);
+        List<Double> alphas = orDefault(request.getAlphas(), DEFAULT_ALPHA);
+        List<Integer> hidden = request.getHiddenNodes();
+        List<Integer> epochs = orDefault(request.getEpochs(), DEFAULT_EPOCHS);
+        List<NeuralNetworkSweepCandidateDTO> candidates = new ArrayList<>();
+        for (int i = 0; i < samples; i++) {
+            candidates.add(candidate(uniform(random, etas), uniform(random, alphas),
+                    hidden.get(random.nextInt(hidden.size())), epochs.get(random.nextInt(epochs.size()))));
+        }
+        return candidates;
+    }
+
+    private static double uniform(Random random, List<Double> values) {
+        double lo = Collections.min(values);
+        double hi = Collections.max(values);
+        return lo + (hi - lo) * random.nextDouble();
+    }
+
+    private static <T> List<T> orDefault(List<T> values, T fallback) {
+        return values == null || values.isEmpty() ? List.of(fallback) : values;
+    }
+
+    private static NeuralNetworkSweepCandidateDTO candidate(double eta, double alpha, int hidden, int epochs) {
+        NeuralNetworkSweepCandidateDTO c = new NeuralNetworkSweepCandidateDTO();
+        c.setEta(eta);
+        c.setAlpha(alpha);
+        c.setHiddenNodes(hidden);
+        c.setEpochs(epochs);
+        return c;
+    }
+
+    private void copyTrainingData(Path target) throws IOException {
+        Path uploaded = Paths.get(uploadPath, "traindata.txt");
+        if (Files.exists(uploaded)) {
+            Files.copy(uploaded, target);
+            return;
+        }
+        try (InputStream in = new ClassPathResource("legacy-resources/sim/traindata.txt").getInputStream()) {
+            Files.copy(in, target);
+        }
+    }
+
+    private void validateRequest(NeuralNetworkSweepRequestDTO request) {
+        if (request == null)
+            throw new IllegalArgumentException("Request cannot be null");
+        if (request.getInNodes() == null || request.getInNodes() < 1)
+            throw new IllegalArgumentException("Input nodes must be at least 1");
+        if (request.getOutNodes() == null || request.getOutNodes() < 1)
+            throw new IllegalArgumentException("Output nodes must be at least 1");
+        if (request.getNoLayers() != null && request.getNoLayers() != 3)
+            throw new IllegalArgumentException("Sweeps train three-layer networks");
+        if (request.getNoTrainData() == null || request.getNoTrainData() < 1)
+            throw new IllegalArgumentException("Number of training data must be at least 1");
+        if (request.getBatchSize() != null && request.getBatchSize() < 1)
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        String strategy = request.getStrategy();
+        if (strategy != null && !GRID.equalsIgnoreCase(strategy) && !RANDOM.equalsIgnoreCase(strategy))
+            throw new IllegalArgumentException("Strategy must be grid or random");
+        if (request.getHiddenNodes() == null || request.getHiddenNodes().isEmpty())
+            throw new IllegalArgumentException("At least one hidden layer size is required");
+        int width = request.getInNodes() + request.getOutNodes();
+        for (Integer hidden : request.getHiddenNodes()) {
+            if (hidden == null || hidden < 1)
+                throw new IllegalArgumentException("Hidden nodes must be at least 1");
+            if (hidden * width > nnet.MAX_INITIAL_WEIGHTS)
+                throw new IllegalArgumentException("Hidden nodes x (inputs + outputs) must be at most "
+                        + nnet.MAX_INITIAL_WEIGHTS + ", the size of the initial weight table; got " + hidden);
+        }
+        if (request.getEtas() != null && request.getEtas().stream().anyMatch(e -> e == null || !(e > 0)))
+            throw new IllegalArgumentException("Learning rates must be positive");
+        if (request.getAlphas() != null && request.getAlphas().stream().anyMatch(a -> a == null || !(a >= 0)))
+            throw new IllegalArgumentException("Momentum factors cannot be negative");
+        if (request.getEpochs() != null
+                && request.getEpochs().stream().anyMatch(e -> e == null || e < 1 || e > maxEpochs))
+            throw new IllegalArgumentException("Epoch limits must be between 1 and " + maxEpochs);
+    }
+
+    private void pruneFinishedSweeps() {
+        int excess = sweeps.size() - maxRetained + 1;
+        if (excess <= 0) {
+            return;
+        }
+        sweeps.values().stream()
+                .filter(NeuralNetworkSweepJob::isFinished)
+                .sorted(Comparator.comparingLong(NeuralNetworkSweepJob::getCreatedAt))
+                .limit(excess)
+                .map(NeuralNetworkSweepJob::getId)
+                .toList()
+                .forEach(sweeps::remove);
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static void deleteDirectory(Path dir) {
+        try {
+            FileSystemUtils.deleteRecursively(dir);
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + dir + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.simulation.corrosion.service;
+
+import com.simulation.corrosion.dto.Simulation2DIterationDTO;
+import com.simulation.corrosion.dto.Simulation2DJobDTO;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * One client following a job's iterations, over SSE or as NDJSON.
+ * <p>
+ * The simulation thread only ever {@link #offer}s into a small bounded
+ * buffer and never blocks; when a client falls behind the oldest pending
+ * iteration is dropped and counted. A separate sender thread drains the
+ * buffer into the emitter at whatever pace the client reads.
+ */
+class Simulation2DEventStream implements Runnable {
+
+    private final ResponseBodyEmitter emitter;
+    private final boolean frames;
+    private final int capacity;
+    private final Deque<Object> pending = new ArrayDeque<>();
+    private long dropped;
+    private boolean finishing;
+    private boolean closed;
+
+    Simulation2DEventStream(ResponseBodyEmitter emitter, boolean frames, int capacity) {
+        this.emitter = emitter;
+        this.frames = frames;
+        this.capacity = Math.max(2, capacity);
+        emitter.onCompletion(this::disconnect);
+        emitter.onTimeout(this::disconnect);
+        emitter.onError(e -> disconnect());
+    }
+
+    boolean wantsFrames() {
+        return frames;
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /** Queues an iteration, dropping the oldest pending one if the client is behind. */
+    synchronized void offer(Simulation2DIterationDTO event) {
+        if (closed || finishing) {
+            return;
+        }
+        if (pending.size() >= capacity - 1) {
+            pending.pollFirst();
+            dropped++;
+        }
+        pending.addLast(event);
+        notifyAll();
+    }
+
+    /** Queues the final job status; the stream ends once it has been sent. */
+    synchronized void finish(Simulation2DJobDTO status) {
+        if (closed || finishing) {
+            return;
+        }
+        // One slot is kept free for this, so the final status is never dropped
+        finishing = true;
+        pending.addLast(status);
+        notifyAll();
+    }
+
+    private synchronized void disconnect() {
+        closed = true;
+        pending.clear();
+        notifyAll();
+    }
+
+    private synchronized Object take() throws InterruptedException {
+        while (pending.isEmpty() && !closed) {
+            wait();
+        }
+        if (closed) {
+            return null;
+        }
+        Object event = pending.pollFirst();
+        if (event instanceof Simulation2DIterationDTO iteration) {
+            Simulation2DIterationDTO copy = iteration.copy();
+            copy.setDropped(dropped);
+            if (!frames) {
+                copy.setFrame(null);
+            }
+            return copy;
+        }
+        return event;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Object event;
+            while ((event = take()) != null) {
+                send(event);
+                if (event instanceof Simulation2DJobDTO) {
+                    emitter.complete();
+                    disconnect();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+            disconnect();
+        } catch (IOException | IllegalStateException e) {
+            // Client went away
+            disconnect();
+        }
+    }
+
+    private void send(Object event) throws IOException {
+        if (emitter instanceof SseEmitter sse) {
+            String name = event instanceof Simulation2DJobDTO ? "status" : "iteration";
+            sse.send(SseEmitter.event().name(name).data(event, MediaType.APPLICATION_JSON));
+        } else {
+            // The response itself is declared application/x-ndjson by the controller
+            emitter.send(event, MediaType.APPLICATION_JSON);
+            emitter.send("\n", MediaType.TEXT_PLAIN);
+        }
+    }
+}
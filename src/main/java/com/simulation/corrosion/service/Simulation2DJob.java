@@ -0,0 +1,140 @@
+package com.simulation.corrosion.service;
+
+import com.simulation.corrosion.dto.Simulation2DIterationDTO;
+import com.simulation.corrosion.dto.Simulation2DJobDTO;
+import com.simulation.corrosion.dto.Simulation2DRequestDTO;
+import com.simulation.corrosion.dto.Simulation2DResponseDTO;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
+/**
+ * State of one asynchronous 2D simulation run. Written by the simulation
+ * thread and read by request threads.
+ */
+public class Simulation2DJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Simulation2DRequestDTO request;
+    private final long createdAt = System.currentTimeMillis();
+    private volatile Status status = Status.QUEUED;
+    private volatile int iteration;
+    private volatile String message = "Queued";
+    private volatile Simulation2DResponseDTO result;
+    private volatile Throwable failure;
+    private volatile boolean cancelRequested;
+    private volatile Future<?> future;
+    private final List<Simulation2DEventStream> streams = new CopyOnWriteArrayList<>();
+
+    public Simulation2DJob(Simulation2DRequestDTO request) {
+        this.request = request;
+    }
+
+    public String getId() { return id; }
+    public Simulation2DRequestDTO getRequest() { return request; }
+    public long getCreatedAt() { return createdAt; }
+    public Status getStatus() { return status; }
+    public int getIteration() { return iteration; }
+    public Simulation2DResponseDTO getResult() { return result; }
+    /** What a failed job died of; {@code null} unless the job failed. */
+    public Throwable getFailure() { return failure; }
+    public boolean isCancelRequested() { return cancelRequested; }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    void running() {
+        status = Status.RUNNING;
+        message = "Running";
+    }
+
+    void setIteration(int iteration) {
+        this.iteration = iteration;
+    }
+
+    void completed(Simulation2DResponseDTO result) {
+        this.result = result;
+        message = result.getMessage();
+        status = Status.COMPLETED;
+        finishStreams();
+    }
+
+    void failed(String error, Throwable cause) {
+        failure = cause;
+        message = error;
+        status = Status.FAILED;
+        finishStreams();
+    }
+
+    void cancelled() {
+        message = "Cancelled";
+        status = Status.CANCELLED;
+        finishStreams();
+    }
+
+    void subscribe(Simulation2DEventStream stream) {
+        streams.add(stream);
+        // Finished before (or while) subscribing: just report the outcome
+        if (isFinished()) {
+            stream.finish(toDTO());
+        }
+    }
+
+    /** Whether anyone is following this job, so iteration events are worth building. */
+    boolean hasSubscribers() {
+        streams.removeIf(Simulation2DEventStream::isClosed);
+        return !streams.isEmpty();
+    }
+
+    boolean hasFrameSubscribers() {
+        return streams.stream().anyMatch(Simulation2DEventStream::wantsFrames);
+    }
+
+    void publish(Simulation2DIterationDTO event) {
+        for (Simulation2DEventStream stream : streams) {
+            stream.offer(event);
+        }
+    }
+
+    private void finishStreams() {
+        Simulation2DJobDTO dto = toDTO();
+        for (Simulation2DEventStream stream : streams) {
+            stream.finish(dto);
+        }
+    }
+
+    /**
+     * Asks the job to stop. A queued job is dropped before it starts; a
+     * running one stops at its next iteration.
+     */
+    boolean cancel() {
+        if (isFinished()) {
+            return false;
+        }
+        cancelRequested = true;
+        Future<?> f = future;
+        if (f != null && f.cancel(true) && status == Status.QUEUED) {
+            cancelled();
+        }
+        return true;
+    }
+
+    public Simulation2DJobDTO toDTO() {
+        Simulation2DJobDTO dto = new Simulation2DJobDTO();
+        dto.setJobId(id);
+        dto.setStatus(status.name().toLowerCase());
+        dto.setIteration(iteration);
+        dto.setTotalIterations(request.getNoIterations());
+        dto.setMessage(message);
+        return dto;
+    }
+}
@@ -1,107 +1,399 @@
 package com.simulation.corrosion.service;
 
+import com.simulation.corrosion.dto.Simulation2DIterationDTO;
 import com.simulation.corrosion.dto.Simulation2DRequestDTO;
 import com.simulation.corrosion.dto.Simulation2DResponseDTO;
+import com.simulation.legacy.GridBackend;
+import com.simulation.legacy.HistogramStats;
+import com.simulation.legacy.ImageMatrix2D;
+import com.simulation.legacy.RateMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Runs the 2D corrosion CA ({@link ImageMatrix2D}) as asynchronous jobs.
+ * Jobs run on a bounded executor, their CA steps are spread over a shared
+ * step pool, and output files are written on virtual threads.
+ */
 @Service
 public class Simulation2DService {
-    public Simulation2DResponseDTO runSimulation(Simulation2DRequestDTO request) {
+    private static final Logger logger = LoggerFactory.getLogger(Simulation2DService.class);
+
+    /** CA steps per reported iteration, as in the legacy Sim2D driver. */
+    static final int STEPS_PER_ITERATION = 5;
+    static final int MAX_LATTICE_SIZE = 4096;
+    private static final int IMAGE_SIZE = 500;
+
+    private final ExecutorService simulationExecutor;
+    private final ForkJoinPool simulationStepPool;
+    private final ExecutorService simulationIoExecutor;
+    private final Map<String, Simulation2DJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${app.simulation.max-retained-jobs:100}")
+    private int maxRetainedJobs = 100;
+
+    @Value("${app.simulation.stream-buffer:16}")
+    private int streamBuffer = 16;
+
+    @Value("${app.simulation.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs = 1800000L;
+
+    @Value("${app.simulation.frame-size:64}")
+    private int frameSize = 64;
+
+    public Simulation2DService(@Qualifier("simulationExecutor") ExecutorService simulationExecutor,
+                               @Qualifier("simulationStepPool") ForkJoinPool simulationStepPool,
+                               @Qualifier("simulationIoExecutor") ExecutorService simulationIoExecutor) {
+        this.simulationExecutor = simulationExecutor;
+        this.simulationStepPool = simulationStepPool;
+        this.simulationIoExecutor = simulationIoExecutor;
+    }
+
+    /**
+     * Queues a simulation and returns its job straight away.
+     *
+     * @throws IllegalArgumentException if the request is invalid
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    public Simulation2DJob submit(Simulation2DRequestDTO request) {
+        validateRequest(request);
+        pruneFinishedJobs();
+        Simulation2DJob job = new Simulation2DJob(request);
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(simulationExecutor.submit(() -> execute(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    public Simulation2DJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /** Returns {@code false} if the job is unknown or already finished. */
+    public boolean cancel(String jobId) {
+        Simulation2DJob job = jobs.get(jobId);
+        return job != null && job.cancel();
+    }
+
+    /**
+     * Follows a job over Server-Sent Events: one {@code iteration} event per
+     * completed iteration, then a final {@code status} event.
+     *
+     * @return {@code null} if the job is unknown
+     */
+    public SseEmitter streamEvents(String jobId, boolean frames) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        return subscribe(jobId, emitter, frames) ? emitter : null;
+    }
+
+    /** As {@link #streamEvents}, written as newline-delimited JSON. */
+    public ResponseBodyEmitter streamNdjson(String jobId, boolean frames) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeoutMs);
+        return subscribe(jobId, emitter, frames) ? emitter : null;
+    }
+
+    private boolean subscribe(String jobId, ResponseBodyEmitter emitter, boolean frames) {
+        Simulation2DJob job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        Simulation2DEventStream stream = new Simulation2DEventStream(emitter, frames, streamBuffer);
+        simulationIoExecutor.execute(stream);
+        job.subscribe(stream);
+        return true;
+    }
+
+    private void execute(Simulation2DJob job) {
+        if (job.isCancelRequested()) {
+            job.cancelled();
+            return;
+        }
+        job.running();
+        Simulation2DRequestDTO request = job.getRequest();
+        try {
+            Path outputDir = resolveOutputDir(request).resolve(job.getId());
+            Files.createDirectories(outputDir);
+
+            ImageMatrix2D mtrx = createMatrix(request);
+            seedPits(mtrx, request);
+
+            HistogramStats stats = null;
+            String events = "";
+            try (BufferedWriter features = Files.newBufferedWriter(outputDir.resolve("Features.txt"))) {
+                features.write("Skew,Energy,Entropy,Ratio1,Skew,Energy,Entropy,Ratio2\n");
+                for (int t = 0; t < request.getNoIterations(); t++) {
+                    if (job.isCancelRequested() || Thread.currentThread().isInterrupted()) {
+                        job.cancelled();
+                        return;
+                    }
+                    for (int k = 0; k < STEPS_PER_ITERATION; k++) {
+                        events = mtrx.simulate(request.getParam1(), request.getParam3(), request.getParam2(),
+                                request.getParam4(), 0.5D, 3D, request.getConstant(), request.getStressFact(), t);
+                    }
+                    stats = mtrx.stats2D();
+                    String stat = stats.format();
+                    String wavelet = mtrx.wavelet2D(6);
+                    features.write(stat + wavelet + "\n");
+                    job.setIteration(t + 1);
+                    if (job.hasSubscribers()) {
+                        job.publish(iterationEvent(job, mtrx, stat, wavelet, events));
+                    }
+                }
+            }
+            job.completed(buildResponse(job, mtrx, outputDir, stats, events));
+        } catch (Exception e) {
+            logger.error("Simulation job {} failed", job.getId(), e);
+            job.failed("Simulation failed: " + e.getMessage(), e);
+        }
+    }
+
+    private ImageMatrix2D createMatrix(Simulation2DRequestDTO request) {
         int rows = request.getNoRows();
         int cols = request.getNoColumns();
-        int numPits = request.getNumPits(); // Assuming this field exists in DTO now
-        String relativePath = request.getPath(); // e.g., "output/sim2d/"
+        ImageMatrix2D mtrx = new ImageMatrix2D(rows, cols, Math.max(1, 400 / rows), request.getNoIterations(),
+                request.getPath(), request.getParam1(), request.getParam2(), request.getParam3(),
+                request.getParam4(), GridBackend.fromName(request.getGridBackend()));
+        mtrx.setStepPool(simulationStepPool);
+        mtrx.setRateMode(RateMode.fromName(request.getRateMode()));
+        if (request.getSeed() != null) {
+            mtrx.setSeed(request.getSeed());
+        }
+        mtrx.setSparseStepping(request.isSparse());
+        return mtrx;
+    }
 
-        Simulation2DResponseDTO response = new Simulation2DResponseDTO();
-        try {
-            // Get the application's root directory
-            String rootDir = System.getProperty("user.dir");
-            // Resolve the full output path
-            Path outputDir = Paths.get(rootDir, relativePath);
-            if (!Files.exists(outputDir)) {
-                Files.createDirectories(outputDir);
+    /**
+     * Places {@code numPits} square pits of side {@code pitSize}, laid out
+     * row by row {@code pitSpacing} cells apart.
+     */
+    private void seedPits(ImageMatrix2D mtrx, Simulation2DRequestDTO request) {
+        int size = Math.max(1, request.getPitSize());
+        int pitch = size + Math.max(0, request.getPitSpacing());
+        int rows = mtrx.getRows();
+        int cols = mtrx.getCols();
+        int perRow = Math.max(1, cols / pitch);
+        for (int p = 0; p < request.getNumPits(); p++) {
+            int r0 = (p / perRow) * pitch + pitch / 2;
+            int c0 = (p % perRow) * pitch + pitch / 2;
+            for (int i = r0; i < Math.min(rows, r0 + size); i++) {
+                for (int j = c0; j < Math.min(cols, c0 + size); j++) {
+                    mtrx.setPixel(i, j, 1.0F);
+                }
             }
+        }
+    }
 
-            // Generate a synthetic simulation result image
-            int width = 500;
-            int height = 500;
-            BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2d = bufferedImage.createGraphics();
-
-            // Draw Background (Metal Surface)
-            g2d.setColor(new Color(220, 220, 220)); // Light Gray
-            g2d.fillRect(0, 0, width, height);
-
-            // Draw Grid
-            g2d.setColor(new Color(200, 200, 200));
-            int step = 50;
-            for (int i = 0; i < width; i += step) {
-                g2d.drawLine(i, 0, i, height);
-                g2d.drawLine(0, i, width, i);
+    /**
+     * Builds the streamed event for the iteration just finished. The frame is
+     * only computed while someone has asked for frames.
+     */
+    private Simulation2DIterationDTO iterationEvent(Simulation2DJob job, ImageMatrix2D mtrx, String stat,
+                                                    String wavelet, String events) {
+        int rows = mtrx.getRows();
+        int cols = mtrx.getCols();
+        int block = Math.max(1, (Math.max(rows, cols) + frameSize - 1) / frameSize);
+        int[][] frame = job.hasFrameSubscribers()
+                ? new int[(rows + block - 1) / block][(cols + block - 1) / block] : null;
+        int corroded = 0;
+        float maxDepth = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                float v = mtrx.getPixel(i, j);
+                if (v > 0) {
+                    corroded++;
+                    maxDepth = Math.max(maxDepth, v);
+                    if (frame != null) {
+                        int[] frameRow = frame[i / block];
+                        frameRow[j / block] = Math.max(frameRow[j / block], (int) Math.min(v, 255f));
+                    }
+                }
             }
+        }
+
+        Simulation2DIterationDTO event = new Simulation2DIterationDTO();
+        event.setJobId(job.getId());
+        event.setIteration(job.getIteration());
+        event.setTotalIterations(job.getRequest().getNoIterations());
+        event.setStat2D(stat);
+        event.setWavelet2D(wavelet);
+        event.setEvents(events);
+        event.setCorrosionPercentage(100.0 * corroded / ((double) rows * cols));
+        event.setMaxDepth(maxDepth);
+        event.setFrame(frame);
+        return event;
+    }
 
-            // Draw Pits (Randomly placed based on inputs)
-            g2d.setColor(new Color(180, 50, 50)); // Rust Red
-            Random random = new Random();
-            int pitCount = (numPits > 0) ? numPits : 5;
-
-            for (int i = 0; i < pitCount; i++) {
-                int x = random.nextInt(width - 40) + 20;
-                int y = random.nextInt(height - 40) + 20;
-                int size = random.nextInt(30) + 20;
-                g2d.fillOval(x, y, size, size);
-
-                // Add some "depth" shading
-                g2d.setColor(new Color(139, 0, 0));
-                g2d.drawOval(x, y, size, size);
-                g2d.setColor(new Color(180, 50, 50)); // Reset
+    private Simulation2DResponseDTO buildResponse(Simulation2DJob job, ImageMatrix2D mtrx, Path outputDir,
+                                                  HistogramStats histogram, String events) {
+        int rows = mtrx.getRows();
+        int cols = mtrx.getCols();
+        int corroded = 0;
+        float maxDepth = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                float v = mtrx.getPixel(i, j);
+                if (v > 0) {
+                    corroded++;
+                }
+                maxDepth = Math.max(maxDepth, v);
             }
+        }
 
-            g2d.dispose();
-
-            // Save the image
-            String resultImageName = "result_" + System.currentTimeMillis() + ".png";
-            Path resultImagePath = outputDir.resolve(resultImageName);
-            ImageIO.write(bufferedImage, "png", resultImagePath.toFile());
-
-            // Example stats
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("corrosionPercentage", (double) pitCount * 2.5); // Mockcalc
-            stats.put("maxDepth", 0.42);
-            stats.put("analysisResult", "Multi-pit simulation completed successfully.");
-
-            response.setSuccess(true);
-            response.setMessage("Simulation completed successfully.");
-            // Return the processed image path relative to the server root (must match
-            // WebConfig handler)
-            // WebConfig serves /output/** from file:output/
-            // So if relativePath is "output/sim2d/", the URL path is "/output/sim2d/"
-            String webPath = relativePath.startsWith("output") ? "/" + relativePath : "/output/" + relativePath;
-            // Normalize slashes
-            webPath = webPath.replace("\\", "/");
-            if (!webPath.endsWith("/"))
-                webPath += "/";
-
-            response.setProcessedImagePath(webPath + resultImageName);
-            response.setStats(stats);
-            response.setPitSize(15.5);
-            response.setPitGrowth(0.045);
-        } catch (IOException e) {
-            response.setSuccess(false);
-            response.setMessage("Failed to create output directory or save result: " + e.getMessage());
-            e.printStackTrace();
+        BufferedImage image = render(mtrx);
+        String imageName = "result.png";
+        String eventsLine = events;
+        CompletableFuture<Void> png = CompletableFuture.runAsync(
+                () -> writeImage(image, outputDir.resolve(imageName)), simulationIoExecutor);
+        CompletableFuture<Void> others = CompletableFuture.runAsync(
+                () -> writeLines(outputDir.resolve("Others.txt"), "Initiated,Died,Grown,Saturated\n" + eventsLine + "\n"),
+                simulationIoExecutor);
+        CompletableFuture.allOf(png, others).join();
+
+        double corrodedFraction = (double) corroded / ((double) rows * cols);
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("corrosionDetected", corroded > 0);
+        stats.put("corrosionPercentage", corrodedFraction * 100.0);
+        stats.put("maxDepth", maxDepth);
+        stats.put("iterations", job.getIteration());
+        if (histogram != null) {
+            stats.put("skew", histogram.skew());
+            stats.put("energy", histogram.energy());
+            stats.put("entropy", histogram.entropy());
         }
+        stats.put("analysisResult", String.format("%d of %d cells corroded after %d iterations.",
+                corroded, rows * cols, job.getIteration()));
+
+        Simulation2DResponseDTO response = new Simulation2DResponseDTO();
+        response.setSuccess(true);
+        response.setMessage("Simulation completed successfully.");
+        response.setJobId(job.getId());
+        response.setProcessedImagePath(webPath(job.getRequest()) + job.getId() + "/" + imageName);
+        response.setStats(stats);
+        response.setPitSize((double) corroded);
+        response.setPitGrowth(job.getIteration() > 0 ? (double) corroded / job.getIteration() : 0.0);
         return response;
     }
-}
\ No newline at end of file
+
+    /** Draws the lattice, sound metal in grey and corroded cells shaded by depth. */
+    private BufferedImage render(ImageMatrix2D mtrx) {
+        int rows = mtrx.getRows();
+        int cols = mtrx.getCols();
+        int scale = Math.max(1, IMAGE_SIZE / Math.max(rows, cols));
+        BufferedImage image = new BufferedImage(cols * scale, rows * scale, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                float v = mtrx.getPixel(i, j);
+                int rgb;
+                if (v <= 0) {
+                    rgb = 0xDCDCDC;
+                } else {
+                    float depth = Math.min(v, 255f) / 255f;
+                    int r = (int) (200 - 90 * depth);
+                    int g = (int) (120 - 100 * depth);
+                    int b = (int) (80 - 60 * depth);
+                    rgb = (r << 16) | (g << 8) | b;
+                }
+                for (int y = i * scale; y < (i + 1) * scale; y++) {
+                    for (int x = j * scale; x < (j + 1) * scale; x++) {
+                        image.setRGB(x, y, rgb);
+                    }
+                }
+            }
+        }
+        return image;
+    }
+
+    private static void writeImage(BufferedImage image, Path file) {
+        try {
+            ImageIO.write(image, "png", file.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeLines(Path file, String content) {
+        try {
+            Files.writeString(file, content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void validateRequest(Simulation2DRequestDTO request) {
+        if (request == null)
+            throw new IllegalArgumentException("Request cannot be null");
+        if (request.getNoRows() <= 0 || request.getNoRows() > MAX_LATTICE_SIZE)
+            throw new IllegalArgumentException("Number of rows must be between 1 and " + MAX_LATTICE_SIZE);
+        if (request.getNoColumns() <= 0 || request.getNoColumns() > MAX_LATTICE_SIZE)
+            throw new IllegalArgumentException("Number of columns must be between 1 and " + MAX_LATTICE_SIZE);
+        if (request.getNoIterations() <= 0)
+            throw new IllegalArgumentException("Number of iterations must be positive");
+        if (request.getNumPits() < 0 || request.getPitSize() < 0 || request.getPitSpacing() < 0)
+            throw new IllegalArgumentException("Pit settings cannot be negative");
+        GridBackend.fromName(request.getGridBackend());
+        RateMode.fromName(request.getRateMode());
+    }
+
+    private Path resolveOutputDir(Simulation2DRequestDTO request) {
+        return Paths.get(System.getProperty("user.dir"), relativePath(request));
+    }
+
+    private static String relativePath(Simulation2DRequestDTO request) {
+        String path = request.getPath();
+        return path == null || path.isBlank() ? "output/sim2d/" : path;
+    }
+
+    /**
+     * URL prefix the output directory is served under; WebConfig serves
+     * /output/** from file:output/.
+     */
+    private static String webPath(Simulation2DRequestDTO request) {
+        String relativePath = relativePath(request);
+        String webPath = relativePath.startsWith("output") ? "/" + relativePath : "/output/" + relativePath;
+        webPath = webPath.replace("\\", "/");
+        if (!webPath.endsWith("/"))
+            webPath += "/";
+        return webPath;
+    }
+
+    /** Drops the oldest finished jobs once more than the retention limit are held. */
+    private void pruneFinishedJobs() {
+        int excess = jobs.size() - maxRetainedJobs + 1;
+        if (excess <= 0) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(Simulation2DJob::isFinished)
+                .sorted(Comparator.comparingLong(Simulation2DJob::getCreatedAt))
+                .limit(excess)
+                .map(Simulation2DJob::getId)
+                .toList()
+                .forEach(jobs::remove);
+    }
+}
@@ -0,0 +1,67 @@
+package com.simulation.legacy;
+
+/**
+ * Occupancy bitmaps for sparse stepping of an {@link ImageMatrix2D} lattice.
+ * The lattice is cut into {@code TILE x TILE} tiles, and for each tile the
+ * bitmaps record whether the front and back pixel buffers may hold a non-zero
+ * cell. Like the pixel buffers, the two bitmaps swap after every step.
+ * <p>
+ * A tile whose 3x3 block of neighbouring tiles is empty in the front buffer
+ * is quiescent: every cell in it is zero and so are all its neighbours.
+ */
+final class ActiveTiles {
+    static final int TILE = 32;
+
+    final int tileRows;
+    final int tileCols;
+    private boolean[] front;
+    private boolean[] back;
+
+    ActiveTiles(LatticeGrid grid) {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        tileRows = (rows + TILE - 1) / TILE;
+        tileCols = (cols + TILE - 1) / TILE;
+        front = new boolean[tileRows * tileCols];
+        back = new boolean[tileRows * tileCols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (grid.getPixel(i, j) != 0) {
+                    front[(i / TILE) * tileCols + j / TILE] = true;
+                }
+            }
+        }
+        // Nothing is known about the back buffer yet.
+        java.util.Arrays.fill(back, true);
+    }
+
+    boolean isActive(int tr, int tc) {
+        for (int r = Math.max(0, tr - 1); r <= Math.min(tileRows - 1, tr + 1); r++) {
+            for (int c = Math.max(0, tc - 1); c <= Math.min(tileCols - 1, tc + 1); c++) {
+                if (front[r * tileCols + c]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    boolean isBackOccupied(int tr, int tc) {
+        return back[tr * tileCols + tc];
+    }
+
+    void setBackOccupied(int tr, int tc, boolean occupied) {
+        back[tr * tileCols + tc] = occupied;
+    }
+
+    /** Records a write to the front buffer made outside of a step. */
+    void markFront(int i, int j) {
+        front[(i / TILE) * tileCols + j / TILE] = true;
+    }
+
+    void swap() {
+        boolean[] t = front;
+        front = back;
+        back = t;
+    }
+}
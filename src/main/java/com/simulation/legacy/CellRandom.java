@@ -0,0 +1,59 @@
+package com.simulation.legacy;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Uniform random source for the CA. A stream is positioned on a cell before
+ * the draws for that cell, so a keyed implementation can produce the same
+ * numbers for a cell no matter which thread or band steps it.
+ * <p>
+ * Each band of a step uses its own instance; instances are not thread-safe.
+ */
+interface CellRandom {
+
+    void position(long step, int row, int col);
+
+    double nextDouble();
+
+    /** Non-reproducible stream drawing from {@link ThreadLocalRandom}. */
+    static CellRandom unseeded() {
+        return new CellRandom() {
+            @Override
+            public void position(long step, int row, int col) {
+            }
+
+            @Override
+            public double nextDouble() {
+                return ThreadLocalRandom.current().nextDouble();
+            }
+        };
+    }
+
+    /**
+     * Counter-based stream: each cell's sequence is a SplitMix64 sequence
+     * whose start is a hash of {@code (seed, step, row, col)}.
+     */
+    static CellRandom keyed(long seed) {
+        return new CellRandom() {
+            private long state;
+
+            @Override
+            public void position(long step, int row, int col) {
+                long key = mix64(seed ^ mix64(step));
+                state = mix64(key ^ (((long) row << 32) | (col & 0xffffffffL)));
+            }
+
+            @Override
+            public double nextDouble() {
+                state += 0x9e3779b97f4a7c15L;
+                return (mix64(state) >>> 11) * 0x1.0p-53;
+            }
+        };
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,57 @@
+package com.simulation.legacy;
+
+import java.util.concurrent.atomic.DoubleAccumulator;
+
+/**
+ * Returns the rates of one {@link CorrosionRates} while comparing every value
+ * against a reference, keeping the largest relative difference per rate.
+ */
+final class CheckedRates implements CorrosionRates {
+    private final CorrosionRates rates;
+    private final CorrosionRates reference;
+    private final DoubleAccumulator[] maxError = new DoubleAccumulator[4];
+
+    CheckedRates(CorrosionRates rates, CorrosionRates reference) {
+        this.rates = rates;
+        this.reference = reference;
+        for (int i = 0; i < maxError.length; i++) {
+            maxError[i] = new DoubleAccumulator(Math::max, 0.0);
+        }
+    }
+
+    @Override
+    public double birth(double temp, double pot, double concen) {
+        return check(0, rates.birth(temp, pot, concen), reference.birth(temp, pot, concen));
+    }
+
+    @Override
+    public double death(double ph, double temp, double pot) {
+        return check(1, rates.death(ph, temp, pot), reference.death(ph, temp, pot));
+    }
+
+    @Override
+    public double transition(double temp) {
+        return check(2, rates.transition(temp), reference.transition(temp));
+    }
+
+    @Override
+    public double growth(double ph, double temp, double concen) {
+        return check(3, rates.growth(ph, temp, concen), reference.growth(ph, temp, concen));
+    }
+
+    /** Largest relative error seen so far for birth, death, transition and growth. */
+    double[] getMaxRelativeErrors() {
+        double[] errors = new double[maxError.length];
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] = maxError[i].get();
+        }
+        return errors;
+    }
+
+    private double check(int rate, double value, double expected) {
+        if (expected != 0.0) {
+            maxError[rate].accumulate(Math.abs(value - expected) / Math.abs(expected));
+        }
+        return value;
+    }
+}
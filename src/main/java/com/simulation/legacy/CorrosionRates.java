@@ -0,0 +1,16 @@
+package com.simulation.legacy;
+
+/**
+ * Per-cell event rates used by the CA in {@link ImageMatrix2D}. Inputs are
+ * the clamped cell parameters.
+ */
+interface CorrosionRates {
+
+    double birth(double temp, double pot, double concen);
+
+    double death(double ph, double temp, double pot);
+
+    double transition(double temp);
+
+    double growth(double ph, double temp, double concen);
+}
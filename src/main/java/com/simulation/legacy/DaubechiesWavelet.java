@@ -0,0 +1,184 @@
+package com.simulation.legacy;
+
+import java.util.Arrays;
+
+/**
+ * One level of the periodic 2D Daubechies transform (D2/D4/D6/D8) used for
+ * the wavelet features. Only the decimated outputs are computed, the wrapped
+ * source index of every tap is tabulated once per lattice size, and the
+ * scratch buffers are reused between calls.
+ * <p>
+ * {@link #approximation} computes just the LL band: the row pass skips the
+ * high-pass half and the column pass only runs over the low-pass columns.
+ * <p>
+ * The filter coefficients are the ones the features have always been
+ * computed with. Not thread-safe; each matrix owns its own instance.
+ */
+public final class DaubechiesWavelet
+{
+    private final double lo[];
+    private final double hi[];
+
+    private int rows = -1;
+    private int cols = -1;
+    private int rowTaps[];
+    private int colTaps[];
+    private float rowBuf[];
+    private float pass[][];
+    private float ll[][];
+    private double acc[];
+
+    private DaubechiesWavelet(double lo[], double hi[])
+    {
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    /** The filter with {@code taps} coefficients; anything but 4, 6 or 8 gives D2. */
+    public static DaubechiesWavelet of(int taps)
+    {
+        switch(taps)
+        {
+        case 4:
+            return new DaubechiesWavelet(
+                new double[] {0.48299999999999998D, 0.83650000000000002D, 0.22409999999999999D, -0.12939999999999999D},
+                new double[] {-0.12939999999999999D, -0.22409999999999999D, 0.83650000000000002D, -0.48299999999999998D});
+        case 6:
+            return new DaubechiesWavelet(
+                new double[] {0.3327D, 0.80689999999999995D, 0.45989999999999998D, -0.13500000000000001D, -0.085400000000000004D, 0.035200000000000002D},
+                new double[] {0.035200000000000002D, 0.085400000000000004D, -0.13500000000000001D, -0.45989999999999998D, 0.80689999999999995D, -0.3327D});
+        case 8:
+            return new DaubechiesWavelet(
+                new double[] {0.23039999999999999D, 0.71479999999999999D, 0.63090000000000002D, -0.028000000000000001D, -0.187D, 0.030800000000000001D, 0.032899999999999999D, -0.0106D},
+                new double[] {-0.0106D, -0.032899999999999999D, 0.030800000000000001D, 0.187D, -0.028000000000000001D, -0.63090000000000002D, 0.71479999999999999D, -0.23039999999999999D});
+        default:
+            return new DaubechiesWavelet(
+                new double[] {0.70709999999999995D, 0.70709999999999995D},
+                new double[] {0.70709999999999995D, -0.70709999999999995D});
+        }
+    }
+
+    public int taps()
+    {
+        return lo.length;
+    }
+
+    /**
+     * The LL band of {@code px}, {@code rows / 2} by {@code cols / 2}. The
+     * returned array is reused by the next call.
+     */
+    public float[][] approximation(float px[][], int rows, int cols)
+    {
+        prepare(rows, cols);
+        for(int l = 0; l < rows; l++)
+            filterRow(px[l], pass[l], lo, 0, cols / 2);
+        lowColumns();
+        return ll;
+    }
+
+    float[][] approximation(LatticeGrid g)
+    {
+        int rows = g.getRows();
+        int cols = g.getCols();
+        prepare(rows, cols);
+        for(int l = 0; l < rows; l++)
+        {
+            for(int j = 0; j < cols; j++)
+                rowBuf[j] = g.getPixel(l, j);
+            filterRow(rowBuf, pass[l], lo, 0, cols / 2);
+        }
+        lowColumns();
+        return ll;
+    }
+
+    /**
+     * The full single-level transform of {@code px} into {@code out}, laid
+     * out as LL, HL / LH, HH quadrants with the low-pass halves first.
+     */
+    public void transform(float px[][], int rows, int cols, float out[][])
+    {
+        prepare(rows, cols);
+        for(int l = 0; l < rows; l++)
+        {
+            filterRow(px[l], pass[l], lo, 0, cols / 2);
+            filterRow(px[l], pass[l], hi, cols / 2, cols);
+        }
+        filterColumns(lo, 0, rows / 2, cols, out);
+        filterColumns(hi, rows / 2, rows, cols, out);
+    }
+
+    private void prepare(int rows, int cols)
+    {
+        if(rows == this.rows && cols == this.cols)
+            return;
+        this.rows = rows;
+        this.cols = cols;
+        rowTaps = wrapTable(cols);
+        colTaps = wrapTable(rows);
+        rowBuf = new float[cols];
+        pass = new float[rows][cols];
+        ll = new float[rows / 2][cols / 2];
+        acc = new double[cols];
+    }
+
+    /**
+     * Source index of tap {@code t} for output {@code o} of either half,
+     * {@code (2 o - L / 2 + t) mod n}, at {@code [o * L + t]}.
+     */
+    private int[] wrapTable(int n)
+    {
+        int len = lo.length;
+        int outputs = n - n / 2;
+        int idx[] = new int[outputs * len];
+        for(int o = 0; o < outputs; o++)
+        {
+            for(int t = 0; t < len; t++)
+                idx[o * len + t] = Math.floorMod(o * 2 - len / 2 + t, n);
+        }
+        return idx;
+    }
+
+    /** Outputs {@code from..to} of {@code out}, relative to {@code from}. */
+    private void filterRow(float in[], float out[], double filter[], int from, int to)
+    {
+        int len = filter.length;
+        for(int k = from; k < to; k++)
+        {
+            int base = (k - from) * len;
+            double d = 0.0D;
+            for(int t = 0; t < len; t++)
+                d += (double)in[rowTaps[base + t]] * filter[t];
+            out[k] = (float)d;
+        }
+    }
+
+    private void lowColumns()
+    {
+        filterColumns(lo, 0, rows / 2, cols / 2, ll);
+    }
+
+    /**
+     * Filters columns {@code 0..width} of the row pass into output rows
+     * {@code from..to}. Each output row is accumulated tap by tap across the
+     * whole row, so the column pass streams through memory row-wise.
+     */
+    private void filterColumns(double filter[], int from, int to, int width, float out[][])
+    {
+        int len = filter.length;
+        for(int k = from; k < to; k++)
+        {
+            int base = (k - from) * len;
+            Arrays.fill(acc, 0, width, 0.0D);
+            for(int t = 0; t < len; t++)
+            {
+                float src[] = pass[colTaps[base + t]];
+                double w = filter[t];
+                for(int c = 0; c < width; c++)
+                    acc[c] += (double)src[c] * w;
+            }
+            float dst[] = out[k];
+            for(int c = 0; c < width; c++)
+                dst[c] = (float)acc[c];
+        }
+    }
+}
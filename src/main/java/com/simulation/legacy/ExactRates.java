@@ -0,0 +1,31 @@
+package com.simulation.legacy;
+
+/**
+ * The rate formulas as originally written in {@code ImageMatrix2D.applyCA}.
+ */
+final class ExactRates implements CorrosionRates {
+    static final ExactRates INSTANCE = new ExactRates();
+
+    private ExactRates() {
+    }
+
+    @Override
+    public double birth(double temp, double pot, double concen) {
+        return (6.7572*60*Math.pow(10,-2))* concen * (Math.pow(2.7182,(0.5*96454/6.023/Math.pow(10,23)/temp*(pot-0.086))))/40;
+    }
+
+    @Override
+    public double death(double ph, double temp, double pot) {
+        return (2.2137 * 60 * Math.pow(10,13))* Math.pow (10, (-14+ph)) * (Math.pow(2.7182,(-0.5*96454/temp/8.314*(pot-0.001))))*2;
+    }
+
+    @Override
+    public double transition(double temp) {
+        return (5 * Math.pow(10,2)*60)*Math.pow (2.7182,(-30000/8.314/temp)) * 10;
+    }
+
+    @Override
+    public double growth(double ph, double temp, double concen) {
+        return Math.pow(2.7182, (13.409-(5558.7/temp)-0.087*ph + 0.56965 * concen)) * 400;
+    }
+}
@@ -0,0 +1,96 @@
+package com.simulation.legacy;
+
+/**
+ * {@link LatticeGrid} backed by one contiguous row-major array per field, so a
+ * sweep over the lattice walks memory linearly instead of chasing one row
+ * object per line.
+ */
+final class FlatLatticeGrid implements LatticeGrid {
+    private final int rows;
+    private final int cols;
+    private final int stride;
+    private float[] front;
+    private float[] back;
+    private final float[] prob;
+    private final float[] init;
+    private final double[][] params;
+
+    FlatLatticeGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        int n = rows * cols;
+        stride = cols + 2;
+        front = new float[(rows + 2) * stride];
+        back = new float[(rows + 2) * stride];
+        prob = new float[n];
+        init = new float[(rows + 2) * stride];
+        params = new double[4][n];
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public float getPixel(int i, int j) {
+        return front[(i + 1) * stride + j + 1];
+    }
+
+    @Override
+    public void setPixel(int i, int j, float v) {
+        front[(i + 1) * stride + j + 1] = v;
+    }
+
+    @Override
+    public float getPadded(int i, int j) {
+        return front[i * stride + j];
+    }
+
+    @Override
+    public void setNext(int i, int j, float v) {
+        back[(i + 1) * stride + j + 1] = v;
+    }
+
+    @Override
+    public void swap() {
+        float[] t = front;
+        front = back;
+        back = t;
+    }
+
+    @Override
+    public float getProb(int i, int j) {
+        return prob[i * cols + j];
+    }
+
+    @Override
+    public void setProb(int i, int j, float v) {
+        prob[i * cols + j] = v;
+    }
+
+    @Override
+    public float getInit(int i, int j) {
+        return init[i * stride + j];
+    }
+
+    @Override
+    public void setInit(int i, int j, float v) {
+        init[i * stride + j] = v;
+    }
+
+    @Override
+    public double getParam(int p, int i, int j) {
+        return params[p][i * cols + j];
+    }
+
+    @Override
+    public void setParam(int p, int i, int j, double v) {
+        params[p][i * cols + j] = v;
+    }
+}
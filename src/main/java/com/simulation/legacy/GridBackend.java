@@ -0,0 +1,26 @@
+package com.simulation.legacy;
+
+/**
+ * Storage layout used for the cell state of an {@link ImageMatrix2D} lattice.
+ */
+public enum GridBackend {
+    /** One {@code float[]}/{@code double[]} object per row, as in the original code. */
+    JAGGED,
+    /** Contiguous row-major primitive arrays, one per field. */
+    FLAT;
+
+    /**
+     * Resolves a backend name as sent by clients; {@code null} or blank selects
+     * {@link #JAGGED}.
+     */
+    public static GridBackend fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return JAGGED;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    LatticeGrid create(int rows, int cols) {
+        return this == FLAT ? new FlatLatticeGrid(rows, cols) : new JaggedLatticeGrid(rows, cols);
+    }
+}
@@ -0,0 +1,91 @@
+package com.simulation.legacy;
+
+/**
+ * Computes {@link HistogramStats} over integer grey levels clamped to
+ * [-999, 999]. Values are counted into reusable {@code int} bins and every
+ * statistic is accumulated in one pass over the occupied bins, which are
+ * cleared on the way, so a call allocates nothing but its result.
+ * <p>
+ * Not thread-safe; each matrix owns its own kernel.
+ */
+public final class HistogramKernel {
+    private static final int MAX_LEVEL = 999;
+    private static final double LOG2 = Math.log(2D);
+
+    private final int[] bins = new int[2 * MAX_LEVEL + 1];
+    private int lo = bins.length;
+    private int hi = -1;
+    private int count;
+
+    public HistogramStats compute(float af[][], int rows, int cols)
+    {
+        for(int i = 0; i < rows; i++)
+        {
+            float row[] = af[i];
+            for(int j = 0; j < cols; j++)
+                add(row[j]);
+        }
+        return finish();
+    }
+
+    HistogramStats compute(LatticeGrid g)
+    {
+        int rows = g.getRows();
+        int cols = g.getCols();
+        for(int i = 0; i < rows; i++)
+        {
+            for(int j = 0; j < cols; j++)
+                add(g.getPixel(i, j));
+        }
+        return finish();
+    }
+
+    private void add(float v)
+    {
+        int l = (int)v;
+        if(l < -MAX_LEVEL)
+            l = -MAX_LEVEL;
+        if(l > MAX_LEVEL)
+            l = MAX_LEVEL;
+        int b = l + MAX_LEVEL;
+        bins[b]++;
+        if(b < lo)
+            lo = b;
+        if(b > hi)
+            hi = b;
+        count++;
+    }
+
+    /**
+     * Raw moments, energy and entropy in one sweep; the central moments
+     * follow from the raw ones.
+     */
+    private HistogramStats finish()
+    {
+        double n = count;
+        double m1 = 0, m2 = 0, m3 = 0, energy = 0, entropy = 0;
+        for(int b = lo; b <= hi; b++)
+        {
+            int c = bins[b];
+            if(c == 0)
+                continue;
+            bins[b] = 0;
+            double p = c / n;
+            double v = b - MAX_LEVEL;
+            double pv = p * v;
+            m1 += pv;
+            m2 += pv * v;
+            m3 += pv * v * v;
+            energy += p * p;
+            entropy -= p * Math.log(p);
+        }
+        lo = bins.length;
+        hi = -1;
+        count = 0;
+
+        double variance = Math.max(0D, m2 - m1 * m1);
+        double std = Math.sqrt(variance);
+        double third = m3 - 3D * m1 * m2 + 2D * m1 * m1 * m1;
+        return new HistogramStats(m1, std, third / (std * std * std), energy, entropy / LOG2);
+    }
+}
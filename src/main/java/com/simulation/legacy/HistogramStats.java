@@ -0,0 +1,26 @@
+package com.simulation.legacy;
+
+/**
+ * Grey-level histogram statistics of a lattice or wavelet band: mean,
+ * standard deviation, skew, energy (sum of squared bin probabilities) and
+ * entropy in bits.
+ */
+public record HistogramStats(double mean, double std, double skew, double energy, double entropy) {
+
+    /** Entropy over energy, both truncated as they are printed. */
+    public double ratio() {
+        return truncate(entropy) / truncate(energy);
+    }
+
+    /**
+     * The legacy {@code "skew,energy,entropy,ratio"} string, the first three
+     * truncated to three decimals.
+     */
+    public String format() {
+        return String.format("%3.3f,%3.3f,%3.3f,%3.3f", truncate(skew), truncate(energy), truncate(entropy), ratio());
+    }
+
+    private static double truncate(double v) {
+        return (double)(int)(v * 1000D) / 1000D;
+    }
+}
@@ -19,6 +19,9 @@ public class ImageMatrix
 {
 	public String[] Ratio1;
 	public String[] Ratio2;
+	private final HistogramKernel histogram = new HistogramKernel();
+	private DaubechiesWavelet wavelet;
+	private int waveletTaps;
 	public int itrCnt;
 	//  public int iter;
 	public int iterationNo;
@@ -98,80 +101,12 @@ public class ImageMatrix
 	{
 		//	Cnt++;
 		Ratio1[0] = histogram2D(Pixels, Rows, Cols);
-		//  System.out.println("histogram2D(Pixels, Rows, Cols):"+histogram2D(Pixels, Rows, Cols));
-		return histogram2D(Pixels, Rows, Cols);
+		return Ratio1[0];
 	}
 
 	public String histogram2D(float af[][], int i, int j)
 	{
-		float af1[] = new float[1000];
-		float af2[] = new float[1000];
-		int k = 0;
-		float f1 = 0.0F;
-		float f2 = 0.0F;
-		float f3 = 0.0F;
-		float f4 = 0.0F;
-		float f5 = 0.0F;
-		double s =0.0D;
-		double e1 =0.0D;
-		double e2 =0.0D;
-
-		for(int l = 0; l < 1000; l++)
-		{
-			af1[l] = 0.0F;
-			af2[l] = 0.0F;
-		}
-
-		for(int i1 = 0; i1 < i; i1++)
-		{
-			for(int j1 = 0; j1 < j; j1++)
-			{
-				int l1 = (int)af[i1][j1];
-				if(l1 < -999)
-					l1 = -999;
-				if(l1 > 999)
-					l1 = 999;
-				k++;
-				if(l1 < 0)
-					af2[-l1] = af2[-l1] + 1.0F;
-				else
-					af1[l1] = af1[l1] + 1.0F;
-			}
-
-		}
-
-		for(int k1 = 0; k1 < 1000; k1++)
-		{
-			af1[k1] = af1[k1] / (float)k;
-			af2[k1] = af2[k1] / (float)k;
-			f1 += af1[k1] * (float)k1;
-			f1 -= af2[k1] * (float)k1;
-			f4 += af1[k1] * af1[k1];
-			f4 += af2[k1] * af2[k1];
-			if((double)af1[k1] > 9.9999999999999994E-012D)
-				f5 = (float)((double)f5 + ((double)(-af1[k1]) * Math.log(af1[k1])) / Math.log(2D));
-			if((double)af2[k1] > 9.9999999999999994E-012D)
-				f5 = (float)((double)f5 + ((double)(-af2[k1]) * Math.log(af2[k1])) / Math.log(2D));
-		}
-
-		for(int i2 = 0; i2 < 1000; i2++)
-		{
-			f2 += ((float)i2 - f1) * ((float)i2 - f1) * af1[i2];
-			f2 += ((float)(-i2) - f1) * ((float)(-i2) - f1) * af2[i2];
-			f3 += ((float)i2 - f1) * ((float)i2 - f1) * ((float)i2 - f1) * af1[i2];
-			f3 += ((float)(-i2) - f1) * ((float)(-i2) - f1) * ((float)(-i2) - f1) * af2[i2];
-		}
-
-		f2 = (float)Math.sqrt(f2);
-		f3 = f3 / f2 / f2 / f2;
-		// 1st returned parameter Skew, 2nd-> Energy, 3rd-> Entropy
-		s= ((double)(int)(f3 * 1000F) / 1000D);
-		e1 = ((double)(int)(f4 * 1000F) / 1000D);
-		e2 =((double)(int)(f5 * 1000F) / 1000D);
-
-
-		//return String.format("%3.3f, %3.3f, %3.3f", ((double)(int)(f3 * 1000F) / 1000D) , ((double)(int)(f4 * 1000F) / 1000D), ((double)(int)(f5 * 1000F) / 1000D));
-		return String.format("%3.3f,%3.3f,%3.3f,%3.3f", s , e1, e2, (e2/e1));
+		return histogram.compute(af, i, j).format();
 	}
 
 	public BufferedImage renderImage() {
@@ -196,129 +131,19 @@ public class ImageMatrix
 
 	public String wavelet2D(int i)
 	{
+		Ratio2[0] = histogram2D(wavelet(i).approximation(Pixels, Rows, Cols), Rows / 2, Cols / 2);
+		return "," + Ratio2[0];
+	}
 
-		double ad[] = new double[i];
-		double ad1[] = new double[i];
-		if(i == 4)
-		{
-			ad[0] = 0.48299999999999998D;
-			ad[1] = 0.83650000000000002D;
-			ad[2] = 0.22409999999999999D;
-			ad[3] = -0.12939999999999999D;
-			ad1[0] = -0.12939999999999999D;
-			ad1[1] = -0.22409999999999999D;
-			ad1[2] = 0.83650000000000002D;
-			ad1[3] = -0.48299999999999998D;
-		} else
-			if(i == 6)
-			{
-				ad[0] = 0.3327D;
-				ad[1] = 0.80689999999999995D;
-				ad[2] = 0.45989999999999998D;
-				ad[3] = -0.13500000000000001D;
-				ad[4] = -0.085400000000000004D;
-				ad[5] = 0.035200000000000002D;
-				ad1[0] = 0.035200000000000002D;
-				ad1[1] = 0.085400000000000004D;
-				ad1[2] = -0.13500000000000001D;
-				ad1[3] = -0.45989999999999998D;
-				ad1[4] = 0.80689999999999995D;
-				ad1[5] = -0.3327D;
-			} else
-				if(i == 8)
-				{
-					ad[0] = 0.23039999999999999D;
-					ad[1] = 0.71479999999999999D;
-					ad[2] = 0.63090000000000002D;
-					ad[3] = -0.028000000000000001D;
-					ad[4] = -0.187D;
-					ad[5] = 0.030800000000000001D;
-					ad[6] = 0.032899999999999999D;
-					ad[7] = -0.0106D;
-					ad1[0] = -0.0106D;
-					ad1[1] = -0.032899999999999999D;
-					ad1[2] = 0.030800000000000001D;
-					ad1[3] = 0.187D;
-					ad1[4] = -0.028000000000000001D;
-					ad1[5] = -0.63090000000000002D;
-					ad1[6] = 0.71479999999999999D;
-					ad1[7] = -0.23039999999999999D;
-				} else
-				{
-					ad[0] = 0.70709999999999995D;
-					ad[1] = 0.70709999999999995D;
-					ad1[0] = 0.70709999999999995D;
-					ad1[1] = -0.70709999999999995D;
-				}
-		float af[][] = new float[Rows][Cols];
-		float af1[][] = new float[Rows][Cols];
-		float af2[][] = new float[Rows / 2][Cols / 2];
-		int j = ad.length;
-		// System.out.println("J:"+j);
-
-		int k = ad1.length;
-		for(int l = 0; l < Rows; l++)
-		{
-			for(int i1 = 0; i1 < Cols / 2; i1++)
-			{
-				//	System.out.println("Pixels:["+l+"]["+i1+"]:"+Pixels[l][i1]); 
-				double d = 0.0D;
-				for(int l2 = 0; l2 < ad.length; l2++){
-					//	System.out.println("ad[12]:"+ad[l2]);
-					d += (double)Pixels[l][((i1 * 2 - j / 2) + l2 + Cols) % Cols] * ad[l2];
-					//   System.out.print("\nPixels["+l+"]["+i1+"]:"+Pixels[1][i1]);
-					//System.out.println("d:"+d);
-				}
-
-
-				af1[l][i1] = (float)d;
-			}
-
-			for(int k1 = Cols / 2; k1 < Cols; k1++)
-			{
-				double d1 = 0.0D;
-				for(int i3 = 0; i3 < ad1.length; i3++)
-					d1 += (double)Pixels[l][(((k1 - Cols / 2) * 2 - k / 2) + i3 + Cols) % Cols] * ad1[i3];
-
-				af1[l][k1] = (float)d1;
-			}
-
-		}
-
-		for(int j1 = 0; j1 < Cols; j1++)
-		{
-			for(int l1 = 0; l1 < Rows / 2; l1++)
-			{
-				double d2 = 0.0D;
-				for(int j3 = 0; j3 < ad.length; j3++)
-					d2 += (double)af1[((l1 * 2 - j / 2) + j3 + Rows) % Rows][j1] * ad[j3];
-
-				af[l1][j1] = (float)d2;
-			}
-
-			for(int j2 = Rows / 2; j2 < Rows; j2++)
-			{
-				double d3 = 0.0D;
-				for(int k3 = 0; k3 < ad1.length; k3++)
-					d3 += (double)af1[(((j2 - Rows / 2) * 2 - k / 2) + k3 + Rows) % Rows][j1] * ad1[k3];
-
-				af[j2][j1] = (float)d3;
-			}
-
-		}
-
-		for(int i2 = 0; i2 < Rows / 2; i2++)
+	/** The wavelet for {@code i} taps, kept while callers keep asking for the same one. */
+	private DaubechiesWavelet wavelet(int i)
+	{
+		if(wavelet == null || waveletTaps != i)
 		{
-			for(int k2 = 0; k2 < Cols / 2; k2++)
-				af2[i2][k2] = af[i2][k2];
-
+			wavelet = DaubechiesWavelet.of(i);
+			waveletTaps = i;
 		}
-
-		String s = "," + histogram2D(af2, Rows / 2, Cols / 2);
-
-		Ratio2[0] = histogram2D(af2, Rows / 2, Cols / 2);
-
-		return s;
+		return wavelet;
 	}
 
 	public void paint(Graphics2D g) {
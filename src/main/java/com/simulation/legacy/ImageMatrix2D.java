@@ -4,10 +4,17 @@ import java.awt.Graphics;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 
 public class ImageMatrix2D
 {
+   // not sure if we need max and min values ( confirm with professor)
+   static final double tmax=320, phmax=5.0, potmax=0.7, concmax=0.4;
+   static final double tmin=250, phmin=3, potmin=0.4, concmin=0.1;
+   private static final int MIN_BAND_ROWS = 16;
+
    public String[] Ratio1;
    public String[] Ratio2;
    public int itrCnt;
@@ -21,16 +28,22 @@ public class ImageMatrix2D
    public int widthCntTot;
    public int heightCntTot;
    public String syspath;
-   private float Pixels[][];
-   private float init[][];
-   private float prob[][];
-   
-   private double param1[][]; 
-   private double param2[][];
-   private double param3[][];
-   private double param4[][];
+   private LatticeGrid grid;
+   private final HistogramKernel histogram = new HistogramKernel();
+   private DaubechiesWavelet wavelet;
+   private int waveletTaps;
+   private GridBackend backend;
+   private ForkJoinPool stepPool;
+   private RateMode rateMode = RateMode.EXACT;
+   private CorrosionRates rates = rateMode.create();
+   private double birthBound = birthBound(rates);
+   private ActiveTiles activeTiles;
+   private int activeTileCount;
+   private double[] inputs;
+   private boolean seeded;
+   private long seed;
+   private long stepNo;
   
-   double temp1;
    int ini=0;
    int dea=0;
    int gro=0;
@@ -45,33 +58,48 @@ public class ImageMatrix2D
    ArrayList redpixels = new ArrayList();
   
     public ImageMatrix2D(int i, int j, int k,int iter,String path, double input1,double input2,double input3,double input4)
+    {
+        this(i, j, k, iter, path, input1, input2, input3, input4, GridBackend.JAGGED);
+    }
+
+    public ImageMatrix2D(int i, int j, int k,int iter,String path, double input1,double input2,double input3,double input4, GridBackend gridBackend)
     {
         Rows = i;
         Cols = j;
         f = k;
-        Pixels = new float[Rows][Cols];
-        init = new float[Rows + 2][Cols + 2];
-        prob = new float[Rows][Cols];
-        
-        param1 = new double[Rows][Cols];
-    	param2 = new double[Rows][Cols];
-    	param3 = new double[Rows][Cols];
-    	param4 = new double[Rows][Cols];
+        backend = gridBackend;
+        grid = gridBackend.create(Rows, Cols);
+        inputs = new double[] {input1, input2, input3, input4}; //ph, temp, pot, concen
     	
         itrCnt =iter;
         syspath =path;
         PitGrowthArray = new String[iter];
         PitSize = new String[iter];
+        initFields(CellRandom.unseeded());
+      Ratio1 = new String[1];
+      Ratio2 = new String[1];
+
+    }
+
+    public ImageMatrix2D()
+    {
+    }
+
+    private void initFields(CellRandom rnd)
+    {
         for(int l = Rows - 1; l >= 0; l--)
         {
             for(int i1 = Cols - 1; i1 >= 0; i1--)
             {
-                Pixels[l][i1] = 0.0F;
-                prob[l][i1] = (float)Math.random();
-                param1[l][i1]=input1; //ph
-                param2[l][i1]=input2; //temp
-                param3[l][i1]=input3; //pot
-                param4[l][i1]=input4; //concen
+                rnd.position(-1L, l, i1);
+                grid.setPixel(l, i1, 0.0F);
+                grid.setProb(l, i1, (float)rnd.nextDouble());
+                // Clamped as the first step would, so cells skipped by
+                // sparse stepping see the same values.
+                grid.setParam(LatticeGrid.PH, l, i1, clamp(inputs[LatticeGrid.PH], phmin, phmax));
+                grid.setParam(LatticeGrid.TEMP, l, i1, clamp(inputs[LatticeGrid.TEMP], tmin, tmax));
+                grid.setParam(LatticeGrid.POT, l, i1, clamp(inputs[LatticeGrid.POT], potmin, potmax));
+                grid.setParam(LatticeGrid.CONCEN, l, i1, clamp(inputs[LatticeGrid.CONCEN], concmin, concmax));
             }
 
         }
@@ -79,28 +107,34 @@ public class ImageMatrix2D
         for(int j1 = 0; j1 < Rows + 2; j1++)
         {
             for(int k1 = 0; k1 < Cols + 2; k1++){
-                init[j1][k1] = (float)(Math.random() - 0.10000000000000001D);
+                rnd.position(-2L, j1, k1);
+                grid.setInit(j1, k1, (float)(rnd.nextDouble() - 0.10000000000000001D));
             //    System.out.println(" init[j1][k1]:"+ init[j1][k1]);
             }
 
         }
-      Ratio1 = new String[1];
-      Ratio2 = new String[1];
-
     }
 
-    public ImageMatrix2D()
+    private static double clamp(double v, double min, double max)
     {
+        return v > max ? max : (v < min ? min : v);
     }
 
     public float getPixel(int i, int j)
     {
-        return Pixels[i][j];
+        return grid.getPixel(i, j);
     }
 
     public void setPixel(int i, int j, float f1)
     {
-        Pixels[i][j] = f1;
+        grid.setPixel(i, j, f1);
+        if(activeTiles != null && f1 != 0)
+            activeTiles.markFront(i, j);
+    }
+
+    public GridBackend getGridBackend()
+    {
+        return backend;
     }
 
     public int getRows()
@@ -113,339 +147,381 @@ public class ImageMatrix2D
         return Cols;
     }
 
+    /**
+     * Histogram statistics of the lattice. {@link #stat2D()} is the same
+     * figures formatted; callers that only need the numbers skip the
+     * formatting.
+     */
+    public HistogramStats stats2D()
+    {
+        return histogram.compute(grid);
+    }
+
     public String stat2D()
     {
-    //	Cnt++;
-    	Ratio1[0] = histogram2D(Pixels, Rows, Cols);
-         //  System.out.println("histogram2D(Pixels, Rows, Cols):"+histogram2D(Pixels, Rows, Cols));
-        return histogram2D(Pixels, Rows, Cols);
+        String s = stats2D().format();
+        Ratio1[0] = s;
+        return s;
     }
 
     public String histogram2D(float af[][], int i, int j)
     {
-        float af1[] = new float[1000];
-        float af2[] = new float[1000];
-        int k = 0;
-        float f1 = 0.0F; // mean
-        float f2 = 0.0F; //std
-        float f3 = 0.0F;  //skew
-        float f4 = 0.0F;  // energy
-        float f5 = 0.0F;  // entropy
-        double s =0.0D;
-        double e1 =0.0D;
-        double e2 =0.0D;
-        
-        for(int l = 0; l < 1000; l++)
+        return histogram.compute(af, i, j).format();
+    }
+
+    public String wavelet2D(int i)
+    {
+        Ratio2[0] = histogram2D(wavelet(i).approximation(grid), Rows / 2, Cols / 2);
+        return "," + Ratio2[0];
+    }
+
+    /** The wavelet for {@code i} taps, kept while callers keep asking for the same one. */
+    private DaubechiesWavelet wavelet(int i)
+    {
+        if(wavelet == null || waveletTaps != i)
         {
-            af1[l] = 0.0F;
-            af2[l] = 0.0F;
+            wavelet = DaubechiesWavelet.of(i);
+            waveletTaps = i;
         }
+        return wavelet;
+    }
 
-        for(int i1 = 0; i1 < i; i1++)
-        {
-            for(int j1 = 0; j1 < j; j1++)
-            {
-                int l1 = (int)af[i1][j1];
-                if(l1 < -999)
-                    l1 = -999;
-                if(l1 > 999)
-                    l1 = 999;
-                k++;
-                if(l1 < 0)
-                    af2[-l1] = af2[-l1] + 1.0F;
-                else
-                    af1[l1] = af1[l1] + 1.0F;
-            }
+    /**
+     * Runs subsequent {@link #simulate} steps as row bands on the given pool,
+     * or single-threaded when {@code null} (the default).
+     */
+    public void setStepPool(ForkJoinPool pool)
+    {
+        stepPool = pool;
+    }
 
-        }
+    public void setRateMode(RateMode mode)
+    {
+        rateMode = mode;
+        rates = mode.create();
+        birthBound = birthBound(rates);
+    }
 
-        for(int k1 = 0; k1 < 1000; k1++)
-        {
-            af1[k1] = af1[k1] / (float)k;
-            af2[k1] = af2[k1] / (float)k;
-            f1 += af1[k1] * (float)k1; // mean
-            f1 -= af2[k1] * (float)k1; 
-            f4 += af1[k1] * af1[k1];   // energy
-            f4 += af2[k1] * af2[k1];
-           //if((double)af1[k1] > 9.9999999999999994E-012D)
-            if((double)af1[k1] > 0.00000000001)
-                f5 = (float)((double)f5 + ((double)(-af1[k1]) * Math.log(af1[k1])) / Math.log(2D));
-            //if((double)af2[k1] > 9.9999999999999994E-012D)
-            if((double)af2[k1] >  0.00000000001)
-                f5 = (float)((double)f5 + ((double)(-af2[k1]) * Math.log(af2[k1])) / Math.log(2D));
-        }
+    /**
+     * Upper bound of the birth rate over the clamped parameter range. The
+     * rate grows with concentration and with {@code (pot - 0.086) / temp}.
+     */
+    private static double birthBound(CorrosionRates r)
+    {
+        return r.birth(tmin, potmax, concmax) * (1 + 1e-9);
+    }
 
-        for(int i2 = 0; i2 < 1000; i2++)
-        {   // f1-> mean, f2 ->std,f3-> skew
-            f2 += ((float)i2 - f1) * ((float)i2 - f1) * af1[i2];
-            f2 += ((float)(-i2) - f1) * ((float)(-i2) - f1) * af2[i2];
-            f3 += ((float)i2 - f1) * ((float)i2 - f1) * ((float)i2 - f1) * af1[i2];
-            f3 += ((float)(-i2) - f1) * ((float)(-i2) - f1) * ((float)(-i2) - f1) * af2[i2];
-        }
+    /**
+     * Switches sparse stepping on or off. In sparse mode only tiles that hold,
+     * or border, a non-zero cell get the full CA update. In the remaining
+     * quiescent tiles every cell is zero with zero neighbours, so the only
+     * possible event is a spontaneous birth; those are placed by sampling
+     * geometric gaps between candidate cells instead of drawing for each
+     * cell. The probability field, which does not feed into the CA, is not
+     * advanced in quiescent tiles.
+     */
+    public void setSparseStepping(boolean sparse)
+    {
+        activeTiles = sparse ? new ActiveTiles(grid) : null;
+    }
 
-        f2 = (float)Math.sqrt(f2);
-        f3 = f3 / f2 / f2 / f2;
-        // 1st returned parameter Skew, 2nd-> Energy, 3rd-> Entropy
-        s= ((double)(int)(f3 * 1000F) / 1000D);
-        e1 = ((double)(int)(f4 * 1000F) / 1000D);
-        e2 =((double)(int)(f5 * 1000F) / 1000D);
-       
-        
-      //return String.format("%3.3f, %3.3f, %3.3f", ((double)(int)(f3 * 1000F) / 1000D) , ((double)(int)(f4 * 1000F) / 1000D), ((double)(int)(f5 * 1000F) / 1000D));
-        return String.format("%3.3f,%3.3f,%3.3f,%3.3f", s , e1, e2, (e2/e1));
+    public boolean isSparseStepping()
+    {
+        return activeTiles != null;
     }
 
-    public String wavelet2D(int i)
+    /** Number of tiles given the full update in the last sparse step. */
+    public int getActiveTileCount()
     {
+        return activeTileCount;
+    }
 
-        double ad[] = new double[i]; // lowpass
-        double ad1[] = new double[i]; //highpass
-        if(i == 4)
-        {
-            ad[0] = 0.48299999999999998D;
-            ad[1] = 0.83650000000000002D;
-            ad[2] = 0.22409999999999999D;
-            ad[3] = -0.12939999999999999D;
-            ad1[0] = -0.12939999999999999D;
-            ad1[1] = -0.22409999999999999D;
-            ad1[2] = 0.83650000000000002D;
-            ad1[3] = -0.48299999999999998D;
-        } else
-        if(i == 6)
+    public RateMode getRateMode()
+    {
+        return rateMode;
+    }
+
+    /**
+     * Largest relative error of the tabulated birth, death, transition and
+     * growth rates against the exact formulas, as observed so far in
+     * {@link RateMode#TABLE_CHECKED} mode; all zero in the other modes.
+     */
+    public double[] getRateMaxRelativeErrors()
+    {
+        return rates instanceof CheckedRates ? ((CheckedRates) rates).getMaxRelativeErrors() : new double[4];
+    }
+
+    /**
+     * Makes the run reproducible: every random draw becomes a function of
+     * {@code (seed, step, row, col)}, so replays are bit-identical whatever
+     * the step pool. The initial fields are redrawn from the seed, so call
+     * this before the first step.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+        seeded = true;
+        stepNo = 0;
+        initFields(newRandom());
+    }
+
+    private CellRandom newRandom()
+    {
+        return seeded ? CellRandom.keyed(seed) : CellRandom.unseeded();
+    }
+
+    public String simulate(double d, double d1, double d2, double d3, double d4, double d5, double cs, int sf,int itrNo)
+    {
+    	// d =ph, d1 =pot, d2 = temp , d3 = concen
+    	iterationNo = itrNo;
+    //	System.out.print("In simulate canvas");
+        // The previous state is read from the front buffer (with its zero
+        // border) and the new state is written to the back buffer; the two
+        // are swapped once every cell has been updated. Each cell only reads
+        // the front buffer, so row bands can be stepped independently.
+        // In sparse mode the bands are made of tile rows instead of rows.
+        int units = activeTiles != null ? activeTiles.tileRows : Rows;
+        int minGrain = activeTiles != null ? 1 : MIN_BAND_ROWS;
+        StepCounters counters;
+        if(stepPool == null || units < 2 * minGrain)
         {
-            ad[0] = 0.3327D;
-            ad[1] = 0.80689999999999995D;
-            ad[2] = 0.45989999999999998D;
-            ad[3] = -0.13500000000000001D;
-            ad[4] = -0.085400000000000004D;
-            ad[5] = 0.035200000000000002D;
-            ad1[0] = 0.035200000000000002D;
-            ad1[1] = 0.085400000000000004D;
-            ad1[2] = -0.13500000000000001D;
-            ad1[3] = -0.45989999999999998D;
-            ad1[4] = 0.80689999999999995D;
-            ad1[5] = -0.3327D;
+            counters = new StepCounters();
+            stepBand(0, units, d, d1, d2, d3, d4, d5, cs, sf, newRandom(), counters);
         } else
-        if(i == 8)
         {
-            ad[0] = 0.23039999999999999D;
-            ad[1] = 0.71479999999999999D;
-            ad[2] = 0.63090000000000002D;
-            ad[3] = -0.028000000000000001D;
-            ad[4] = -0.187D;
-            ad[5] = 0.030800000000000001D;
-            ad[6] = 0.032899999999999999D;
-            ad[7] = -0.0106D;
-            ad1[0] = -0.0106D;
-            ad1[1] = -0.032899999999999999D;
-            ad1[2] = 0.030800000000000001D;
-            ad1[3] = 0.187D;
-            ad1[4] = -0.028000000000000001D;
-            ad1[5] = -0.63090000000000002D;
-            ad1[6] = 0.71479999999999999D;
-            ad1[7] = -0.23039999999999999D;
-        } else
+            int grain = Math.max(minGrain, units / (stepPool.getParallelism() * 4));
+            counters = stepPool.invoke(new BandStep(0, units, grain, d, d1, d2, d3, d4, d5, cs, sf));
+        }
+        grid.swap();
+        if(activeTiles != null)
         {
-            ad[0] = 0.70709999999999995D;
-            ad[1] = 0.70709999999999995D;
-            ad1[0] = 0.70709999999999995D;
-            ad1[1] = -0.70709999999999995D;
+            activeTiles.swap();
+            activeTileCount = counters.activeTiles;
         }
-        float af[][] = new float[Rows][Cols];
-        float af1[][] = new float[Rows][Cols];
-        float af2[][] = new float[Rows / 2][Cols / 2];
-        int j = ad.length;
-     //   System.out.println("J:"+j);
-       
-        int k = ad1.length;
-        for(int l = 0; l < Rows; l++)
+        stepNo++;
+        ini += counters.ini;
+        dea += counters.dea;
+        gro += counters.gro;
+        sat += counters.sat;
+
+       /* for(int i1 = Rows; i1 > 0; i1--)
         {
-            for(int i1 = 0; i1 < Cols / 2; i1++)
+            for(int j1 = Cols; j1 > 0; j1--)
             {
-            //	System.out.println("Pixels:["+l+"]["+i1+"]:"+Pixels[l][i1]); 
-                double d = 0.0D;
-                for(int l2 = 0; l2 < ad.length; l2++){
-                //	System.out.println("ad[12]:"+ad[l2]);
-                    d += (double)Pixels[l][((i1 * 2 - j / 2) + l2 + Cols) % Cols] * ad[l2];
-                    //System.out.println("d:"+d);
+                if((double)init[i1][j1] != 0.0D)
+                    init[i1][j1] += (Math.random() - 0.42999999999999999D) / 10D;
+                if(init[i1][j1] + (init[i1 - 1][j1] + init[i1 + 1][j1] + init[i1][j1 - 1] + init[i1][j1 + 1]) / 6F > 3F && (double)Pixels[i1 - 1][j1 - 1] < 0.01D){
+                	
+                    Pixels[i1 - 1][j1 - 1] = 4F;
+                  //  System.out.print("Pixels["+(i1- 1)+"]["+(j1 - 1)+"]:"+Pixels[i1 - 1][j1 - 1]);
                 }
-                
-
-                af1[l][i1] = (float)d;
             }
+        }*/
+        return Double.toString(((double)((int)(((ini))*1000)))/1000.0) + ",\t " + Double.toString((double)((int)(dea*1000)/1000.0)) + ",\t" + Double.toString((double)((int)(gro*1000)/1000.0))+ ",\t" + Double.toString((double)((int)(sat*1000)/1000.0))+ ", ";
+        
+        //return String.format("%5.3f, %5.3f, %5.3f",((double)(int)((d + d6) * 1000D) / 1000D), ((double)(int)((d1 + d7) * 1000D) / 1000D) ,  ((double)(int)((d3 + d8) * 1000D) / 1000D));
+    }
 
-            for(int k1 = Cols / 2; k1 < Cols; k1++)
+    private void stepBand(int u0, int u1, double d, double d1, double d2, double d3, double d4, double d5, double cs, int sf, CellRandom rnd, StepCounters counters)
+    {
+        if(activeTiles == null)
+        {
+            for(int k = u0; k < u1; k++)
             {
-                double d1 = 0.0D;
-                for(int i3 = 0; i3 < ad1.length; i3++)
-                    d1 += (double)Pixels[l][(((k1 - Cols / 2) * 2 - k / 2) + i3 + Cols) % Cols] * ad1[i3];
-
-                af1[l][k1] = (float)d1;
+                for(int l = 0; l < Cols; l++)
+                    stepCell(k, l, d, d1, d2, d3, d4, d5, cs, sf, rnd, counters);
             }
-
+            return;
         }
-
-        for(int j1 = 0; j1 < Cols; j1++)
+        int tile = ActiveTiles.TILE;
+        for(int tr = u0; tr < u1; tr++)
         {
-            for(int l1 = 0; l1 < Rows / 2; l1++)
+            int r0 = tr * tile, r1 = Math.min(Rows, r0 + tile);
+            for(int tc = 0; tc < activeTiles.tileCols; tc++)
             {
-                double d2 = 0.0D;
-                for(int j3 = 0; j3 < ad.length; j3++)
-                    d2 += (double)af1[((l1 * 2 - j / 2) + j3 + Rows) % Rows][j1] * ad[j3];
-
-                af[l1][j1] = (float)d2;
+                int c0 = tc * tile, c1 = Math.min(Cols, c0 + tile);
+                boolean occupied = false;
+                if(activeTiles.isActive(tr, tc))
+                {
+                    counters.activeTiles++;
+                    for(int k = r0; k < r1; k++)
+                    {
+                        for(int l = c0; l < c1; l++)
+                            occupied |= stepCell(k, l, d, d1, d2, d3, d4, d5, cs, sf, rnd, counters) != 0;
+                    }
+                } else
+                {
+                    occupied = stepQuiescentTile(tr * activeTiles.tileCols + tc, r0, r1, c0, c1, activeTiles.isBackOccupied(tr, tc), rnd, counters);
+                }
+                activeTiles.setBackOccupied(tr, tc, occupied);
             }
+        }
+    }
 
-            for(int j2 = Rows / 2; j2 < Rows; j2++)
+    /**
+     * Steps a tile whose cells and neighbours are all zero: each cell is born
+     * with its birth probability and stays zero otherwise. Candidates are
+     * drawn with the tile-wide bound {@code birthBound} by skipping
+     * geometrically distributed gaps, then thinned to the cell's own rate.
+     */
+    private boolean stepQuiescentTile(int tileNo, int r0, int r1, int c0, int c1, boolean backDirty, CellRandom rnd, StepCounters counters)
+    {
+        if(backDirty)
+        {
+            for(int k = r0; k < r1; k++)
             {
-                double d3 = 0.0D;
-                for(int k3 = 0; k3 < ad1.length; k3++)
-                    d3 += (double)af1[(((j2 - Rows / 2) * 2 - k / 2) + k3 + Rows) % Rows][j1] * ad1[k3];
-
-                af[j2][j1] = (float)d3;
+                for(int l = c0; l < c1; l++)
+                    grid.setNext(k, l, 0.0F);
             }
-
         }
-
-        for(int i2 = 0; i2 < Rows / 2; i2++)
+        if(birthBound <= 0)
+            return false;
+        int w = c1 - c0;
+        long n = (long)(r1 - r0) * w;
+        double logMiss = Math.log1p(-Math.min(birthBound, 1.0));
+        boolean born = false;
+        rnd.position(stepNo, -1 - tileNo, 0);
+        for(long idx = gap(rnd, logMiss); idx < n; idx += 1 + gap(rnd, logMiss))
         {
-            for(int k2 = 0; k2 < Cols / 2; k2++)
-                af2[i2][k2] = af[i2][k2];
-
+            int k = r0 + (int)(idx / w);
+            int l = c0 + (int)(idx % w);
+            double birthprob = rates.birth(grid.getParam(LatticeGrid.TEMP, k, l), grid.getParam(LatticeGrid.POT, k, l), grid.getParam(LatticeGrid.CONCEN, k, l));
+            if(rnd.nextDouble() * birthBound < birthprob)
+            {
+                grid.setNext(k, l, 1.0F);
+                counters.ini++;
+                born = true;
+            }
         }
+        return born;
+    }
 
-        String s = "," + histogram2D(af2, Rows / 2, Cols / 2);
-        
-        Ratio2[0] = histogram2D(af2, Rows / 2, Cols / 2);
-      
-        return s;
+    /** Number of cells skipped before the next birth candidate. */
+    private static long gap(CellRandom rnd, double logMiss)
+    {
+        double g = Math.floor(Math.log(1.0 - rnd.nextDouble()) / logMiss);
+        return g < Integer.MAX_VALUE ? (long)g : Integer.MAX_VALUE;
     }
 
-    public String simulate(double d, double d1, double d2, double d3, double d4, double d5, double cs, int sf,int itrNo)
+    private float stepCell(int k, int l, double d, double d1, double d2, double d3, double d4, double d5, double cs, int sf, CellRandom rnd, StepCounters counters)
     {
-    	// d =ph, d1 =pot, d2 = temp , d3 = concen
-    	// not sure if we need max and min values ( confirm with professor)
-    	double tmax=320, phmax=5.0, potmax=0.7, concmax=0.4;
-    	double tmin=250, phmin=3, potmin=0.4, concmin=0.1;
-    	
-    	iterationNo = itrNo;
-    //	System.out.print("In simulate canvas");
-        float af[][] = new float[Rows + 2][Cols + 2];
-    	double dh = 0, dp = 0, dc = 0, dt = 0;
+        double dh = 0, dp = 0, dc = 0, dt = 0;
         double d6 = 0.0D;
         double d7 = 0.0D;
         double d8 = 0.0D;
-        for(int i = 0; i < Rows; i++)
+        rnd.position(stepNo, k, l);
+        float p = grid.getProb(k, l);
+        if(rnd.nextDouble() < 0.75D)
+            p = p + (float)(rnd.nextDouble() - 0.5D) / 5F;
+        if(p < 0.0F)
+            p = p + 1.0F;
+        if(p > 1.0F)
+            p = p - 1.0F;
+        grid.setProb(k, l, p);
+        // Code added from Anuj's program to match the 2D Simulation program
+
+        float c = grid.getPadded(k + 1, l + 1);
+        if (c>40)
         {
-            for(int j = 0; j < Cols; j++)
-            {
-                af[i + 1][j + 1] = Pixels[i][j];
-            //    System.out.print("af[i + 1][j + 1]::"+af[i + 1][j + 1]);
-                af[0][j + 1] = 0.0F;
-                af[Rows + 1][j + 1] = 0.0F;
-            }
-
-            af[i + 1][0] = 0.0F;
-            af[i + 1][Cols + 1] = 0.0F;
+            dh = (rnd.nextDouble())/200.0*4.0;
+            dp = (rnd.nextDouble())/2000.0*4.0;
+            dc = (rnd.nextDouble())/800.0*4.0;
+            dt = (rnd.nextDouble())/25.0*4.0;
+        }
+        if (c<=40)
+        {
+            dh = (rnd.nextDouble())/200.0*(c/10.0);
+            dp = (rnd.nextDouble())/2000.0*(c/10.0);
+            dc = (rnd.nextDouble())/800.0*(c/10.0);
+            dt = (rnd.nextDouble())/25.0*(c/10.0);
         }
 
-        af[0][0] = 0.0F;
-        af[0][Cols + 1] = 0.0F;
-        af[Rows + 1][0] = 0.0F;
-        af[Rows + 1][Cols + 1] = 0.0F;
-        for(int k = 0; k < Rows; k++)
+        if (d==0) dh=0;
+        if (d1==0) dp=0;
+        if (d2==0) dt=0;
+        if (d3==0) dc=0;
+
+        double ph = grid.getParam(LatticeGrid.PH, k, l) + dh;
+        double temp = grid.getParam(LatticeGrid.TEMP, k, l) + dt;
+        double pot = grid.getParam(LatticeGrid.POT, k, l) + dp;
+        double concen = grid.getParam(LatticeGrid.CONCEN, k, l) + dc;
+
+        if (temp>tmax) temp=tmax;
+        if (ph>phmax) ph=phmax;
+        if (concen>concmax) concen=concmax;
+        if (pot>potmax) pot=potmax;
+
+        if (temp<tmin) temp=tmin;
+        if (ph<phmin) ph=phmin;
+        if (concen<concmin) concen=concmin;
+        if (pot<potmin) pot=potmin;
+
+        grid.setParam(LatticeGrid.PH, k, l, ph);
+        grid.setParam(LatticeGrid.TEMP, k, l, temp);
+        grid.setParam(LatticeGrid.POT, k, l, pot);
+        grid.setParam(LatticeGrid.CONCEN, k, l, concen);
+        // Change on 1/17
+        d6 = (rnd.nextDouble() - 0.5D) / 2D;
+        d7 = (rnd.nextDouble() - 0.5D) / 10D;
+        d8 = (rnd.nextDouble() - 0.5D) / 25D;
+        //Pixels[k][l] = (float)applyCA(af[k][l], af[k][l + 1], af[k][l + 2], af[k + 1][l], af[k + 1][l + 1], af[k + 1][l + 2], af[k + 2][l], af[k + 2][l + 1], af[k + 2][l + 2], d + d6, d1 + d7, d2, d3 + d8, d4, d5, prob[k][l],cs,sf);
+        float next = (float)applyCA(grid.getPadded(k, l), grid.getPadded(k, l + 1), grid.getPadded(k, l + 2), grid.getPadded(k + 1, l), c, grid.getPadded(k + 1, l + 2), grid.getPadded(k + 2, l), grid.getPadded(k + 2, l + 1), grid.getPadded(k + 2, l + 2), ph, pot, temp, concen, d4, d5, p,cs,sf, rnd);
+        grid.setNext(k, l, next);
+        if (c==0 && next>0)
+            counters.ini++;
+        if (c>0 && next==0)
+            counters.dea++;
+        if (c<=20 && next>20)
         {
-            for(int l = 0; l < Cols; l++)
-            {
-                if(Math.random() < 0.75D)
-                    prob[k][l] = prob[k][l] + (float)(Math.random() - 0.5D) / 5F;
-                if(prob[k][l] < 0.0F)
-                    prob[k][l] = prob[k][l] + 1.0F;
-                if(prob[k][l] > 1.0F)
-                    prob[k][l] = prob[k][l] - 1.0F;
-                // Code added from Anuj's program to match the 2D Simulation program
-             
-                if (af[k+1][l+1]>40)
-				{
-                	dh = (Math.random())/200.0*4.0;
-                	dp = (Math.random())/2000.0*4.0;
-                	dc = (Math.random())/800.0*4.0;
-                	dt = (Math.random())/25.0*4.0;
-				}
-                if (af[k+1][l+1]<=40)
-				{
-					dh = (Math.random())/200.0*(af[k+1][l+1]/10.0);
-					dp = (Math.random())/2000.0*(af[k+1][l+1]/10.0);
-					dc = (Math.random())/800.0*(af[k+1][l+1]/10.0);
-					dt = (Math.random())/25.0*(af[k+1][l+1]/10.0);
-				}
-			
-                if (d==0) dh=0;
-    			if (d1==0) dp=0;
-    			if (d2==0) dt=0;
-    			if (d3==0) dc=0;
-    			
-    			param1[k][l]+=dh;
-    			param2[k][l]+=dt;	
-    			param3[k][l]+=dp;
-    			param4[k][l]+=dc;
-    			
-    			temp1=Pixels[k][l];
-    			if (param2[k][l]>tmax) param2[k][l]=tmax;
-    			if (param1[k][l]>phmax) param1[k][l]=phmax;
-    			if (param4[k][l]>concmax) param4[k][l]=concmax;
-    			if (param3[k][l]>potmax) param3[k][l]=potmax;
-
-    			if (param2[k][l]<tmin) param2[k][l]=tmin;
-    			if (param1[k][l]<phmin) param1[k][l]=phmin;
-    			if (param4[k][l]<concmin) param4[k][l]=concmin;
-    			if (param3[k][l]<potmin) param3[k][l]=potmin;
-// Change on 1/17
-                d6 = (Math.random() - 0.5D) / 2D;
-                d7 = (Math.random() - 0.5D) / 10D;
-                d8 = (Math.random() - 0.5D) / 25D;
-                //Pixels[k][l] = (float)applyCA(af[k][l], af[k][l + 1], af[k][l + 2], af[k + 1][l], af[k + 1][l + 1], af[k + 1][l + 2], af[k + 2][l], af[k + 2][l + 1], af[k + 2][l + 2], d + d6, d1 + d7, d2, d3 + d8, d4, d5, prob[k][l],cs,sf);
-                Pixels[k][l] = (float)applyCA(af[k][l], af[k][l + 1], af[k][l + 2], af[k + 1][l], af[k + 1][l + 1], af[k + 1][l + 2], af[k + 2][l], af[k + 2][l + 1], af[k + 2][l + 2], param1[k][l], param3[k][l], param2[k][l], param4[k][l], d4, d5, prob[k][l],cs,sf);
-                if (temp1==0 && Pixels[k][l]>0)
-				{
-				ini++;
-				}
-
-                if (temp1>0 && Pixels[k][l]==0)
-				{
-				dea++;
-				}				
-
-                if (temp1<=20 && Pixels[k][l]>20)
-				{
-				gro++;
-				if (temp1<255 && Pixels[k][l]==255)
-					{
-					sat++;
-					}
-				}
-
-             //   System.out.print("\nPixels["+k+"]["+l+"]:"+Pixels[k][l]);
-            }
+            counters.gro++;
+            if (c<255 && next==255)
+                counters.sat++;
+        }
+        return next;
+    }
 
+    /**
+     * Steps a range of rows (tile rows in sparse mode), splitting it in half
+     * until it is no larger than the grain. Each band fills its own counters, which are summed on the
+     * way back up.
+     */
+    private final class BandStep extends RecursiveTask<StepCounters>
+    {
+        private final int r0, r1, grain;
+        private final double d, d1, d2, d3, d4, d5, cs;
+        private final int sf;
+
+        BandStep(int r0, int r1, int grain, double d, double d1, double d2, double d3, double d4, double d5, double cs, int sf)
+        {
+            this.r0 = r0;
+            this.r1 = r1;
+            this.grain = grain;
+            this.d = d;
+            this.d1 = d1;
+            this.d2 = d2;
+            this.d3 = d3;
+            this.d4 = d4;
+            this.d5 = d5;
+            this.cs = cs;
+            this.sf = sf;
         }
 
-       /* for(int i1 = Rows; i1 > 0; i1--)
+        @Override
+        protected StepCounters compute()
         {
-            for(int j1 = Cols; j1 > 0; j1--)
+            if(r1 - r0 <= grain)
             {
-                if((double)init[i1][j1] != 0.0D)
-                    init[i1][j1] += (Math.random() - 0.42999999999999999D) / 10D;
-                if(init[i1][j1] + (init[i1 - 1][j1] + init[i1 + 1][j1] + init[i1][j1 - 1] + init[i1][j1 + 1]) / 6F > 3F && (double)Pixels[i1 - 1][j1 - 1] < 0.01D){
-                	
-                    Pixels[i1 - 1][j1 - 1] = 4F;
-                  //  System.out.print("Pixels["+(i1- 1)+"]["+(j1 - 1)+"]:"+Pixels[i1 - 1][j1 - 1]);
-                }
+                StepCounters counters = new StepCounters();
+                stepBand(r0, r1, d, d1, d2, d3, d4, d5, cs, sf, newRandom(), counters);
+                return counters;
             }
-        }*/
-        return Double.toString(((double)((int)(((ini))*1000)))/1000.0) + ",\t " + Double.toString((double)((int)(dea*1000)/1000.0)) + ",\t" + Double.toString((double)((int)(gro*1000)/1000.0))+ ",\t" + Double.toString((double)((int)(sat*1000)/1000.0))+ ", ";
-        
-        //return String.format("%5.3f, %5.3f, %5.3f",((double)(int)((d + d6) * 1000D) / 1000D), ((double)(int)((d1 + d7) * 1000D) / 1000D) ,  ((double)(int)((d3 + d8) * 1000D) / 1000D));
+            int mid = (r0 + r1) >>> 1;
+            BandStep upper = new BandStep(r0, mid, grain, d, d1, d2, d3, d4, d5, cs, sf);
+            upper.fork();
+            StepCounters counters = new BandStep(mid, r1, grain, d, d1, d2, d3, d4, d5, cs, sf).compute();
+            counters.add(upper.join());
+            return counters;
+        }
     }
 
    /* private double applyCA(float f1, float f2, float f3, float f4, float f5, float f6, float f7, 
@@ -514,40 +590,13 @@ public class ImageMatrix2D
             d6 = 255D;
         return d6;
     }*/
-    private double applyCA(float nw, float n, float ne, float w, float c, float e, float sw, float s, float se, double ph, double pot, double temp, double concen, double diffus, double charge, float prob,double cs, int sf)
+    private double applyCA(float nw, float n, float ne, float w, float c, float e, float sw, float s, float se, double ph, double pot, double temp, double concen, double diffus, double charge, float prob,double cs, int sf, CellRandom rnd)
 
 	{
 
-	double z=c;
-
-	double k;
-	
-	if(cs!=0.0){
-        //d7 = (((d - 7D) * (d - 7D) * (d <= 4D || d > 8.5D ? 1.0D : 0.0D) * Math.exp(d1) * d3 * d4 * d5) / d2) *Math.pow(cs, sf);
-        k=((ph-7)*(ph-7)*((ph>4)&&(ph<=8.5)?0:1)*Math.exp(pot)*concen*diffus*charge/temp)*Math.pow(cs, sf);
-       }else
-       {
-    	  k=(ph-7)*(ph-7)*((ph>4)&&(ph<=8.5)?0:1)*Math.exp(pot)*concen*diffus*charge/temp;
-      
-     }
-	
-
-	double d1=2;
-
-	double d2=3;
-
-
-
-	int i, j;
 	double d;
 	double re=0;
 
-	double birthprob=(6.7572*60*Math.pow(10,-2))* concen * (Math.pow(2.7182,(0.5*96454/6.023/Math.pow(10,23)/temp*(pot-0.086))))/40;
-	double deathprob=(2.2137 * 60 * Math.pow(10,13))* Math.pow (10, (-14+ph)) * (Math.pow(2.7182,(-0.5*96454/temp/8.314*(pot-0.001))))*2;
-	double tranrate=(5 * Math.pow(10,2)*60)*Math.pow (2.7182,(-30000/8.314/temp)) * 10;
-	double growthrate=Math.pow(2.7182, (13.409-(5558.7/temp)-0.087*ph + 0.56965 * concen)) * 400;
-
-
 	int in=0, in1=0;
 	int dn=0, dn1=0;
 
@@ -573,9 +622,11 @@ public class ImageMatrix2D
 	if (se>=20) dn1++;
 
 
-	d = Math.random();
+	d = rnd.nextDouble();
+	// Only the rate for the branch taken is evaluated.
 	if (c<1)
 		{
+		double birthprob=rates.birth(temp, pot, concen);
 		if (d<=birthprob || (in+dn)>=4)
 			{
 		re=1;
@@ -590,7 +641,7 @@ public class ImageMatrix2D
 
 	if (c>=1 && c<=6)
 		{
-		if (d<deathprob && (in+dn)<=4)
+		if (d<rates.death(ph, temp, pot) && (in+dn)<=4)
 			{
 			re=0;
 			return re;
@@ -599,13 +650,13 @@ public class ImageMatrix2D
 
 	if (c>=1 && c<=20)
 		{
-		re=c + tranrate;
+		re=c + rates.transition(temp);
 		return re;
 		}
 
 	if (c>20)
 		{
-		re=c+(int) (growthrate * (1+0.1*in1+0.05+dn1));
+		re=c+(int) (rates.growth(ph, temp, concen) * (1+0.1*in1+0.05+dn1));
 		}
 
 	if (re>255)
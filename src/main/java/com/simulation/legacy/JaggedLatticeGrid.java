@@ -0,0 +1,91 @@
+package com.simulation.legacy;
+
+/**
+ * {@link LatticeGrid} backed by {@code float[][]}/{@code double[][]} arrays.
+ */
+final class JaggedLatticeGrid implements LatticeGrid {
+    private final int rows;
+    private final int cols;
+    private float[][] front;
+    private float[][] back;
+    private final float[][] prob;
+    private final float[][] init;
+    private final double[][][] params;
+
+    JaggedLatticeGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        front = new float[rows + 2][cols + 2];
+        back = new float[rows + 2][cols + 2];
+        prob = new float[rows][cols];
+        init = new float[rows + 2][cols + 2];
+        params = new double[4][rows][cols];
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public float getPixel(int i, int j) {
+        return front[i + 1][j + 1];
+    }
+
+    @Override
+    public void setPixel(int i, int j, float v) {
+        front[i + 1][j + 1] = v;
+    }
+
+    @Override
+    public float getPadded(int i, int j) {
+        return front[i][j];
+    }
+
+    @Override
+    public void setNext(int i, int j, float v) {
+        back[i + 1][j + 1] = v;
+    }
+
+    @Override
+    public void swap() {
+        float[][] t = front;
+        front = back;
+        back = t;
+    }
+
+    @Override
+    public float getProb(int i, int j) {
+        return prob[i][j];
+    }
+
+    @Override
+    public void setProb(int i, int j, float v) {
+        prob[i][j] = v;
+    }
+
+    @Override
+    public float getInit(int i, int j) {
+        return init[i][j];
+    }
+
+    @Override
+    public void setInit(int i, int j, float v) {
+        init[i][j] = v;
+    }
+
+    @Override
+    public double getParam(int p, int i, int j) {
+        return params[p][i][j];
+    }
+
+    @Override
+    public void setParam(int p, int i, int j, double v) {
+        params[p][i][j] = v;
+    }
+}
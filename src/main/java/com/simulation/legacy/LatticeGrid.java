@@ -0,0 +1,48 @@
+package com.simulation.legacy;
+
+/**
+ * Per-cell state of an {@link ImageMatrix2D} lattice: pixel depth, the
+ * probability field, the initial seed field (with a one cell border) and the
+ * four environment parameters.
+ * <p>
+ * Pixels are double-buffered. {@link #getPixel} and {@link #getPadded} read
+ * the front (current) state, {@link #setNext} writes the back state, and
+ * {@link #swap} makes the back buffer current. Both buffers carry a one cell
+ * border that is never written and so stays zero, which is the boundary the
+ * CA expects.
+ */
+interface LatticeGrid {
+    int PH = 0;
+    int TEMP = 1;
+    int POT = 2;
+    int CONCEN = 3;
+
+    int getRows();
+
+    int getCols();
+
+    float getPixel(int i, int j);
+
+    void setPixel(int i, int j, float v);
+
+    /** Reads the front buffer in border coordinates, {@code (rows + 2) x (cols + 2)}. */
+    float getPadded(int i, int j);
+
+    /** Writes cell {@code (i, j)} of the back buffer. */
+    void setNext(int i, int j, float v);
+
+    void swap();
+
+    float getProb(int i, int j);
+
+    void setProb(int i, int j, float v);
+
+    /** Indexed over {@code (rows + 2) x (cols + 2)}. */
+    float getInit(int i, int j);
+
+    void setInit(int i, int j, float v);
+
+    double getParam(int p, int i, int j);
+
+    void setParam(int p, int i, int j, double v);
+}
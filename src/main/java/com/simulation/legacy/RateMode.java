@@ -0,0 +1,35 @@
+package com.simulation.legacy;
+
+/**
+ * How {@link ImageMatrix2D} evaluates the birth, death, transition and growth
+ * rates of a cell.
+ */
+public enum RateMode {
+    /** Evaluate the rate formulas for every cell that needs them. */
+    EXACT,
+    /** Interpolate precomputed tables over the clamped parameter ranges. */
+    TABLE,
+    /**
+     * Use the tables, but also evaluate the exact formulas and record the
+     * largest relative difference seen for each rate.
+     */
+    TABLE_CHECKED;
+
+    public static RateMode fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return EXACT;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    CorrosionRates create() {
+        switch (this) {
+            case TABLE:
+                return RateTable.INSTANCE;
+            case TABLE_CHECKED:
+                return new CheckedRates(RateTable.INSTANCE, ExactRates.INSTANCE);
+            default:
+                return ExactRates.INSTANCE;
+        }
+    }
+}
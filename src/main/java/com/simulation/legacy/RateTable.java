@@ -0,0 +1,88 @@
+package com.simulation.legacy;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Tabulated {@link CorrosionRates}. Every rate factors into one-dimensional
+ * terms: the potential/temperature exponents only depend on
+ * {@code (pot - k) / temp}, and the pH, temperature and concentration terms
+ * of the growth rate multiply. Each term is sampled once over the range the
+ * CA clamps its parameters to and linearly interpolated, so a lookup costs a
+ * few multiplies instead of several {@code Math.pow} calls.
+ */
+final class RateTable implements CorrosionRates {
+    static final RateTable INSTANCE = new RateTable();
+
+    private static final int BINS = 1024;
+    private static final double BIRTH_SCALE = (6.7572*60*Math.pow(10,-2))/40;
+    private static final double DEATH_SCALE = (2.2137 * 60 * Math.pow(10,13))*2;
+
+    private final Term birthExp;
+    private final Term deathExp;
+    private final Term deathPh;
+    private final Term transition;
+    private final Term growthTemp;
+    private final Term growthPh;
+    private final Term growthConcen;
+
+    private RateTable() {
+        double tmin = ImageMatrix2D.tmin, tmax = ImageMatrix2D.tmax;
+        birthExp = new Term((ImageMatrix2D.potmin - 0.086) / tmax, (ImageMatrix2D.potmax - 0.086) / tmin,
+                u -> Math.pow(2.7182, 0.5*96454/6.023/Math.pow(10,23)*u));
+        deathExp = new Term((ImageMatrix2D.potmin - 0.001) / tmax, (ImageMatrix2D.potmax - 0.001) / tmin,
+                u -> Math.pow(2.7182, -0.5*96454/8.314*u));
+        deathPh = new Term(ImageMatrix2D.phmin, ImageMatrix2D.phmax, ph -> Math.pow(10, -14 + ph));
+        transition = new Term(tmin, tmax, ExactRates.INSTANCE::transition);
+        growthTemp = new Term(tmin, tmax, t -> Math.pow(2.7182, 13.409 - 5558.7/t) * 400);
+        growthPh = new Term(ImageMatrix2D.phmin, ImageMatrix2D.phmax, ph -> Math.pow(2.7182, -0.087*ph));
+        growthConcen = new Term(ImageMatrix2D.concmin, ImageMatrix2D.concmax, c -> Math.pow(2.7182, 0.56965*c));
+    }
+
+    @Override
+    public double birth(double temp, double pot, double concen) {
+        return BIRTH_SCALE * concen * birthExp.at((pot - 0.086) / temp);
+    }
+
+    @Override
+    public double death(double ph, double temp, double pot) {
+        return DEATH_SCALE * deathPh.at(ph) * deathExp.at((pot - 0.001) / temp);
+    }
+
+    @Override
+    public double transition(double temp) {
+        return transition.at(temp);
+    }
+
+    @Override
+    public double growth(double ph, double temp, double concen) {
+        return growthTemp.at(temp) * growthPh.at(ph) * growthConcen.at(concen);
+    }
+
+    /** A function sampled at {@code BINS + 1} points over {@code [lo, hi]}. */
+    private static final class Term {
+        private final double lo;
+        private final double scale;
+        private final double[] values = new double[BINS + 1];
+
+        Term(double lo, double hi, DoubleUnaryOperator f) {
+            this.lo = lo;
+            this.scale = BINS / (hi - lo);
+            for (int i = 0; i <= BINS; i++) {
+                values[i] = f.applyAsDouble(lo + i / scale);
+            }
+        }
+
+        double at(double x) {
+            double pos = (x - lo) * scale;
+            if (pos <= 0) {
+                return values[0];
+            }
+            if (pos >= BINS) {
+                return values[BINS];
+            }
+            int i = (int) pos;
+            double frac = pos - i;
+            return values[i] + (values[i + 1] - values[i]) * frac;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.simulation.legacy;
 
 import java.io.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.zip.*;
 
 public class Sim2D {
@@ -26,6 +27,11 @@ public class Sim2D {
 	private String stressfact;
 	private String noIterations;
 	private String path;
+	private GridBackend gridBackend = GridBackend.JAGGED;
+	private ForkJoinPool stepPool;
+	private Long seed;
+	private RateMode rateMode = RateMode.EXACT;
+	private boolean sparseStepping;
 
 	public String fileName1;
 	public String fileName2;
@@ -56,6 +62,27 @@ public class Sim2D {
 		this.path = path;
 	}
 
+	public void setGridBackend(GridBackend gridBackend) {
+		this.gridBackend = gridBackend;
+	}
+
+	public void setStepPool(ForkJoinPool stepPool) {
+		this.stepPool = stepPool;
+	}
+
+	/** Seed for a reproducible run; {@code null} draws from an unseeded source. */
+	public void setSeed(Long seed) {
+		this.seed = seed;
+	}
+
+	public void setRateMode(RateMode rateMode) {
+		this.rateMode = rateMode;
+	}
+
+	public void setSparseStepping(boolean sparseStepping) {
+		this.sparseStepping = sparseStepping;
+	}
+
 	public void runSimulation() {
 		inputp1 = Double.parseDouble(param1);
 		inputp2 = Double.parseDouble(param2);
@@ -70,7 +97,13 @@ public class Sim2D {
 		iter = Integer.parseInt(noIterations);
 		PitSize = new String[iter];
 		PitGrowthArray = new String[iter];
-		mtrx = new ImageMatrix2D(i, j, scale, iter, path, inputp1, inputp2, inputp3, inputp4);
+		mtrx = new ImageMatrix2D(i, j, scale, iter, path, inputp1, inputp2, inputp3, inputp4, gridBackend);
+		mtrx.setStepPool(stepPool);
+		mtrx.setRateMode(rateMode);
+		mtrx.setSparseStepping(sparseStepping);
+		if (seed != null) {
+			mtrx.setSeed(seed);
+		}
 
 		mtrx_stat2D = new String[iter + 1];
 		mtrx_wavelet2D = new String[iter + 1];
@@ -90,10 +123,7 @@ public class Sim2D {
 			PitSize[t_count] = (t_count + 1) + "," + mtrx.getWidthCnt() + "," + mtrx.getHeightCnt();
 			t_count++;
 
-			try {
-				Thread.sleep(400L);
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
+			if (Thread.currentThread().isInterrupted()) {
 				break;
 			}
 		}
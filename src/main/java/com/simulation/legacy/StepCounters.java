@@ -0,0 +1,22 @@
+package com.simulation.legacy;
+
+/**
+ * Event counts from one CA step over part of the lattice: pit initiation,
+ * death, growth past depth 20 and saturation at 255, plus the number of
+ * tiles given the full update when stepping sparsely.
+ */
+final class StepCounters {
+    int ini;
+    int dea;
+    int gro;
+    int sat;
+    int activeTiles;
+
+    void add(StepCounters other) {
+        ini += other.ini;
+        dea += other.dea;
+        gro += other.gro;
+        sat += other.sat;
+        activeTiles += other.activeTiles;
+    }
+}
@@ -0,0 +1,70 @@
+package com.simulation.legacy.nsfisdas;
+
+/**
+ * The forward pass of one BPLayer: every upper unit's weighted sum of the
+ * lower layer's outputs, bias included, through the sigmoid.
+ * <p>
+ * {@link #INSTANCE} is the plain scalar loop, which gives exactly the
+ * results the layer has always given. The SIMD kernel in
+ * {@link BPVectorKernel} sums in a different order and may differ in the
+ * last bits, so it is only used when asked for: the JVM has to be started
+ * with {@code --add-modules jdk.incubator.vector -Dnsfisdas.bp.vector=true}.
+ */
+abstract class BPKernel
+{
+ static final BPKernel INSTANCE = create();
+
+ /**
+  * Sets {@code output[1..units]} to
+  * {@code sigmoid(gain * (weight[i][0..inputs] . input[0..inputs]))}.
+  */
+ abstract void propagate(float weight[][], float input[], int inputs, float gain, float output[], int units);
+
+ abstract String name();
+
+ private static BPKernel create()
+ {
+  // Only an opt-in is worth a message, so a normal run prints nothing
+  if (!Boolean.parseBoolean(System.getProperty("nsfisdas.bp.vector", "false")))
+   return new Scalar();
+  if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+  {
+   System.out.println(" Vector kernel unavailable, using scalar: jdk.incubator.vector is not loaded");
+   return new Scalar();
+  }
+  try
+  {
+   // Loaded by name so that nothing links against the incubator module without it
+   BPKernel kernel = (BPKernel) Class.forName("com.simulation.legacy.nsfisdas.BPVectorKernel")
+       .getDeclaredConstructor().newInstance();
+   System.out.println(" BP forward pass kernel: " + kernel.name());
+   return kernel;
+  }
+  catch (ReflectiveOperationException | LinkageError e)
+  {
+   System.out.println(" Vector kernel unavailable, using scalar: " + e);
+   return new Scalar();
+  }
+ }
+
+ static final class Scalar extends BPKernel
+ {
+  void propagate(float weight[][], float input[], int inputs, float gain, float output[], int units)
+  {
+   float sum;
+   for (int i = 1; i <= units; i++)
+   {
+    float w[] = weight[i];
+    sum = 0;
+    for (int j = 0; j <= inputs; j++)
+     sum = sum + w[j] * input[j];
+    output[i] = (float)(1 / (1 + Math.exp(-gain * sum)));
+   }
+  }
+
+  String name()
+  {
+   return "scalar";
+  }
+ }
+}
@@ -113,16 +113,17 @@ public class BPLayer
 
  public void propagateLayer( BPLayer upper)  //of lower
  {
-  float sum;
-  for(int i=1; i<=upper.Units; i++)
-  {
-   sum =0;
-   for(int j=0; j <=Units; j++)
-    {
-     sum = sum + upper.Weight[i][j] * Output[j] ;
-    }
-   upper.Output[i] = (float)( 1/(1 + Math.exp(-Gain * sum )));
-  }
+  BPKernel.INSTANCE.propagate(upper.Weight, Output, Units, Gain, upper.Output, upper.Units);
+ }
+
+ /**
+  * Same as propagateLayer, but reads this layer's outputs from {@code in}
+  * and writes the upper layer's to {@code out} instead of the layers' own
+  * Output arrays, so several threads can evaluate one network at once.
+  */
+ public void propagateInto(BPLayer upper, float in[], float out[])
+ {
+  BPKernel.INSTANCE.propagate(upper.Weight, in, Units, Gain, out, upper.Units);
  }
 
  public void propagateNet(BPLayer layerp1) //of layer l 
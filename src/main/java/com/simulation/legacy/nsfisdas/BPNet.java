@@ -1,11 +1,11 @@
 package com.simulation.legacy.nsfisdas;
 import java.util.*;
 import java.io.*;
-import java.net.URL;
-import org.springframework.core.io.ClassPathResource;
+import java.util.stream.IntStream;
 
 public class BPNet
 {
+ private static final int BATCH_CHUNK = 256;
 
  private int NumLayers = 4;
  private int N = 10; // number of input nodes/units/features
@@ -21,7 +21,6 @@ public class BPNet
  private float Error;
  private int Epoch = 10;
  private DataOutputStream wtToFile;
- private DataInputStream wtFromFile;
 
  public BPNet()
  {
@@ -29,39 +28,16 @@ public class BPNet
 
  public BPNet(String fileName)
  {
+  this(ModelBundle.net(fileName));
+ }
 
-   String filename1 = fileName;
-   
-   try 
-   {
-    File file = new ClassPathResource("legacy-resources/nsfisdas/" + filename1).getFile();
-    FileInputStream in = new FileInputStream(file);
-   // System.out.println("BP Net filename is :"+filename1);
-    wtFromFile = new DataInputStream(in);
-   }
-   catch ( FileNotFoundException filenotfound)
-   {
-    System.out.println("333 Could not open centerfile to read: " + filename1);
-  //  System.exit(0);
-   }
-    catch ( IOException e)
-   {
-    System.out.println(" IOException opening BPLossWeights: " + e.getMessage()); 
- //   System.exit(0);
-   }
-   try
-   {
-    NumLayers = wtFromFile.readInt();
-    N = wtFromFile.readInt();
-    M = wtFromFile.readInt();
-    Units = new int[NumLayers];
-
-    for(int i=0; i < Units.length; i++)
-    {
-     Units[i] = wtFromFile.readInt();
- 
-    }
-
+ /** A net with the given trained weights; they are copied, so it may be trained further. */
+ BPNet(ModelBundle.Net net)
+ {
+  NumLayers = net.numLayers;
+  N = net.inputs;
+  M = net.outputs;
+  Units = net.units();
 
   Layers = new BPLayer[NumLayers];
   
@@ -85,29 +61,9 @@ public class BPNet
   Alpha = 0.9f;
   Eta = 0.25f; // if changed here change in BPLayer also
   Gain = 1.0f;
-  
- float weights[][];
-    int ctr = 0;
-    for(int l = 1; l < NumLayers; l++)
-    {
-     weights = new float[Units[l] + 1][Units[l-1] + 2];
-     for(int i= 1; i <= Units[l]; i++)
-      {
-       for( int j=0; j <= Units[l-1]; j++)
-        {
-        
-          weights[i][j] = wtFromFile.readFloat();
-        }
-      }
-   
-     Layers[l].setWeights(weights); 
-    }
-   }
-   catch ( IOException e)
-   {
-    System.out.println(" IO Exception in writing center file: " + e.getMessage());
-   }
-  
+
+  for(int l = 1; l < NumLayers; l++)
+   Layers[l].setWeights(net.layerWeights(l));
  }
  
  public void RandomWeights()
@@ -240,6 +196,45 @@ public class BPNet
   //System.out.println(" Test Error "+ Error);
  }
 
+  /**
+   * Scores the first {@code count} rows of {@code Features} (inputs first, as
+   * for TestNet) into the matching rows of {@code Outputs}. Unlike TestNet it
+   * leaves the layers' Output arrays alone, so it can run on many threads;
+   * rows are split into chunks of BATCH_CHUNK across the common pool. The
+   * weights must not be trained meanwhile.
+   */
+  public void TestBatch(float Features[][], float Outputs[][], int count)
+  {
+   int chunks = (count + BATCH_CHUNK - 1) / BATCH_CHUNK;
+   IntStream range = IntStream.range(0, chunks);
+   if (chunks > 1)
+    range = range.parallel();
+   range.forEach(c -> {
+    float act[][] = new float[NumLayers][];
+    for (int l = 0; l < NumLayers; l++)
+    {
+     act[l] = new float[Units[l] + 1];
+     act[l][0] = 1; // the bias, as BPLayer.setBias
+    }
+    int end = Math.min(count, (c + 1) * BATCH_CHUNK);
+    for (int n = c * BATCH_CHUNK; n < end; n++)
+    {
+     System.arraycopy(Features[n], 0, act[0], 1, Units[0]);
+     for (int l = 0; l < NumLayers - 1; l++)
+      Layers[l].propagateInto(Layers[l + 1], act[l], act[l + 1]);
+     System.arraycopy(act[NumLayers - 1], 1, Outputs[n], 0, Units[NumLayers - 1]);
+    }
+   });
+  }
+
+  /** TestBatch over every row, returning one row of M outputs per feature vector. */
+  public float[][] TestBatch(float Features[][])
+  {
+   float Outputs[][] = new float[Features.length][M];
+   TestBatch(Features, Outputs, Features.length);
+   return Outputs;
+  }
+
   public void WeightstoFile(String fileName)
  {
    try 
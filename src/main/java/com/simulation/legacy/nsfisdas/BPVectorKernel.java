@@ -0,0 +1,159 @@
+package com.simulation.legacy.nsfisdas;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BPKernel on the JDK Vector API. Each weighted sum is a fused multiply-add
+ * across the vector with one lane reduction at the end, and the sigmoid is
+ * applied to a whole vector of sums at a time through the vectorised
+ * {@code EXP}. Only ever loaded through {@link BPKernel#INSTANCE}.
+ * <p>
+ * The layers are small (ten or so inputs), so the vector width is picked
+ * per layer: the widest the CPU has that still fills at least two vectors,
+ * which keeps the lane reduction and the scalar tail from dominating.
+ * Each width has its own copy of the loops: the JIT only intrinsifies
+ * vector code whose species is a constant, and a shared method taking the
+ * species as an argument fell back to the slow generic path.
+ */
+final class BPVectorKernel extends BPKernel
+{
+ private static final VectorSpecies<Float> S128 = FloatVector.SPECIES_128;
+ private static final VectorSpecies<Float> S256 = FloatVector.SPECIES_256;
+ private static final VectorSpecies<Float> S512 = FloatVector.SPECIES_512;
+ private static final int MAX_LANES = FloatVector.SPECIES_PREFERRED.length();
+
+ void propagate(float weight[][], float input[], int inputs, float gain, float output[], int units)
+ {
+  int n = inputs + 1;
+  if (MAX_LANES >= 16 && n >= 32)
+   sums512(weight, input, n, output, units);
+  else if (MAX_LANES >= 8 && n >= 16)
+   sums256(weight, input, n, output, units);
+  else if (MAX_LANES >= 4 && n >= 8)
+   sums128(weight, input, n, output, units);
+  else
+   scalarSums(weight, input, n, output, units);
+
+  if (MAX_LANES >= 16 && units >= 32)
+   sigmoid512(gain, output, units);
+  else if (MAX_LANES >= 8 && units >= 16)
+   sigmoid256(gain, output, units);
+  else if (MAX_LANES >= 4 && units >= 8)
+   sigmoid128(gain, output, units);
+  else
+   scalarSigmoid(gain, output, 1, units);
+ }
+
+ private static void sums128(float weight[][], float input[], int n, float output[], int units)
+ {
+  int bound = S128.loopBound(n);
+  for (int i = 1; i <= units; i++)
+  {
+   float w[] = weight[i];
+   FloatVector acc = FloatVector.zero(S128);
+   int j = 0;
+   for (; j < bound; j += S128.length())
+    acc = FloatVector.fromArray(S128, w, j).fma(FloatVector.fromArray(S128, input, j), acc);
+   float sum = acc.reduceLanes(VectorOperators.ADD);
+   for (; j < n; j++)
+    sum += w[j] * input[j];
+   output[i] = sum;
+  }
+ }
+
+ private static void sums256(float weight[][], float input[], int n, float output[], int units)
+ {
+  int bound = S256.loopBound(n);
+  for (int i = 1; i <= units; i++)
+  {
+   float w[] = weight[i];
+   FloatVector acc = FloatVector.zero(S256);
+   int j = 0;
+   for (; j < bound; j += S256.length())
+    acc = FloatVector.fromArray(S256, w, j).fma(FloatVector.fromArray(S256, input, j), acc);
+   float sum = acc.reduceLanes(VectorOperators.ADD);
+   for (; j < n; j++)
+    sum += w[j] * input[j];
+   output[i] = sum;
+  }
+ }
+
+ private static void sums512(float weight[][], float input[], int n, float output[], int units)
+ {
+  int bound = S512.loopBound(n);
+  for (int i = 1; i <= units; i++)
+  {
+   float w[] = weight[i];
+   FloatVector acc = FloatVector.zero(S512);
+   int j = 0;
+   for (; j < bound; j += S512.length())
+    acc = FloatVector.fromArray(S512, w, j).fma(FloatVector.fromArray(S512, input, j), acc);
+   float sum = acc.reduceLanes(VectorOperators.ADD);
+   for (; j < n; j++)
+    sum += w[j] * input[j];
+   output[i] = sum;
+  }
+ }
+
+ private static void scalarSums(float weight[][], float input[], int n, float output[], int units)
+ {
+  for (int i = 1; i <= units; i++)
+  {
+   float w[] = weight[i];
+   float sum = 0;
+   for (int j = 0; j < n; j++)
+    sum = sum + w[j] * input[j];
+   output[i] = sum;
+  }
+ }
+
+ /** 1 / (1 + exp(-gain * sum)) over output[1..units]. */
+ private static void sigmoid128(float gain, float output[], int units)
+ {
+  FloatVector one = FloatVector.broadcast(S128, 1f);
+  int i = 1;
+  for (; i + S128.length() <= units + 1; i += S128.length())
+  {
+   FloatVector s = FloatVector.fromArray(S128, output, i);
+   one.div(s.mul(-gain).lanewise(VectorOperators.EXP).add(1f)).intoArray(output, i);
+  }
+  scalarSigmoid(gain, output, i, units);
+ }
+
+ private static void sigmoid256(float gain, float output[], int units)
+ {
+  FloatVector one = FloatVector.broadcast(S256, 1f);
+  int i = 1;
+  for (; i + S256.length() <= units + 1; i += S256.length())
+  {
+   FloatVector s = FloatVector.fromArray(S256, output, i);
+   one.div(s.mul(-gain).lanewise(VectorOperators.EXP).add(1f)).intoArray(output, i);
+  }
+  scalarSigmoid(gain, output, i, units);
+ }
+
+ private static void sigmoid512(float gain, float output[], int units)
+ {
+  FloatVector one = FloatVector.broadcast(S512, 1f);
+  int i = 1;
+  for (; i + S512.length() <= units + 1; i += S512.length())
+  {
+   FloatVector s = FloatVector.fromArray(S512, output, i);
+   one.div(s.mul(-gain).lanewise(VectorOperators.EXP).add(1f)).intoArray(output, i);
+  }
+  scalarSigmoid(gain, output, i, units);
+ }
+
+ private static void scalarSigmoid(float gain, float output[], int from, int units)
+ {
+  for (int i = from; i <= units; i++)
+   output[i] = (float)(1 / (1 + Math.exp(-gain * output[i])));
+ }
+
+ String name()
+ {
+  return "vector-" + MAX_LANES;
+ }
+}
@@ -16,7 +16,7 @@ public class Confirm
  private final String FileName = "Equalized-Coeffs-W1-Test-S";
 
  private float Mat[][];
- private RGBList rgbList;
+ private Segment segment;
  private int rows, cols;
  private int coords[]; // i * (cols) + j
  private int numFeatures,count;
@@ -35,12 +35,12 @@ public class Confirm
  // private GridBagConstraints gbConstraints;
  private Isolate isoHandle;
 
- public Confirm(Isolate isolateHandle, RGBList RGBlist, float waveMat[][])
+ public Confirm(Isolate isolateHandle, Segment segment, float waveMat[][])
  {
   // super(" Confirm ");
   Mat = waveMat;
   numFeatures = Mat[0].length;
-  rgbList = RGBlist;
+  this.segment = segment;
   isoHandle = isolateHandle;
   // Point p;
   // p = new Point(300,300);
@@ -83,23 +83,8 @@ public class Confirm
 
  public void formCoords()
  {
-  RGBNode firstNode;
-  RGBNode lastNode;
-  RGBNode ptr;
-  int ctr,i,j;
-  ctr =0;
-  count = rgbList.getNumMembers();
-  firstNode = rgbList.getFirstNode();
-  lastNode = rgbList.getLastNode();
-  coords = new int[count];
-  
-  for ( ptr = firstNode; ptr != null; ptr = ptr.getNextNode() )
-  {
-   i = ptr.getx(); //row
-   j = ptr.gety(); //col           
-   coords[ctr] = i * cols + j; 
-   ctr++;
-  }
+  count = segment.getNumMembers();
+  coords = segment.coords(); // i * cols + j already
   canPaint = true;
   // repaint();
  }
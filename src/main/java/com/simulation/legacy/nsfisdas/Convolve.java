@@ -1,14 +1,27 @@
 package com.simulation.legacy.nsfisdas;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * One level of the undecimated Haar (Daubechies-1) decomposition of an
+ * image: a low and a high pass along the rows, then each again along the
+ * columns, giving the LL, LH, HL and HH bands. Both passes wrap around at
+ * the edges.
+ * <p>
+ * {@link #transform} does all the levels the WTransforms use in one go:
+ * the rows of each tile are filtered into a small buffer, with the few
+ * halo rows the column pass needs, and the column pass writes its bands
+ * straight into the feature tensor. Tiles run in parallel. Only bands
+ * that are decomposed further are kept as whole planes, and those are
+ * reused for every channel. Every value is summed in the same order as
+ * before, so the features are exactly the same.
+ */
 public class Convolve
 {
- private float orgImg[][];
- private int rows, cols;
- private int maskLen;
- private float g[];
- private float h[];
+ private static final int TILE = 32; // output rows per parallel task
+ private static final float h[] = new Daubechies().getH1(); // low pass
+ private static final float g[] = new Daubechies().getG1(); // high pass
 
- float L[][];
- float H[][];
  float LL[][];
  float LH[][];
  float HL[][];
@@ -16,86 +29,131 @@ public class Convolve
 
  public Convolve( float setImg[][], float iLL[][], float iLH[][], float iHL[][], float iHH[][])
  {
-  orgImg = setImg;
-  rows = orgImg.length;
-  cols = orgImg[0].length;
-
-  Daubechies filters = new Daubechies();
-  g = filters.getG1();
-  h = filters.getH1();
-  maskLen = h.length;
-  L = new float[rows][cols];
-  H = new float[rows][cols];
   LL = iLL;
   LH = iLH;
   HL = iHL;
   HH = iHH;
-  convoleRows();
-  convolveCols();
+  decompose(setImg, null, new float[][][] { LL, LH, HL, HH }, null, 0);
  }
 
- private void  convoleRows()
+ /**
+  * Fills Mat with the channels themselves as its first features, then
+  * with the bands of each channel in turn: its LL, LH, HL and HL again
+  * (HH has never been stored), then for {@code levels > 1} those of each
+  * of its LL, LH, HL and HH bands in the same way, depth first. Returns
+  * the number of features written.
+  */
+ static int transform(int channels[][][], int levels, FeatureTensor Mat)
  {
-  //  low pass (h)
-  // high pass (g)
- float sumL, sumH;
-   for( int i=0; i < rows; i++)
+  int rows = channels[0].length;
+  int cols = channels[0][0].length;
+  float row[] = new float[cols];
+  for (int c = 0; c < channels.length; c++)
+  {
+   for (int i = 0; i < rows; i++)
    {
-    for(int j = 0; j < cols; j++)
-    {
-     // sum for length of filter
-  
-      sumL = 0.0f;
-      sumH = 0.0f;
-      for( int k=0; k < maskLen; k++ )
-      {
-       sumL = sumL + h[k] * orgImg[i][(cols + (j - (maskLen/2) + k))% cols]; 
-       sumH = sumH + g[k] * orgImg[i][(cols + (j - (maskLen/2) + k))% cols]; 
-      }
-      L[i][j] = sumL;
-      H[i][j] = sumH;
- 
-    }
+    for (int j = 0; j < cols; j++)
+     row[j] = (float)channels[c][i][j];
+    Mat.setRow(c, i * cols, row);
    }
+  }
 
+  float scratch[][][][] = new float[levels - 1][4][rows][cols]; // the bands of each inner level
+  int feature = channels.length;
+  for (int channel[][] : channels)
+   feature = transform(null, channel, levels, scratch, Mat, feature);
+  return feature;
  }
 
- private void convolveCols()
+ private static int transform(float plane[][], int channel[][], int levels, float scratch[][][][], FeatureTensor Mat,
+     int feature)
  {
-  // Obtain LL
- float sumLL, sumHL, sumLH, sumHH;
-      sumLL = 0.0f;
-      sumHL = 0.0f;
-      sumLH = 0.0f;
-      sumHH = 0.0f;
-
-  for( int j =0 ; j < cols; j++)
+  float bands[][][] = levels > 1 ? scratch[scratch.length - levels + 1] : null;
+  decompose(plane, channel, bands, Mat, feature);
+  feature += 4;
+  if (levels > 1)
   {
-   for( int i=0; i < rows; i++)
-   {
-    // sum for length of filter
-
-  
-      for( int k=0; k < maskLen; k++ )
-      {
-       sumLL = sumLL + h[k] * L[(rows + (i - (maskLen/2) + k))% rows][j]; 
-       sumHL = sumHL + h[k] * H[(rows + (i - (maskLen/2) + k))% rows][j];
-       sumLH = sumLH + g[k] * L[(rows + (i - (maskLen/2) + k))% rows][j];
-       sumHH = sumHH + g[k] * H[(rows + (i - (maskLen/2) + k))% rows][j];
-      }
-   
-     LL[i][j] = sumLL;
-     HL[i][j] = sumHL;
-     LH[i][j] = sumLH;
-     HH[i][j] = sumHH;
- // System.out.println("LL "+sumLL+" HL "+sumHL+" LH "+sumLH+" HH "+sumHH);
-
-      sumLL = 0.0f;
-      sumHL = 0.0f;
-      sumLH = 0.0f;
-      sumHH = 0.0f;
-   } 
+   for (float band[][] : bands)
+    feature = transform(band, null, levels - 1, scratch, Mat, feature);
   }
+  return feature;
  }
 
+ /**
+  * Decomposes plane, or channel when plane is null, once. The LL, LH, HL
+  * and HH bands go to bands when it is not null, and the LL, LH, HL and HL
+  * bands to Mat from feature on when Mat is not null.
+  */
+ private static void decompose(float plane[][], int channel[][], float bands[][][], FeatureTensor Mat, int feature)
+ {
+  int rows = plane != null ? plane.length : channel.length;
+  int cols = plane != null ? plane[0].length : channel[0].length;
+  int maskLen = h.length;
+  int half = maskLen / 2;
+
+  IntStream.range(0, (rows + TILE - 1) / TILE).parallel().forEach(t -> {
+   int first = t * TILE;
+   int last = Math.min(rows, first + TILE);
+
+   // the rows, low and high passed, that the tile's column pass reads:
+   // buffer row b is image row (rows + (first - half + b)) % rows
+   float L[][] = new float[last - first + maskLen - 1][cols];
+   float H[][] = new float[last - first + maskLen - 1][cols];
+   float pad[] = new float[cols + maskLen - 1];
+   for (int b = 0; b < L.length; b++)
+   {
+    int i = (rows + (first - half + b)) % rows;
+    // pad[x] is column (cols + (x - half)) % cols, so the mask need not wrap
+    if (plane != null)
+     for (int x = 0; x < pad.length; x++)
+      pad[x] = plane[i][(cols + (x - half)) % cols];
+    else
+     for (int x = 0; x < pad.length; x++)
+      pad[x] = (float)channel[i][(cols + (x - half)) % cols];
+    float sumL[] = L[b], sumH[] = H[b];
+    for (int k = 0; k < maskLen; k++)
+    {
+     for (int j = 0; j < cols; j++)
+     {
+      sumL[j] = sumL[j] + h[k] * pad[j + k];
+      sumH[j] = sumH[j] + g[k] * pad[j + k];
+     }
+    }
+   }
+
+   float sumLL[] = new float[cols], sumLH[] = new float[cols], sumHL[] = new float[cols], sumHH[] = new float[cols];
+   for (int i = first; i < last; i++)
+   {
+    if (bands != null)
+    {
+     sumLL = bands[0][i];
+     sumLH = bands[1][i];
+     sumHL = bands[2][i];
+     sumHH = bands[3][i];
+    }
+    Arrays.fill(sumLL, 0.0f);
+    Arrays.fill(sumLH, 0.0f);
+    Arrays.fill(sumHL, 0.0f);
+    Arrays.fill(sumHH, 0.0f);
+    for (int k = 0; k < maskLen; k++)
+    {
+     float rowL[] = L[i - first + k], rowH[] = H[i - first + k];
+     for (int j = 0; j < cols; j++)
+     {
+      sumLL[j] = sumLL[j] + h[k] * rowL[j];
+      sumHL[j] = sumHL[j] + h[k] * rowH[j];
+      sumLH[j] = sumLH[j] + g[k] * rowL[j];
+      sumHH[j] = sumHH[j] + g[k] * rowH[j];
+     }
+    }
+    if (Mat != null)
+    {
+     Mat.setRow(feature, i * cols, sumLL);
+     Mat.setRow(feature + 1, i * cols, sumLH);
+     Mat.setRow(feature + 2, i * cols, sumHL);
+     Mat.setRow(feature + 3, i * cols, sumHL);
+    }
+   }
+  });
+ }
 }
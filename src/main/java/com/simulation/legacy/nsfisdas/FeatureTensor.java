@@ -0,0 +1,123 @@
+package com.simulation.legacy.nsfisdas;
+
+/**
+ * The features of every pixel of an image in one flat float[], in place of
+ * one small float[] per pixel: no per-pixel object headers or references,
+ * and one allocation however large the image.
+ * <p>
+ * Pixels are numbered row by row ({@code i * cols + j}). In the
+ * {@link Layout#PIXEL_MAJOR} layout a pixel's features lie next to each
+ * other, which suits clustering and projecting vectors; in
+ * {@link Layout#PLANE_MAJOR} each feature is one image-sized plane.
+ * {@code -Dnsfisdas.features.layout=plane} makes the WTransforms use the
+ * latter; their results are the same either way.
+ */
+public final class FeatureTensor
+{
+ public enum Layout { PIXEL_MAJOR, PLANE_MAJOR }
+
+ static final Layout DEFAULT_LAYOUT =
+     "plane".equalsIgnoreCase(System.getProperty("nsfisdas.features.layout")) ? Layout.PLANE_MAJOR
+         : Layout.PIXEL_MAJOR;
+
+ private final int pixels;
+ private final int features;
+ private final Layout layout;
+ private final int pixelStride, featureStride;
+ private final float data[];
+
+ public FeatureTensor(int pixels, int features, Layout layout)
+ {
+  if ((long) pixels * features > Integer.MAX_VALUE - 8)
+   throw new IllegalArgumentException(" Too many features for one array: " + pixels + " x " + features);
+  this.pixels = pixels;
+  this.features = features;
+  this.layout = layout;
+  pixelStride = layout == Layout.PIXEL_MAJOR ? features : 1;
+  featureStride = layout == Layout.PIXEL_MAJOR ? 1 : pixels;
+  data = new float[pixels * features];
+ }
+
+ /** A tensor holding {@code Mat[pixel][feature]}. */
+ public static FeatureTensor of(float Mat[][])
+ {
+  int features = Mat.length == 0 ? 0 : Mat[0].length;
+  FeatureTensor tensor = new FeatureTensor(Mat.length, features, Layout.PIXEL_MAJOR);
+  for (int p = 0; p < Mat.length; p++)
+   System.arraycopy(Mat[p], 0, tensor.data, p * features, features);
+  return tensor;
+ }
+
+ public int pixels()
+ {
+  return pixels;
+ }
+
+ public int features()
+ {
+  return features;
+ }
+
+ public Layout layout()
+ {
+  return layout;
+ }
+
+ public float get(int pixel, int feature)
+ {
+  return data[pixel * pixelStride + feature * featureStride];
+ }
+
+ public void set(int pixel, int feature, float value)
+ {
+  data[pixel * pixelStride + feature * featureStride] = value;
+ }
+
+ /** Sets {@code feature} of every pixel from an image-sized plane. */
+ public void setPlane(int feature, float plane[][])
+ {
+  int cols = plane.length == 0 ? 0 : plane[0].length;
+  for (int i = 0; i < plane.length; i++)
+   setRow(feature, i * cols, plane[i]);
+ }
+
+ /** Sets {@code feature} of {@code values.length} pixels from {@code pixel} on. */
+ void setRow(int feature, int pixel, float values[])
+ {
+  if (layout == Layout.PLANE_MAJOR)
+   System.arraycopy(values, 0, data, feature * pixels + pixel, values.length);
+  else
+  {
+   int index = pixel * features + feature;
+   for (int j = 0; j < values.length; j++, index += features)
+    data[index] = values[j];
+  }
+ }
+
+ /** Where {@code pixel}'s first feature is in {@link #data()}. */
+ int index(int pixel)
+ {
+  return pixel * pixelStride;
+ }
+
+ /** The distance in {@link #data()} from one feature of a pixel to the next. */
+ int featureStride()
+ {
+  return featureStride;
+ }
+
+ float[] data()
+ {
+  return data;
+ }
+
+ /** A copy as {@code [pixel][feature]}, the way the WTransforms used to hold their features. */
+ public float[][] toArray()
+ {
+  float Mat[][] = new float[pixels][features];
+  for (int p = 0; p < pixels; p++)
+   for (int k = 0; k < features; k++)
+    Mat[p][k] = get(p, k);
+  return Mat;
+ }
+}
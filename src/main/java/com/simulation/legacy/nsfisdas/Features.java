@@ -2,9 +2,8 @@ package com.simulation.legacy.nsfisdas;
 
 public class Features
 {
- private RGBList rgbList;
- private RGBNode firstNode;
- private RGBNode lastNode;
+ private Segment segment;
+ private int redCount[], greenCount[], blueCount[]; // members of each gray level
 
  private float redMean;
  private float greenMean;
@@ -27,31 +26,36 @@ public class Features
  private float entropyBlue;
 
 
- public Features( RGBList list )
+ public Features( Segment segment )
  {
-  rgbList = list;
-  firstNode = rgbList.getFirstNode();
-  lastNode = rgbList.getLastNode();
+  this.segment = segment;
   
  }
- public void InitializeMeans()
+
+ // The histograms skew, energy and entropy are taken from, counted once
+ private void countLevels()
  {
-  RGBNode ptr;
-  int rsum,gsum, bsum;
-  RGB rgb;
-  int numMembers; 
-   rsum = gsum = bsum =0;
- int bval;
-  for ( ptr = firstNode; ptr != null; ptr = ptr.getNextNode() )
+  if (redCount != null)
+   return;
+  redCount = new int[256];
+  greenCount = new int[256];
+  blueCount = new int[256];
+  for (int n = 0; n < segment.getNumMembers(); n++)
   {
-   rgb = ptr.getRGB();
-   rsum = rsum + rgb.getRed();
-   gsum = gsum + rgb.getGreen();
-   bval = rgb.getBlue();
-   bsum = bsum + bval;
-  
+   int r = segment.getRed(n), g = segment.getGreen(n), b = segment.getBlue(n);
+   if (r >= 0 && r < 256) redCount[r]++;
+   if (g >= 0 && g < 256) greenCount[g]++;
+   if (b >= 0 && b < 256) blueCount[b]++;
   }
-  numMembers = rgbList.getNumMembers();
+ }
+ public void InitializeMeans()
+ {
+  long rsum,gsum, bsum;
+  int numMembers; 
+  rsum = segment.getRedSum();
+  gsum = segment.getGreenSum();
+  bsum = segment.getBlueSum();
+  numMembers = segment.getNumMembers();
   redMean = rsum/numMembers;
   greenMean = gsum/numMembers;
   blueMean = bsum/numMembers;
@@ -72,25 +76,22 @@ public class Features
  
  public float getArea()
  {
-  return (float) rgbList.getNumMembers();
+  return (float) segment.getNumMembers();
  }
  
  public void InitializeSTD()
  {
-  RGBNode ptr;
   float rsum,gsum, bsum;
-  RGB rgb;
   int numMembers; 
   rsum = gsum = bsum =0;
-  for ( ptr = firstNode; ptr != null; ptr = ptr.getNextNode() )
+  numMembers = segment.getNumMembers();
+  for (int n = 0; n < numMembers; n++)
   {
-   rgb = ptr.getRGB();
-   rsum =  rsum + ( float) Math.pow((rgb.getRed() - redMean), 2);
-   gsum = gsum + (float) Math.pow((rgb.getGreen() - greenMean),2);
-   bsum = bsum + ( float) Math.pow((rgb.getBlue() - blueMean),2);
+   rsum =  rsum + ( float) Math.pow((segment.getRed(n) - redMean), 2);
+   gsum = gsum + (float) Math.pow((segment.getGreen(n) - greenMean),2);
+   bsum = bsum + ( float) Math.pow((segment.getBlue(n) - blueMean),2);
   }
   
-  numMembers = rgbList.getNumMembers();
   rsum = rsum/numMembers;
   gsum = gsum/numMembers;
   bsum = bsum/numMembers;
@@ -102,26 +103,17 @@ public class Features
 
  public void InitializeSkew()
  {
-  RGBNode ptr;
-  RGB rgb;
   float redsum=0;
   float greensum =0;
   float bluesum =0;
-  int numMembers = rgbList.getNumMembers();
+  int numMembers = segment.getNumMembers();
+  countLevels();
   int rCount, gCount, bCount;
   for(int i=0; i<256; i++)
   {
-   rCount = gCount = bCount =0;
-   for ( ptr = firstNode; ptr != null; ptr = ptr.getNextNode() )
-   {
-    rgb = ptr.getRGB();
-    if(rgb.getRed() == i)
-      rCount++;
-    if(rgb.getGreen() == i)
-      gCount++;
-    if(rgb.getBlue() == i)
-      bCount++;
-   }
+   rCount = redCount[i];
+   gCount = greenCount[i];
+   bCount = blueCount[i];
    redsum = redsum + (float)Math.pow((i - redMean),3)*((float)(rCount/numMembers));
    greensum = greensum + (float)Math.pow((i - greenMean),3)*((float)(gCount/numMembers));
    bluesum = bluesum + (float)Math.pow((i - blueMean),3)*((float)(bCount/numMembers));
@@ -135,23 +127,14 @@ public class Features
 
  public void InitializeEnergy()
  {
-  RGBNode ptr;
-  RGB rgb;
-  int numMembers = rgbList.getNumMembers();
+  int numMembers = segment.getNumMembers();
+  countLevels();
   int rCount, gCount, bCount;
   for(int i=0; i<256; i++)
   {
-   rCount = gCount = bCount =0;
-   for ( ptr = firstNode; ptr != null; ptr = ptr.getNextNode() )
-   {
-    rgb = ptr.getRGB();
-    if(rgb.getRed() == i)
-      rCount++;
-    if(rgb.getGreen() == i)
-      gCount++;
-    if(rgb.getBlue() == i)
-      bCount++;
-   }
+   rCount = redCount[i];
+   gCount = greenCount[i];
+   bCount = blueCount[i];
    energyRed = energyRed + (float)Math.pow(((float)(rCount/numMembers)),2);
    energyGreen = energyGreen + (float)Math.pow(((float)(gCount/numMembers)),2);
    energyBlue = energyBlue + (float)Math.pow(((float)(bCount/numMembers)),2);
@@ -161,23 +144,14 @@ public class Features
  public void InitializeEntropy()
  {
   
- RGBNode ptr;
-  RGB rgb;
-  int numMembers = rgbList.getNumMembers();
+  int numMembers = segment.getNumMembers();
+  countLevels();
   int rCount, gCount, bCount;
   for(int i=0; i<256; i++)
   {
-   rCount = gCount = bCount =0;
-   for ( ptr = firstNode; ptr != null; ptr = ptr.getNextNode() )
-   {
-    rgb = ptr.getRGB();
-    if(rgb.getRed() == i)
-      rCount++;
-    if(rgb.getGreen() == i)
-      gCount++;
-    if(rgb.getBlue() == i)
-      bCount++;
-   }
+   rCount = redCount[i];
+   gCount = greenCount[i];
+   bCount = blueCount[i];
    float Pr = (float)(rCount/numMembers);
    float Pg = (float)(gCount/numMembers);
    float Pb = (float)(bCount/numMembers);
@@ -1,32 +1,23 @@
 package com.simulation.legacy.nsfisdas;
-import org.springframework.core.io.ClassPathResource;
-
 import java.io.*;
 import java.util.*;
 
 class FindCategory 
 {
-	private final String aveFileName = "AveCategory";
 	private final int NUM_FEATURES = 13; // 12 feature and one flag
 	private final int NUM_CATEGORIES = 4; // Number of categories in the feature file
 	private float aveVector[][];
-	private int countVector[];
 	private float calculatedVector[];
     private int category;
 
-	private RandomAccessFile aveFile;
     private ImageMatrix OrgImage;
 
 	public FindCategory(ImageMatrix OrgImage)
 	{
 		this.OrgImage = OrgImage;
-		aveVector = new float[NUM_CATEGORIES][NUM_FEATURES];
-		countVector = new int[NUM_CATEGORIES];
-		openFile();
-		readAveVectors();
+		aveVector = ModelBundle.categoryAverages(NUM_CATEGORIES, NUM_FEATURES); // read once, shared
 		computeFeatures();
 		findCategory();
-		closeAveFile();
 	}
    
  public int getCategory()
@@ -64,58 +55,6 @@ class FindCategory
 	   }
 	 }
   }
-  private void readAveVectors()
-	{
-		try
-		{
-			for(int i=0; i < NUM_CATEGORIES; i++)
-			 countVector[i] = aveFile.readInt();
-			
-			for(int i=0; i < NUM_CATEGORIES; i++)
-			{
-				for(int j=0; j < NUM_FEATURES; j++)
-				{
-					aveVector[i][j] = aveFile.readFloat();
-			
-				}
-			}
-		}
-		catch( IOException ex)
-		{
-		 System.out.println(" Exception reading output file "+ex.toString());
-		// System.exit(1);
-		}
-	}
-private void openFile()
-	{
-     try
-    {
-       
-	   File file = new ClassPathResource("legacy-resources/nsfisdas/" + aveFileName).getFile();
-	   aveFile = new RandomAccessFile(file, "rw");
-     }
-     catch( IOException e)
-     {
-      System.err.println(" Error while opening outputfiles (text/java) "+e.toString() );
-      System.out.println("Exiting with error");
-     // System.exit(1);
-     }
-    }
-
-	private void closeAveFile()
-	{
-     try
-    {
-      
-	   aveFile.close();
-     }
-     catch( IOException e)
-     {
-      System.err.println(" Error while closing outputfiles (text/java) "+e.toString() );
-      System.out.println("Exiting with error");
-    //  System.exit(1);
-     }
-    }
 	public static void main(String[] args) 
 	{
 		System.out.println("Hello World!");
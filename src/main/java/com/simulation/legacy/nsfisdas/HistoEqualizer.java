@@ -17,6 +17,7 @@ public class HistoEqualizer
  private float HistoR[], HistoG[], HistoB[];  // numbers could be large
  private int MapR[], MapG[], MapB[];
  private int rows, cols;
+ private String category;
  private String fileName;
  private RandomAccessFile histoFile;
  private int eqR[][], eqG[][], eqB[][];
@@ -26,7 +27,8 @@ public class HistoEqualizer
  public HistoEqualizer(ImageMatrix Org, String type)
  {
    OriginalImage = Org;
-  fileName = "HistoMap-" + type;
+  category = type;
+  fileName = ModelBundle.histoName(type);
   HistoR = new float[MAX_GRAY];
   HistoG = new float[MAX_GRAY];
   HistoB = new float[MAX_GRAY];
@@ -59,13 +61,13 @@ public class HistoEqualizer
   openFile();
   updateHistogram();
   closeFile();
+  ModelBundle.evict(category); // so that testing sees the new histogram
  }
 
  
  public ImageMatrix testHistoMap()
  {
-  openFile();
-  readHistogram(); // of the trained images
+  ModelBundle.forCategory(category).histogram(HistoR, HistoG, HistoB); // of the trained images
   formRatios(); 
   // now do the mapping
 
@@ -82,7 +84,6 @@ public class HistoEqualizer
     eqB[i][j] = MapB[matrixB[i][j]];
    }
   }
-  closeFile();
   //convertToGIF();
   return EqualizedImage;
  }
@@ -226,24 +227,6 @@ public class HistoEqualizer
   }
  }
 
- private void readHistogram()
- {
-
-  try
-  {
-    for(int i=0; i < MAX_GRAY; i++)
-	{
-	 HistoR[i] = histoFile.readFloat();
-	 HistoG[i] = histoFile.readFloat();
-	 HistoB[i] = histoFile.readFloat();
-	}
-  }
- catch( IOException ex)
-  {
-   System.err.println(" IOException during histo read..trouble!!!!....exiting.");
-   //System.exit(1);
-  }
- }
 // functions to open and close histo file
 
  private void openFile()
@@ -24,7 +24,7 @@ public class Isolate // extends Frame implements MouseListener
  // private Label comment;
  private boolean Clicked;
  private boolean confirmDisplayed;
- private RGBList rgbList;
+ private Segment segment;
  private float Mat[][];
 
  public Isolate( ImageMatrix SegImgIn, ImageMatrix OrgImage, float waveMat[][])
@@ -1,13 +1,32 @@
 package com.simulation.legacy.nsfisdas;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.stream.IntStream;
 import org.springframework.core.io.ClassPathResource;
 
+/**
+ * Clusters the feature vectors of a training file, a stream of doubles,
+ * and writes the centers, member counts and feature ranges to a center
+ * file, starting from an earlier center file when there is one.
+ * <p>
+ * The file is read once into one flat block and normalised there; the
+ * passes over it then only compute. Each vector moves one or two centers,
+ * so the distances between centers are cached and only those of the moved
+ * centers are recomputed. The passes themselves stay sequential, as every
+ * vector sees the centers the previous one left; {@link #Assign} labels
+ * the vectors in parallel once training is done.
+ */
 public class Kohonen
 {
+  private static final int CHUNK = 4096; // vectors per parallel task
   private int vectorDim;
   private int clusters;
-  private DataInputStream input = null;  // for trainfile
+  private double data[];  // the training vectors, one after another
+  private int numVectors;
+  private double cent2cent[][];  // distances between centers
+  private double nearestDistance[];  // from each center to its closest other center
+  private int nearestCenter[];
   private DataInputStream centerFile = null; // for center file
   private DataOutputStream writeCenter = null;  //to write center file
   private String trainFileName;  // this is set using a member function
@@ -41,22 +60,11 @@ public class Kohonen
 
  public void TrainKohonen()
  {
-   try
-   {
-    File file = new ClassPathResource("legacy-resources/nsfisdas/" + trainFileName).getFile();
-    FileInputStream in = new FileInputStream(file);
-    input = new DataInputStream(in);
-   }
-   catch ( FileNotFoundException e)
-   {
-    System.out.println(" File not found: " + trainFileName);
-   }
-   catch ( IOException e)
-   {
-    System.out.println(" IO Exception: " + e.getMessage());
-   }
+   if (!readTrainFile())
+    return;
    setCenters();
    setMinMax();
+   normalize();
    
 
    if (!random)  closeCenterFile(); // close it since its read only
@@ -65,108 +73,65 @@ public class Kohonen
    writeCenterFile();
  }
  
- private void updateCenters()
+ // Reads the whole training file; a partial vector at its end is ignored
+ private boolean readTrainFile()
  {
-  int i, belongsTo, times;
-  double feature[];
-  boolean end = false;
-  feature = new double[vectorDim];
   try
-   {
-    File file = new ClassPathResource("legacy-resources/nsfisdas/" + trainFileName).getFile();
-    FileInputStream in = new FileInputStream(file);
-    input = new DataInputStream(in);
-   }
-   catch ( FileNotFoundException e)
+  {
+   ByteBuffer buf = ModelBundle.open(trainFileName);
+   if (buf == null)
    {
     System.out.println(" File not found: " + trainFileName);
+    return false;
    }
-   catch ( IOException e)
-   {
-    System.out.println(" IO Exception: " + e.getMessage());
-   }
+   numVectors = buf.remaining() / (Double.BYTES * vectorDim);
+   data = new double[numVectors * vectorDim];
+   buf.asDoubleBuffer().get(data);
+   return true;
+  }
+  catch (IOException e)
+  {
+   System.out.println(" IO Exception: " + e.getMessage());
+   return false;
+  }
+ }
+
+ private void updateCenters()
+ {
+  int times;
  if ( random) 
    times =20; 
  else
    times = 8;
  
+  cent2cent = new double[clusters][clusters];
+  nearestDistance = new double[clusters];
+  nearestCenter = new int[clusters];
+  for (int c = 0; c < clusters; c++)
+   centerMoved(c);
+  findNearestCenters();
+
   for( int ctr = 0; ctr < times; ctr++)  // do it for ten times if random else 					//	once
   { 
-  
-  while( !end )
-  {
-    try
-    {
-     for(i=0; i < vectorDim; i++)  // get one feature vector
-     {
-      feature[i] = input.readDouble();
-      feature[i] = (feature[i] - MinVector[i])/(MaxVector[i] - MinVector[i]);
-   
-     }
-    }
-    catch (EOFException eof)
-    {
-     //System.out.println(" EOF reading trainfile occurs always. no probs!!");
-     end = true;
-     break;
-    }
-    catch (IOException ex)
-    {
-     System.out.println(" IO Exception: " + ex.getMessage());
-     end = true;
-     break;
-    }
-
-     Group(feature);
-
-  } //while
-   end = false;
-   try
-   { 
-   input.close();
-   }
-   catch (IOException ex)
-    {
-     System.out.println(" IO Exception while closing training file: " + ex.getMessage());
-    }
-   // open again so that the file pointeer is at the start
-   // this part is slow becoz of this/
-   // MUST MODIFY THIS!!!!!
-   try
-   {
-    File file = new ClassPathResource("legacy-resources/nsfisdas/" + trainFileName).getFile();
-    FileInputStream in = new FileInputStream(file);
-    input = new DataInputStream(in);
-   }
-   catch ( FileNotFoundException e)
-   {
-    System.out.println(" File not found: " + trainFileName);
-   }
-   catch ( IOException e)
-   {
-    System.out.println(" IO Exception: " + e.getMessage());
-   }
+   for (int v = 0; v < numVectors; v++)
+     Group(v * vectorDim);
   } // for 10 times if randomly initialized centers
-  // close for the last time
-  try
-   { 
-   input.close();
-   }
-   catch (IOException ex)
-    {
-     System.out.println(" IO Exception while closing training file: " + ex.getMessage());
-    }
  }
 
- 
- private void Group( double vector[])
+ // Updates the cached distances from center c to all others
+ private void centerMoved(int c)
+ {
+  for (int o = 0; o < clusters; o++)
+  {
+   if (o != c)
+    cent2cent[c][o] = cent2cent[o][c] = EucledianDistance(Centers[c], Centers[o]);
+  }
+ }
+
+ // The closest other center to each center, from the cached distances
+ private void findNearestCenters()
  {
-  double centerDistances[];
-  int closestCenter[];
-  centerDistances = new double[clusters];
-  closestCenter  = new int[clusters];
   double cent2cent;
-  double minCenterDistance =  99.9E5;
   double maxcent2cent;
   int closecent = 0;
 
@@ -175,43 +140,38 @@ public class Kohonen
     maxcent2cent = 9.99E15;
     for( int to = 1; to < clusters; to++)
     {
-     cent2cent  = EucledianDistance( Centers[from],Centers[ (from + to)% clusters]);
+     cent2cent  = this.cent2cent[from][(from + to)% clusters];
      if (cent2cent < maxcent2cent )
       {
        maxcent2cent = cent2cent;
        closecent = (from + to)%clusters;
       }
     }
-    centerDistances[from] = maxcent2cent;   // distance to the closest cluster
-    closestCenter[from] = closecent;      // cluster number
+    nearestDistance[from] = maxcent2cent;   // distance to the closest cluster
+    nearestCenter[from] = closecent;      // cluster number
 
   }
-    
+ }
+ 
+ // Adds the vector at data[offset] to its closest cluster, or starts a new one with it
+ private void Group( int offset)
+ {
+  double minCenterDistance;
+
   int minCenter = 0;
   minCenterDistance = 9.99E15;
 
   for( int i = 0; i < clusters; i++)
   {
-   if ( centerDistances[i] < minCenterDistance )
+   if ( nearestDistance[i] < minCenterDistance )
     {
-     minCenterDistance = centerDistances[i];  //has the distacne between closest clusters
+     minCenterDistance = nearestDistance[i];  //has the distacne between closest clusters
      minCenter = i;    // has the "from" of the closest clusters
     }
   }
 
-  int closestTo = 0;
-  double DistancetoCenter;
-  double MinDistance =  99.99E5;
- 
-  for (int i =0; i < clusters; i++)
-  {
-    DistancetoCenter = EucledianDistance(Centers[i], vector );
-    if ( DistancetoCenter < MinDistance)
-    {
-     closestTo = i;           // the vector is closest to this cluster
-     MinDistance = DistancetoCenter;   // and this is the distance
-    }
-  } 
+  int closestTo = closestCenter(offset);
+  double MinDistance = EucledianDistance(Centers[closestTo], data, offset);
   // see if the new vector does not belong to any cluster
 
    if ( MinDistance <=  minCenterDistance ) // vector belongs to some cluster
@@ -219,14 +179,14 @@ public class Kohonen
    numMembers[closestTo]++;
    // adjust center
     for ( int i =0; i < vectorDim; i++)
-       Centers[closestTo][i] = ((Centers[closestTo][i]*(numMembers[closestTo]-1)) + vector[i])/numMembers[closestTo];
-  
+       Centers[closestTo][i] = ((Centers[closestTo][i]*(numMembers[closestTo]-1)) + data[offset + i])/numMembers[closestTo];
+    centerMoved(closestTo);
     }
    else
     {
    // club the closest centers. minCenter is the "from" of the closest clusters
 
-   int pair = closestCenter[minCenter]; // the "to" of the closest cluster
+   int pair = nearestCenter[minCenter]; // the "to" of the closest cluster
 
    for(int i =0; i < vectorDim; i++)
     {
@@ -235,10 +195,56 @@ public class Kohonen
    // make the new vector as the cluster center of "to" which is "pair"
 
     for( int i =0; i< vectorDim; i++)
-      Centers[pair][i] = vector[i]; 
- 
+      Centers[pair][i] = data[offset + i]; 
+    centerMoved(minCenter);
+    centerMoved(pair);
     }
+   findNearestCenters();
 }
+
+ // The center closest to the vector at data[offset]; the first one on ties
+ private int closestCenter(int offset)
+ {
+  int closestTo = 0;
+  double DistancetoCenter;
+  double MinDistance =  99.99E5;
+ 
+  for (int i =0; i < clusters; i++)
+  {
+    DistancetoCenter = EucledianDistance(Centers[i], data, offset );
+    if ( DistancetoCenter < MinDistance)
+    {
+     closestTo = i;           // the vector is closest to this cluster
+     MinDistance = DistancetoCenter;   // and this is the distance
+    }
+  } 
+  return closestTo;
+ }
+
+ /**
+  * The cluster of every training vector, after TrainKohonen: the index of
+  * its closest center. The vectors are split across the common pool.
+  */
+ public int[] Assign()
+ {
+  int labels[] = new int[numVectors];
+  IntStream.range(0, (numVectors + CHUNK - 1) / CHUNK).parallel().forEach(c -> {
+   int end = Math.min(numVectors, (c + 1) * CHUNK);
+   for (int v = c * CHUNK; v < end; v++)
+    labels[v] = closestCenter(v * vectorDim);
+  });
+  return labels;
+ }
+
+ public double[][] getCenters()
+ {
+  return Centers;
+ }
+
+ public int[] getNumMembers()
+ {
+  return numMembers;
+ }
  
  private void writeCenterFile()
  {
@@ -419,66 +425,67 @@ public class Kohonen
  }
 
  private double EucledianDistance( double vector1[], double vector2[])
+ {
+  return EucledianDistance(vector1, vector2, 0);
+ }
+
+ private double EucledianDistance( double vector1[], double vector2[], int offset)
  {
   double distance = 0;
   for(int i=0; i < vectorDim; i++)
-    distance = distance + Math.pow(( vector1[i] - vector2[i] ),2);
+    distance = distance + Math.pow(( vector1[i] - vector2[offset + i] ),2);
   return  Math.sqrt(distance);
  }
 
+ // Min and max of each feature over chunks of vectors in parallel, merged
+ // in order, so the result is the one a single pass gives
  private void setMinMax()
  {
-  // this can be done from the center file also.
-  // load from center file if present.
-  int i;
-  double feature[];
- 
-  boolean end = false;
-  feature = new double[vectorDim];
-
-  while( !end )
-  {
-   for(i=0; i < vectorDim; i++)  // get one feature vector
-   {
-    try
-    {
-     feature[i] = input.readDouble();
-    }
-    catch (EOFException eof)
-    {
-     System.out.println(" End of File reading trainfile");
-     end = true;
-     break;
-    }
-    catch (IOException ex)
-    {
-     System.out.println(" IO Exception: " + ex.getMessage());
-     end = true;
-     break;
-    }
-   }  // end of for
-
-   if (!end)
+  int chunks = (numVectors + CHUNK - 1) / CHUNK;
+  double mins[][] = new double[chunks][];
+  double maxs[][] = new double[chunks][];
+  IntStream.range(0, chunks).parallel().forEach(c -> {
+   double min[] = MinVector.clone();
+   double max[] = MaxVector.clone();
+   int end = Math.min(numVectors, (c + 1) * CHUNK) * vectorDim;
+   for (int k = c * CHUNK * vectorDim; k < end; k += vectorDim)
    {
-    for (i =0; i < vectorDim; i++)
+    for (int i =0; i < vectorDim; i++)
     {
-     if ( MinVector[i] > feature[i])
-        MinVector[i] = feature[i];
+     if ( min[i] > data[k + i])
+        min[i] = data[k + i];
 
-     if (MaxVector[i]  < feature[i])
-        MaxVector[i]= feature[i]; 
+     if (max[i]  < data[k + i])
+        max[i]= data[k + i]; 
     } //for
-   } // if
-
-  } // while
-  try
+   }
+   mins[c] = min;
+   maxs[c] = max;
+  });
+  for (int c = 0; c < chunks; c++)
   {
-   input.close();
-  }  
-   catch (IOException ex2)
-    {
-     System.out.println(" IO Exception while closing after setMinMax: " + ex2.getMessage());
-    }
+   for (int i =0; i < vectorDim; i++)
+   {
+    if ( MinVector[i] > mins[c][i])
+       MinVector[i] = mins[c][i];
+
+    if (MaxVector[i]  < maxs[c][i])
+       MaxVector[i]= maxs[c][i]; 
+   }
+  }
  } //func
 
-}
+ // Scales every feature to its range, once for all passes
+ private void normalize()
+ {
+  IntStream.range(0, (numVectors + CHUNK - 1) / CHUNK).parallel().forEach(c -> {
+   int end = Math.min(numVectors, (c + 1) * CHUNK) * vectorDim;
+   for (int k = c * CHUNK * vectorDim; k < end; k += vectorDim)
+   {
+    for (int i = 0; i < vectorDim; i++)
+     data[k + i] = (data[k + i] - MinVector[i])/(MaxVector[i] - MinVector[i]);
+   }
+  });
+ }
+
+}
\ No newline at end of file
@@ -2,6 +2,8 @@ package com.simulation.legacy.nsfisdas;
 // import java.awt.*;
 // import java.awt.event.*;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MarkSegments // extends Frame
 {
@@ -17,8 +19,6 @@ public class MarkSegments // extends Frame
 
  private int rows, cols;
 
- private int red, green, blue;
-
  private int xCoordinate, yCoordinate;
 
  private boolean painted;
@@ -27,13 +27,19 @@ public class MarkSegments // extends Frame
  // private Label comment;
  private boolean Clicked;
  private boolean confirmDisplayed;
- private RGBList rgbList;
- private float Mat[][];
+ private Segment segment;
+ private SegmentFill segmentFill = new SegmentFill();
+ private FeatureTensor Mat;
  private String catString;
  private String filename;
  private String outputDirectory = "output/marked/";
 
  public MarkSegments(String fileName,ImageMatrix SegImgIn, ImageMatrix OrgImage, float waveMat[][], String catString )
+ {
+  this(fileName, SegImgIn, OrgImage, FeatureTensor.of(waveMat), catString);
+ }
+
+ public MarkSegments(String fileName,ImageMatrix SegImgIn, ImageMatrix OrgImage, FeatureTensor waveMat, String catString )
  {
   
   // super(" Isolate Segments ");
@@ -94,20 +100,21 @@ public class MarkSegments // extends Frame
  private void Extract()
  {
 
+  ModelBundle model = ModelBundle.forCategory(catString);
+
   BPNet bpNetIdentify;
-  bpNetIdentify = new BPNet( "Equalized-Weights-Identify-PC10-"+catString); 
+  bpNetIdentify = new BPNet(model.identify()); 
 
   BPNet bpNetQuantify;
-  bpNetQuantify = new BPNet("Equalized-Weights-Quantify-PC10-"+catString );
+  bpNetQuantify = new BPNet(model.quantify());
 
-  float output[];
-  output = new float[1];
-   int xOnImage, yOnImage;
    Projection projection;
-   float featArray[];  // memory allocated in Projection
 
   projection = new Projection(Mat, catString, filename);
-  // Color color;
+
+  // Project every segment first, then classify them all in two batched passes
+  List<int[]> seeds = new ArrayList<>();        // i, j, R, G, B of each segment
+  List<float[]> features = new ArrayList<>();   // memory allocated in Projection
    for(int i=0; i < rows; i++)
    {
     for(int j=0; j < cols; j++)
@@ -121,25 +128,39 @@ public class MarkSegments // extends Frame
             markedR[i][j] = markedG[i][j] = markedB[i][j] = 0;
             
              ExtractSegmentCoords(i,j);
-            if( rgbList.getNumMembers() > 10)
+            if( segment.getNumMembers() > 10)
              {
-               projection.setRGBList(rgbList);
+               projection.setSegment(segment);
                projection.setRowsCols(rows,cols);
                projection.formVector();
-               featArray = projection.getProjectedVector();
-            
-               bpNetIdentify.TestNet(featArray, output);
-            if( output[0] > 0.5f )
-		{
-	            bpNetQuantify.TestNet(featArray, output);
-	           
-		    PaintCorrodedSegment(i,j, output[0]);
-		   }
+               features.add(projection.getProjectedVector());
+               seeds.add(new int[] { i, j, valueR, valueG, valueB });
               }
           }
      }
   
   }
+
+  float identified[][] = bpNetIdentify.TestBatch(features.toArray(new float[0][]));
+  List<Integer> corroded = new ArrayList<>();
+  for (int n = 0; n < identified.length; n++)
+  {
+   if( identified[n][0] > 0.5f )
+    corroded.add(n);
+  }
+  float corrodedFeatures[][] = new float[corroded.size()][];
+  for (int k = 0; k < corrodedFeatures.length; k++)
+   corrodedFeatures[k] = features.get(corroded.get(k));
+  float quantified[][] = bpNetQuantify.TestBatch(corrodedFeatures);
+
+  for (int k = 0; k < corrodedFeatures.length; k++)
+  {
+   int seed[] = seeds.get(corroded.get(k));
+   valueR = seed[2];
+   valueG = seed[3];
+   valueB = seed[4];
+   PaintCorrodedSegment(seed[0], seed[1], quantified[k][0]);
+  }
    
  DisplayImage display;
  display = new DisplayImage(outputDirectory + "MarkedSegments_" + filename, markedImage); 
@@ -168,198 +189,24 @@ public class MarkSegments // extends Frame
 
  private void ExtractSegmentCoords(int x, int y)
  {
-   SegStack segStack;
-   segStack = new SegStack();
-   Pixel pixel;
-   RGB rgbValues;
-   Pixel temp;
-   int numNodes =0;
-   int i = x;
-   int j = y;
-     
-  rgbList = new RGBList(" Corroded Segmet ");
-  while( true )      // while true loop
-   {
-    matrixR[i][j] = -1;
-    matrixG[i][j] = -1;
-    matrixB[i][j] = -1;
-  
-    red = OriginalImage.getRedPixel( i, j);
-    blue = OriginalImage.getBluePixel( i, j);
-    green = OriginalImage.getGreenPixel(i,j);
-
-   rgbValues =  new RGB( red, green, blue);
-       
-	   // NO painitng here!!!
-
-  rgbList.PushNode( i, j, rgbValues );
-    if( i-1 >=0)
-     {
-      if (( matrixR[i-1][j] == valueR) && ( matrixG[i-1][j] == valueG) && ( matrixB[i-1][j] == valueB) )
-      {
-        pixel = new Pixel();
-        pixel.setij( i-1, j);
-        segStack.PushNode( pixel );
-        numNodes++;
-      }
-     }
-    if ( i+1 < rows) 
-     { 
-      if (( matrixR[i+1][j] == valueR) && ( matrixG[i+1][j] == valueG) && ( matrixB[i+1][j] == valueB))
-      {
-        pixel = new Pixel();
-        pixel.setij( i+1, j);
-        segStack.PushNode( pixel );
-        numNodes++;
-      }
-     }
-    if (j-1 >=0)
-    {
-     if ((matrixR[i][j-1] == valueR) && (matrixG[i][j-1] == valueG) && (matrixB[i][j-1] == valueB))
-      {
-        pixel = new Pixel();
-        pixel.setij( i, j-1);
-        segStack.PushNode( pixel );
-        numNodes++;
-      }
-     }
-    if (j+1 < cols)
-    {
-      if (( matrixR[i][j+1] == valueR) && ( matrixG[i][j+1] == valueG) && ( matrixB[i][j+1] == valueB))
-      {
-       pixel = new Pixel();
-       pixel.setij( i, j+1);
-       segStack.PushNode( pixel );
-       numNodes++;
-      }
-     }
-    if ( numNodes > 0 )
-    {
-     temp = segStack.PopNode();
-     i = temp.geti();
-     j = temp.getj();
-    // System.out.println("i: "+i);
-     //System.out.println("j: "+j);
-     numNodes--;
-    }
-    else
-    {
-     break;
-    }
-   } // end of while true loop
-   // refill all the -1 to original values to that the feature can be extracted again
+  // NO painitng here!!!
+  segmentFill.fill(matrixR, matrixG, matrixB, x, y, valueR, valueG, valueB);
+  segment = segmentFill.segment(OriginalImage);
  } // end of func 
 
   private void PaintCorrodedSegment(int x, int y, float output)
  {
-   SegStack segStack;
-   segStack = new SegStack();
-   Pixel pixel;
-   RGB rgbValues;
-   Pixel temp;
-   int numNodes =0;
-   int i =x;
-   int j = y;
-   // Color color;
-  
-  while( true )      // while true loop
-   {
-    paintCorrodedR[i][j] = -1;
-    paintCorrodedG[i][j] = -1;
-    paintCorrodedB[i][j] = -1;
-          
-    if( i-1 >=0)
-     {
-      if (( paintCorrodedR[i-1][j] == valueR) && ( paintCorrodedG[i-1][j] == valueG) && ( paintCorrodedB[i-1][j] == valueB) )
-      {
-        pixel = new Pixel();
-        pixel.setij( i-1, j);
-        segStack.PushNode( pixel );
-        numNodes++;
-      }
-     }
-    if ( i+1 < rows) 
-     { 
-      if (( paintCorrodedR[i+1][j] == valueR) && ( paintCorrodedG[i+1][j] == valueG) && ( paintCorrodedB[i+1][j] == valueB))
-      {
-        pixel = new Pixel();
-        pixel.setij( i+1, j);
-        segStack.PushNode( pixel );
-        numNodes++;
-      }
-     }
-    if (j-1 >=0)
-    {
-     if ((paintCorrodedR[i][j-1] == valueR) && (paintCorrodedG[i][j-1] == valueG) && (paintCorrodedB[i][j-1] == valueB))
-      {
-        pixel = new Pixel();
-        pixel.setij( i, j-1);
-        segStack.PushNode( pixel );
-        numNodes++;
-      }
-     }
-    if (j+1 < cols)
-    {
-      if (( paintCorrodedR[i][j+1] == valueR) && ( paintCorrodedG[i][j+1] == valueG) && ( paintCorrodedB[i][j+1] == valueB))
-      {
-       pixel = new Pixel();
-       pixel.setij( i, j+1);
-       segStack.PushNode( pixel );
-       numNodes++;
-      }
-     }
-    if ( numNodes > 0 )
-    {
-   temp = segStack.PopNode();
-     i = temp.geti();
-     j = temp.getj();
- if( output < 0.05f ) 
- 		     {
-                	// color = Color.blue; 
-                         markedR[i][j] = 0; 
- 			 markedG[i][j] = 0;
-			 markedB[i][j] = 0;
- 	             }
-	           if( output < 0.1f && output > 0.05f)
-			{
-			  // color = Color.green;
-	                   markedR[i][j] = 0; 
-      			   markedG[i][j] = 0;
-			  markedB[i][j] = 0;
- 			}
-			   if( output < 0.15f && output > 0.1f)
-				{
-			         // color = Color.yellow;
- 				 markedR[i][j] = 0; 
-      			         markedG[i][j] = 0;
-			         markedB[i][j] = 0;
- 			   	}
-			   if( output < 0.2f && output > 0.15f)
-				{
-			         // color = Color.magenta;
-	 			 markedR[i][j] = 0; 
-      			         markedG[i][j] = 0;
-			         markedB[i][j] = 0;
- 			   	}
-			   if( output > 0.2 ) 
-				{
-			         // color = Color.red;
-				 markedR[i][j] = 0; 
-      			         markedG[i][j] = 0;
-			         markedB[i][j] = 0;
- 			   	}
-  
-     numNodes--;
-    }
-    else
-    {
-     break;
-    }
-   } // end of while true loop
+  int visits = segmentFill.fill(paintCorrodedR, paintCorrodedG, paintCorrodedB, x, y, valueR, valueG, valueB);
+  // every band of output is painted black, except on the band edges; as
+  // always, the seed itself is not painted
+  boolean paint = output < 0.05f || (output < 0.1f && output > 0.05f) || (output < 0.15f && output > 0.1f)
+      || (output < 0.2f && output > 0.15f) || output > 0.2;
+  for (int n = 1; paint && n < visits; n++)
+  {
+   int p = segmentFill.visit(n);
+   markedR[p / cols][p % cols] = 0;
+   markedG[p / cols][p % cols] = 0;
+   markedB[p / cols][p % cols] = 0;
+  }
  } // end of func 
-} 
-
-
-
-
-
+}
@@ -0,0 +1,398 @@
+package com.simulation.legacy.nsfisdas;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The trained model of one category: the identify and quantify networks,
+ * the PCA basis segments are projected on and the histogram images are
+ * equalized with.
+ * <p>
+ * A category is read once, on first use, and then shared by every image
+ * processed: the data is immutable, and BPNet copies the weights it may
+ * train. Each part comes from {@code Bundle-<category>} when there is one
+ * (see {@link #pack}), and otherwise from the separate resource it was
+ * always read from; a separate resource rewritten since the bundle was
+ * packed, as a retrained histogram is, wins over its bundled copy. Each is a big-endian file of the kind DataOutputStream writes;
+ * it is memory mapped when it is a plain file and read whole when it sits
+ * inside a jar, and its floats are taken in bulk through a FloatBuffer.
+ */
+final class ModelBundle
+{
+ static final String RESOURCE_DIR = "legacy-resources/nsfisdas/";
+ private static final int MAGIC = 0x4E534642; // "NSFB"
+ private static final int MAX_GRAY = 256;
+ private static final int PCA_ROWS = 15; // wavelet features per pixel, as in Projection
+ private static final int PCA_COMPONENTS = 10;
+ private static final String AVERAGES = "AveCategory";
+
+ private static final ConcurrentMap<String, ModelBundle> BUNDLES = new ConcurrentHashMap<>();
+ private static final ConcurrentMap<String, Net> NETS = new ConcurrentHashMap<>();
+ private static volatile float averages[][];
+
+ /** The layer sizes and weights of a BPNet weights file. */
+ static final class Net
+ {
+  final int numLayers, inputs, outputs;
+  private final int units[];
+  private final float weights[][]; // weights[l][(i - 1) * (units[l - 1] + 1) + j] is Weight[i][j]
+
+  private Net(ByteBuffer buf) throws IOException
+  {
+   try
+   {
+    numLayers = buf.getInt();
+    inputs = buf.getInt();
+    outputs = buf.getInt();
+    units = new int[numLayers];
+    for (int l = 0; l < numLayers; l++)
+     units[l] = buf.getInt();
+    weights = new float[numLayers][];
+    FloatBuffer floats = buf.asFloatBuffer();
+    for (int l = 1; l < numLayers; l++)
+    {
+     weights[l] = new float[units[l] * (units[l - 1] + 1)];
+     floats.get(weights[l]);
+    }
+   }
+   catch (BufferUnderflowException | NegativeArraySizeException e)
+   {
+    throw new EOFException("Truncated or invalid weights");
+   }
+  }
+
+  int[] units()
+  {
+   return units.clone();
+  }
+
+  /**
+   * A fresh copy of layer {@code l}'s weights laid out as BPLayer holds
+   * them: rows 1..units[l], bias weight first, row 0 unused.
+   */
+  float[][] layerWeights(int l)
+  {
+   int width = units[l - 1] + 1;
+   float w[][] = new float[units[l] + 1][units[l - 1] + 2];
+   for (int i = 1; i <= units[l]; i++)
+    System.arraycopy(weights[l], (i - 1) * width, w[i], 0, width);
+   return w;
+  }
+ }
+
+ private final String category;
+ private final Net identify, quantify;
+ private final int numPCs;
+ private final float eigenSpace[][];
+ private final float histogram[]; // R, G, B count of each gray level in turn
+
+ private ModelBundle(String category, Map<String, ByteBuffer> sections) throws IOException
+ {
+  this.category = category;
+  ByteBuffer buf = sections.get(identifyName(category));
+  identify = buf == null ? null : new Net(buf);
+  buf = sections.get(quantifyName(category));
+  quantify = buf == null ? null : new Net(buf);
+
+  buf = sections.get(pcaName(category));
+  if (buf == null)
+  {
+   numPCs = 0;
+   eigenSpace = null;
+  }
+  else
+  {
+   eigenSpace = new float[PCA_ROWS][PCA_COMPONENTS];
+   try
+   {
+    numPCs = buf.getInt();
+    FloatBuffer floats = buf.asFloatBuffer();
+    for (int i = 0; i < PCA_ROWS; i++)
+     floats.get(eigenSpace[i]);
+   }
+   catch (BufferUnderflowException e)
+   {
+    throw new EOFException("Truncated " + pcaName(category));
+   }
+  }
+
+  buf = sections.get(histoName(category));
+  if (buf == null)
+   histogram = null;
+  else
+  {
+   histogram = new float[3 * MAX_GRAY];
+   try
+   {
+    buf.asFloatBuffer().get(histogram);
+   }
+   catch (BufferUnderflowException e)
+   {
+    throw new EOFException("Truncated " + histoName(category));
+   }
+  }
+ }
+
+ static String identifyName(String category) { return "Equalized-Weights-Identify-PC10-" + category; }
+ static String quantifyName(String category) { return "Equalized-Weights-Quantify-PC10-" + category; }
+ static String pcaName(String category) { return "PCA-10-" + category; }
+ static String histoName(String category) { return "HistoMap-" + category; }
+ static String bundleName(String category) { return "Bundle-" + category; }
+
+ private static String[] sectionNames(String category)
+ {
+  return new String[] { identifyName(category), quantifyName(category), pcaName(category), histoName(category) };
+ }
+
+ /** The model of {@code category}, read on first use. */
+ static ModelBundle forCategory(String category)
+ {
+  return BUNDLES.computeIfAbsent(category, c -> {
+   try
+   {
+    Map<String, ByteBuffer> bundled = readBundle(bundleName(c));
+    long packed = bundled == null ? 0 : lastModified(bundleName(c));
+    Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+    for (String name : sectionNames(c))
+    {
+     ByteBuffer buf = bundled != null && bundled.containsKey(name) && lastModified(name) <= packed
+         ? bundled.get(name) : open(name);
+     if (buf != null)
+      sections.put(name, buf);
+    }
+    return new ModelBundle(c, sections);
+   }
+   catch (IOException e)
+   {
+    throw new UncheckedIOException("Cannot load model of category " + c, e);
+   }
+  });
+ }
+
+ /** Forgets {@code category}, so its model is read again once its files have been rewritten. */
+ static void evict(String category)
+ {
+  BUNDLES.remove(category);
+ }
+
+ /** The weights file {@code name} on its own, for nets outside any category; read once. */
+ static Net net(String name)
+ {
+  return NETS.computeIfAbsent(name, n -> {
+   try
+   {
+    ByteBuffer buf = open(n);
+    if (buf == null)
+     throw new FileNotFoundException(RESOURCE_DIR + n);
+    return new Net(buf);
+   }
+   catch (IOException e)
+   {
+    throw new UncheckedIOException("Cannot load weights " + n, e);
+   }
+  });
+ }
+
+ /**
+  * The average feature vectors FindCategory tells categories apart with,
+  * [categories][features], after a count per category; read once.
+  */
+ static float[][] categoryAverages(int categories, int features)
+ {
+  float ave[][] = averages;
+  if (ave == null)
+  {
+   synchronized (ModelBundle.class)
+   {
+    if ((ave = averages) == null)
+    {
+     try
+     {
+      ByteBuffer buf = open(AVERAGES);
+      if (buf == null)
+       throw new FileNotFoundException(RESOURCE_DIR + AVERAGES);
+      buf.position(4 * categories);
+      FloatBuffer floats = buf.asFloatBuffer();
+      ave = new float[categories][features];
+      for (int i = 0; i < categories; i++)
+       floats.get(ave[i]);
+     }
+     catch (IOException | BufferUnderflowException e)
+     {
+      throw new UncheckedIOException("Cannot load " + AVERAGES,
+          e instanceof IOException io ? io : new EOFException("Truncated " + AVERAGES));
+     }
+     averages = ave;
+    }
+   }
+  }
+  return ave;
+ }
+
+ String category()
+ {
+  return category;
+ }
+
+ Net identify()
+ {
+  return require(identify, identifyName(category));
+ }
+
+ Net quantify()
+ {
+  return require(quantify, quantifyName(category));
+ }
+
+ /** The number of components the PCA file says it holds. */
+ int numPCs()
+ {
+  require(eigenSpace, pcaName(category));
+  return numPCs;
+ }
+
+ /** The PCA basis, [15 features][10 components]. Shared: must not be modified. */
+ float[][] eigenSpace()
+ {
+  return require(eigenSpace, pcaName(category));
+ }
+
+ /** Copies the trained histogram's red, green and blue counts of each gray level. */
+ void histogram(float r[], float g[], float b[])
+ {
+  require(histogram, histoName(category));
+  for (int i = 0; i < MAX_GRAY; i++)
+  {
+   r[i] = histogram[3 * i];
+   g[i] = histogram[3 * i + 1];
+   b[i] = histogram[3 * i + 2];
+  }
+ }
+
+ private static <T> T require(T section, String name)
+ {
+  if (section == null)
+   throw new IllegalStateException("No " + name + " in " + RESOURCE_DIR);
+  return section;
+ }
+
+ /** When resource {@code name} was last written, or 0 if there is none. */
+ private static long lastModified(String name) throws IOException
+ {
+  ClassPathResource resource = new ClassPathResource(RESOURCE_DIR + name);
+  return resource.exists() ? resource.lastModified() : 0;
+ }
+
+ /**
+  * The contents of resource {@code name}, or null if there is none: mapped
+  * when it is a file, read into memory when it is inside a jar.
+  */
+ static ByteBuffer open(String name) throws IOException
+ {
+  ClassPathResource resource = new ClassPathResource(RESOURCE_DIR + name);
+  if (!resource.exists())
+   return null;
+  if (resource.isFile())
+  {
+   try (FileChannel channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ))
+   {
+    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+   }
+  }
+  try (InputStream in = resource.getInputStream())
+  {
+   return ByteBuffer.wrap(in.readAllBytes());
+  }
+ }
+
+ /**
+  * The sections of bundle resource {@code name} by file name, or null if
+  * there is none. A bundle is the magic number, the number of sections and
+  * then each section's name (as writeUTF), length and bytes.
+  */
+ private static Map<String, ByteBuffer> readBundle(String name) throws IOException
+ {
+  ByteBuffer buf = open(name);
+  if (buf == null)
+   return null;
+  Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+  try
+  {
+   if (buf.getInt() != MAGIC)
+    throw new IOException(name + " is not a model bundle");
+   int count = buf.getInt();
+   for (int n = 0; n < count; n++)
+   {
+    byte bytes[] = new byte[buf.getShort() & 0xFFFF];
+    buf.get(bytes);
+    int length = buf.getInt();
+    sections.put(new String(bytes, StandardCharsets.UTF_8), buf.slice(buf.position(), length));
+    buf.position(buf.position() + length);
+   }
+  }
+  catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e)
+  {
+   throw new EOFException("Truncated bundle " + name);
+  }
+  return sections;
+ }
+
+ /**
+  * Writes {@code Bundle-<category>} to {@code out} from the category's
+  * separate resources, skipping those it does not have. Put in the
+  * resource directory, it replaces them until one is rewritten: a category
+  * retrained after packing should be packed again, or its bundle will go on
+  * being read for everything that was not retrained.
+  */
+ static void pack(String category, Path out) throws IOException
+ {
+  Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+  int count = 0;
+  ByteArrayOutputStream body = new ByteArrayOutputStream();
+  DataOutputStream data = new DataOutputStream(body);
+  for (String name : sectionNames(category))
+  {
+   ByteBuffer buf = open(name);
+   if (buf == null)
+    continue;
+   byte bytes[] = new byte[buf.remaining()];
+   buf.get(bytes);
+   data.writeUTF(name);
+   data.writeInt(bytes.length);
+   data.write(bytes);
+   count++;
+  }
+  try (DataOutputStream file = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+  {
+   file.writeInt(MAGIC);
+   file.writeInt(count);
+   body.writeTo(file);
+  }
+  Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  System.out.println(" Packed " + count + " files of " + category + " into " + out);
+ }
+
+ /** Usage: ModelBundle category outputFile */
+ public static void main(String args[]) throws IOException
+ {
+  if (args.length != 2)
+  {
+   System.err.println(" Usage: ModelBundle <category> <output file>");
+   return;
+  }
+  pack(args[0], Path.of(args[1]));
+ }
+}
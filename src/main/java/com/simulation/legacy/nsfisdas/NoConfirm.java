@@ -12,7 +12,7 @@ public class NoConfirm
  private final int MINMEMBERS = 6; // also in Confirm
  private final String FileName = "Coeffs";
  float Mat[][];
- RGBList rgbList;
+ Segment segment;
  int rows, cols;
  int coords[]; // i * (cols) + j
  private int numFeatures,count;
@@ -20,11 +20,11 @@ public class NoConfirm
  private RandomAccessFile output;
  private float corroded, amount;
 
- public NoConfirm(RGBList RGBlist, float waveMat[][])
+ public NoConfirm(Segment segment, float waveMat[][])
  {
   Mat = waveMat;
   numFeatures = Mat[0].length;
-  rgbList = RGBlist;
+  this.segment = segment;
  }
 
  public void setRowsCols(int r, int c)
@@ -35,20 +35,15 @@ public class NoConfirm
 
  public void averageFeatures()
  {
-  RGBNode firstNode;
-  RGBNode lastNode;
-  RGBNode ptr;
   int ctr,i,j;
   ctr =0;
-  count = rgbList.getNumMembers();
-  firstNode = rgbList.getFirstNode();
-  lastNode = rgbList.getLastNode();
+  count = segment.getNumMembers();
   coords = new int[count];
  
-  for ( ptr = firstNode; ptr != null; ptr = ptr.getNextNode() )
+  for (int n = 0; n < count; n++)
   {
-   i = ptr.getx(); //row
-   j = ptr.gety(); //col           
+   i = segment.getRow(n); //row
+   j = segment.getCol(n); //col           
    // Make sure i and j are right ...row and col respectively
    coords[ctr] = i * cols + j;  // can paint and see if you get the right shape
   }
@@ -102,7 +97,7 @@ public class NoConfirm
   int  numRows; // num of vectors written so far
   try
   {
-   if (rgbList.getNumMembers() > MINMEMBERS )
+   if (segment.getNumMembers() > MINMEMBERS )
    {
     if ( output.length() == 0)  // nothing on file
     {
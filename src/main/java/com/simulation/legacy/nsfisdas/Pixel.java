@@ -1,23 +0,0 @@
-package com.simulation.legacy.nsfisdas;
-
-public class Pixel
-{
- private int i;
- private int j;
- 
- public Pixel() {}
- 
- public void setij( int x, int y )
- {
-  i = x;
-  j = y;
- }
- public int geti()
- {
-  return i;
- }
- public int getj()
- {
-  return j;
- }
-}
@@ -1,6 +1,4 @@
 package com.simulation.legacy.nsfisdas;
-import org.springframework.core.io.ClassPathResource;
-
 import java.io.*;
 import java.util.*;
 
@@ -10,8 +8,8 @@ class Projection
    private int m =15; // number of columns used for PCA. but has m + 2 data
    private float data[][];   // input data is written from 1,1 not 0,0   
    private final int NUM_PCA_COMP = 10;  // the number of samples that are to be formed using the pixels
-   private float Mat[][];
-   private RGBList rgbList;
+   private FeatureTensor Mat;
+   private Segment segment;
    private int rows, cols, count;
    private int coords[]; // i * (cols) + j
    private float average[];	
@@ -20,8 +18,6 @@ class Projection
    private float eigenSpace[][];
    private float aveCoeffs[];
    private float featArray[];
-   private RandomAccessFile pcFile;
-   private RandomAccessFile dtFile;
    private String Imagefilename;
    private String catString;
    private File file_pca;
@@ -30,7 +26,7 @@ class Projection
    private PrintWriter print_wave;
    private String outputDirectory = "output/features/";
    
-   public Projection( float waveMat[][], String catString, String filename)
+   public Projection( FeatureTensor waveMat, String catString, String filename)
    {
     this.catString = catString;
     PCFile = new String(PCFile+catString);
@@ -41,7 +37,6 @@ class Projection
     // Create output directory
     createOutputDirectory();
     
-    openFiles();
     readEigenSpace(); 
     file_pca = new File (outputDirectory + "Features_" + Imagefilename + ".pca");
     file_wave = new File (outputDirectory + "Features_" + Imagefilename + ".wave");
@@ -76,23 +71,15 @@ class Projection
     return outputDirectory;
   }
 
-  public void setRGBList(RGBList RGBlist)
+  public void setSegment(Segment segment)
   {
-   this.rgbList = RGBlist;
+   this.segment = segment;
   }
 
  public void closeFiles()
  {
-  try
-  {
-    pcFile.close();
     if (print_pca != null) print_pca.close();
     if (print_wave != null) print_wave.close();
-  }
-  catch(IOException ex)
-  {
-    System.err.println(" Error closing PC file: " + ex.getMessage());
-  }
  }
  
   public void setRowsCols(int rows, int cols)
@@ -101,30 +88,12 @@ class Projection
       this.cols = cols;
    }
  
+  // The basis is read once per category and shared, see ModelBundle
   private void readEigenSpace()
   {
-   int numPCs;
-   try
-   {
-   pcFile.seek(0);
-   numPCs = pcFile.readInt();
-   
-   eigenSpace = new float[m][NUM_PCA_COMP];
-
-   if( numPCs != NUM_PCA_COMP) System.err.println(" Num PCs mismatch ");
-   for(int  i=0; i< m; i++)
-   {
-    for(int j=0; j < NUM_PCA_COMP; j++)
-	{
-	  eigenSpace[i][j] = pcFile.readFloat();
-	}
-   }
-  }
-  catch(IOException ex)
-  {
-  System.err.println(" Error reading Eigen Space: " + ex.getMessage());
-  //System.exit(1);
-  }
+   ModelBundle model = ModelBundle.forCategory(catString);
+   if( model.numPCs() != NUM_PCA_COMP) System.err.println(" Num PCs mismatch ");
+   eigenSpace = model.eigenSpace();
  }
 
  private void transformCoeffs()
@@ -150,27 +119,6 @@ class Projection
 	  
 }
 
- private void openFiles()
- {
-   try
-   {
-    String filename1, filename2;
-    filename1 = "PCA-10-" + catString;
-    filename2 = "HistoMap-" + catString;
-    
-    File pcFileResource = new ClassPathResource("legacy-resources/nsfisdas/" + filename1).getFile();
-    File dtFileResource = new ClassPathResource("legacy-resources/nsfisdas/" + filename2).getFile();
-    
-    pcFile = new RandomAccessFile(pcFileResource, "r");
-    dtFile = new RandomAccessFile(dtFileResource, "r");
-   }
-   catch(IOException ex)
-   {
-    System.err.println(" Error opening files: " + ex.getMessage());
-   }
- }
- 
-
  private void formCoeffs()
  {
   formCoords();
@@ -179,23 +127,8 @@ class Projection
 
  public void formCoords()
  {
-  RGBNode firstNode;
-  RGBNode lastNode;
-  RGBNode ptr;
-  int ctr,i,j;
-  ctr =0;
-  count = rgbList.getNumMembers();
-  firstNode = rgbList.getFirstNode();
-  lastNode = rgbList.getLastNode();
-  coords = new int[count];
-  
-  for ( ptr = firstNode; ptr != null; ptr = ptr.getNextNode() )
-  {
-   i = ptr.getx(); //row
-   j = ptr.gety(); //col           
-   coords[ctr] = i * cols + j; 
-   ctr++;
-  }
+  count = segment.getNumMembers();
+  coords = segment.coords(); // i * cols + j already
  
  }
  private void averageSegment()
@@ -207,7 +140,7 @@ class Projection
   {
    for(int j=0; j < numFeatures; j++)
    {
-    aveCoeffs[j] += Mat[coords[i]][j];
+    aveCoeffs[j] += Mat.get(coords[i], j);
    }
    ctr++;
   }
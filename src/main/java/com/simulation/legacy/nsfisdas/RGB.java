@@ -1,27 +0,0 @@
-package com.simulation.legacy.nsfisdas;
-public class RGB
-{
- private int red;
- private int green;
- private int blue;
- 
- public RGB( int r, int g, int b)
- {
-  red = r;
-  green = g;
-  blue = b;
- }
-
- public int getRed()
- {
-  return red;
- }
- public int getGreen()
- {
-  return green;
- }
- public int getBlue()
- {
-  return blue;
- }
-}
@@ -0,0 +1,92 @@
+package com.simulation.legacy.nsfisdas;
+
+/**
+ * The members of one segment, as SegmentFill found them: where each lies
+ * in the image ({@code i * cols + j}) and its colour in the original
+ * image, with the colour sums. Members come in the order RGBList used to
+ * hold them, the last one visited first, so that everything summed over
+ * a segment is summed in the same order as before.
+ */
+public final class Segment
+{
+ private final int cols;
+ private final int coords[];
+ private final int red[], green[], blue[];
+ private final long redSum, greenSum, blueSum;
+
+ Segment(int cols, int coords[], int red[], int green[], int blue[])
+ {
+  this.cols = cols;
+  this.coords = coords;
+  this.red = red;
+  this.green = green;
+  this.blue = blue;
+  long r = 0, g = 0, b = 0;
+  for (int n = 0; n < coords.length; n++)
+  {
+   r += red[n];
+   g += green[n];
+   b += blue[n];
+  }
+  redSum = r;
+  greenSum = g;
+  blueSum = b;
+ }
+
+ public int getNumMembers()
+ {
+  return coords.length;
+ }
+
+ /** Member n's {@code i * cols + j}. */
+ public int getCoord(int n)
+ {
+  return coords[n];
+ }
+
+ public int getRow(int n)
+ {
+  return coords[n] / cols;
+ }
+
+ public int getCol(int n)
+ {
+  return coords[n] % cols;
+ }
+
+ public int getRed(int n)
+ {
+  return red[n];
+ }
+
+ public int getGreen(int n)
+ {
+  return green[n];
+ }
+
+ public int getBlue(int n)
+ {
+  return blue[n];
+ }
+
+ public long getRedSum()
+ {
+  return redSum;
+ }
+
+ public long getGreenSum()
+ {
+  return greenSum;
+ }
+
+ public long getBlueSum()
+ {
+  return blueSum;
+ }
+
+ /** The coordinates themselves; shared, must not be modified. */
+ int[] coords()
+ {
+  return coords;
+ }
+}
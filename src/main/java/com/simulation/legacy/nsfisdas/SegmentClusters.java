@@ -0,0 +1,342 @@
+package com.simulation.legacy.nsfisdas;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * The clustering WTransform1 and WTransform2 segment an image with: one
+ * sequential pass over the pixel vectors that either pulls the closest
+ * center towards each vector or, when the vector is further from every
+ * center than the two closest centers are from each other, merges those
+ * two and starts a new cluster at the vector. Every pixel is then given
+ * the closest of the resulting centers.
+ * <p>
+ * The pass keeps the distances between centers and only recomputes those
+ * of the centers a vector moves, and stops summing a vector's distance to
+ * a center once it can no longer be the closest; it gives exactly the
+ * centers it always has. The final assignment is split across the common
+ * pool.
+ * <p>
+ * {@code -Dnsfisdas.segment.refine=n} follows the pass with up to n
+ * k-means (Lloyd) iterations, which stop early once no center moves more
+ * than {@code -Dnsfisdas.segment.tolerance} (1e-4 by default). They run in
+ * parallel with per-task partial sums and skip the distance computations
+ * Hamerly's bounds rule out. This changes the segmentation, so it is off
+ * by default.
+ */
+final class SegmentClusters
+{
+ static final int REFINE = Integer.getInteger("nsfisdas.segment.refine", 0);
+ static final float TOLERANCE = Float.parseFloat(System.getProperty("nsfisdas.segment.tolerance", "1e-4"));
+ private static final int CHUNK = 4096; // vectors per parallel task
+
+ private SegmentClusters()
+ {
+ }
+
+ /**
+  * Clusters the {@code rows * cols} pixel vectors of {@code Mat} and
+  * returns the centers, starting from vectors picked with {@code ran}.
+  */
+ static float[][] cluster(FeatureTensor Mat, int rows, int cols, int clusters, Random ran)
+ {
+  int count = rows * cols;
+  int vectorDim = Mat.features();
+  float data[] = Mat.data();
+  int stride = Mat.featureStride();
+  float Centers[][] = new float[clusters][vectorDim];
+  int numMembersInCluster[] = new int[clusters];
+  for(int c=0; c < clusters; c++)
+  {
+   int i = (int)(ran.nextFloat() * rows * cols);
+   for (int k = 0; k < vectorDim; k++)
+    Centers[c][k] = Mat.get(i, k);
+   numMembersInCluster[c] = 1;
+  }
+
+  float cent2cent[][] = new float[clusters][clusters];
+  for (int c = 0; c < clusters; c++)
+   centerMoved(Centers, cent2cent, c, vectorDim);
+  float centerdis[] = new float[clusters];
+  int closestCenter[] = new int[clusters];
+  int closecent = 0;
+
+  for(int r =0; r < count; r++)
+  {
+   // centers of clusters found and closest calculates
+   for( int  from = 0; from < clusters; from++)
+   {
+    float maxcent2cent = Float.MAX_VALUE;
+    for ( int to = 1; to < clusters; to++)
+    {
+     float d = cent2cent[from][(from+to)%clusters];
+     if ( d < maxcent2cent )
+     {
+      maxcent2cent = d;
+      closecent = (from + to)%clusters;
+     }
+    }
+    centerdis[from] = maxcent2cent;    // this has the distance to the closest center
+    closestCenter[from] = closecent;   // this has the cluster number of the closest center
+   }
+
+   int minCenter = 0;
+   float minBetweenCenters = Float.MAX_VALUE;
+   for(int i =0; i< clusters; i++)     // finding the closest pair of clusters ( from )
+   {
+    if (centerdis[i]  < minBetweenCenters   )
+    {
+     minBetweenCenters = centerdis[i];  // has the distance between closest clusters
+     minCenter = i;                    // minCenter has "from"
+    }
+   }
+
+   int vector = Mat.index(r);
+   int closestTo = 0;
+   float minPointCenter = Float.MAX_VALUE;   // for distance from vector to closest center
+   for (int i =0; i < clusters; i++)
+   {
+    float value = distance(Centers[i], data, vector, stride, vectorDim, minPointCenter);
+    if ( value < minPointCenter )
+    {
+     closestTo = i;            //  this is the nearest cluster
+     minPointCenter = value;
+    }
+   }
+
+   if ( minPointCenter < minBetweenCenters )   // belongs to "closestTo" cluster
+   {
+    // adjust the center
+    for(int k=0; k<vectorDim; k++)
+     Centers[closestTo][k] = (Centers[closestTo][k] * numMembersInCluster[closestTo] + data[vector + k * stride])/(numMembersInCluster[closestTo] + 1);
+    numMembersInCluster[closestTo]++;
+    centerMoved(Centers, cent2cent, closestTo, vectorDim);
+   }
+   else
+   {
+    // new center  the closest centers are clubbed here
+    int pair = closestCenter[minCenter];
+    for(int k=0; k < vectorDim; k++)
+     Centers[minCenter][k] = (Centers[minCenter][k]*numMembersInCluster[minCenter] + numMembersInCluster[pair]*Centers[pair][k])/(numMembersInCluster[minCenter]+numMembersInCluster[pair]);
+    numMembersInCluster[minCenter] = numMembersInCluster[minCenter] + numMembersInCluster[pair];
+
+    // the new vector becomes the center at "to" that is closestcenter[minCent]
+    for(int k=0; k<vectorDim; k++)
+     Centers[pair][k] = data[vector + k * stride];
+    numMembersInCluster[pair] = 1;
+    centerMoved(Centers, cent2cent, minCenter, vectorDim);
+    centerMoved(Centers, cent2cent, pair, vectorDim);
+   }
+  }
+  return Centers;
+ }
+
+ private static void centerMoved(float Centers[][], float cent2cent[][], int c, int vectorDim)
+ {
+  for (int o = 0; o < Centers.length; o++)
+  {
+   if (o != c)
+    cent2cent[c][o] = cent2cent[o][c] = distance(Centers[c], Centers[o], vectorDim, Float.MAX_VALUE);
+  }
+ }
+
+ /** The closest of {@code Centers} to each pixel vector; the first one on ties. */
+ static int[] assign(FeatureTensor Mat, float Centers[][])
+ {
+  int count = Mat.pixels();
+  int vectorDim = Mat.features();
+  float data[] = Mat.data();
+  int stride = Mat.featureStride();
+  int labels[] = new int[count];
+  IntStream.range(0, (count + CHUNK - 1) / CHUNK).parallel().forEach(c -> {
+   int end = Math.min(count, (c + 1) * CHUNK);
+   for (int r = c * CHUNK; r < end; r++)
+   {
+    int closest = 0;
+    float min = Float.MAX_VALUE;
+    for (int i = 0; i < Centers.length; i++)
+    {
+     float value = distance(Centers[i], data, Mat.index(r), stride, vectorDim, min);
+     if (value < min)
+     {
+      closest = i;
+      min = value;
+     }
+    }
+    labels[r] = closest;
+   }
+  });
+  return labels;
+ }
+
+ /**
+  * Runs up to {@link #REFINE} k-means iterations on {@code Centers} and
+  * returns the closest center of each vector, as {@link #assign} does.
+  */
+ static int[] refine(FeatureTensor Mat, float Centers[][])
+ {
+  return refine(Mat, Centers, REFINE, TOLERANCE);
+ }
+
+ /** As above, with up to {@code iterations} iterations that stop once no center moves more than {@code tolerance}. */
+ static int[] refine(FeatureTensor Mat, float Centers[][], int iterations, float tolerance)
+ {
+  int labels[] = assign(Mat, Centers);
+  if (iterations <= 0)
+   return labels;
+  int count = Mat.pixels();
+  int vectorDim = Mat.features();
+  float data[] = Mat.data();
+  int stride = Mat.featureStride();
+  int clusters = Centers.length;
+  int chunks = (count + CHUNK - 1) / CHUNK;
+  float upper[] = new float[count];   // distance to the own center, at most
+  float lower[] = new float[count];   // distance to any other center, at least
+  for (int r = 0; r < count; r++)
+   upper[r] = Float.POSITIVE_INFINITY;  // forces the first pass to compute both bounds
+
+  double sums[][][] = new double[chunks][clusters][vectorDim];
+  int members[][] = new int[chunks][clusters];
+  for (int iteration = 0; iteration < iterations; iteration++)
+  {
+   // half the distance from each center to its closest other center
+   float half[] = new float[clusters];
+   for (int i = 0; i < clusters; i++)
+   {
+    float min = Float.MAX_VALUE;
+    for (int j = 0; j < clusters; j++)
+     if (j != i)
+      min = Math.min(min, (float) Math.sqrt(distance(Centers[i], Centers[j], vectorDim, Float.MAX_VALUE)));
+    half[i] = min / 2;
+   }
+
+   IntStream.range(0, chunks).parallel().forEach(c -> {
+    double sum[][] = sums[c];
+    int member[] = members[c];
+    for (double s[] : sum)
+     Arrays.fill(s, 0);
+    Arrays.fill(member, 0);
+    int end = Math.min(count, (c + 1) * CHUNK);
+    for (int r = c * CHUNK; r < end; r++)
+    {
+     int a = labels[r];
+     float bound = Math.max(half[a], lower[r]);
+     if (upper[r] > bound)
+     {
+      upper[r] = (float) Math.sqrt(distance(Centers[a], data, Mat.index(r), stride, vectorDim, Float.MAX_VALUE));
+      if (upper[r] > bound)
+      {
+       float best = Float.MAX_VALUE, second = Float.MAX_VALUE;
+       int closest = 0;
+       for (int i = 0; i < clusters; i++)
+       {
+        float d = (float) Math.sqrt(distance(Centers[i], data, Mat.index(r), stride, vectorDim, Float.MAX_VALUE));
+        if (d < best)
+        {
+         second = best;
+         best = d;
+         closest = i;
+        }
+        else if (d < second)
+         second = d;
+       }
+       labels[r] = closest;
+       upper[r] = best;
+       lower[r] = second;
+      }
+     }
+     int l = labels[r];
+     member[l]++;
+     for (int k = 0, index = Mat.index(r); k < vectorDim; k++, index += stride)
+      sum[l][k] += data[index];
+    }
+   });
+
+   // new centers from the partial sums, merged in order
+   float shift[] = new float[clusters];
+   float maxShift = 0, secondShift = 0;
+   int maxShiftCenter = -1;
+   for (int i = 0; i < clusters; i++)
+   {
+    int n = 0;
+    for (int c = 0; c < chunks; c++)
+     n += members[c][i];
+    if (n == 0)
+     continue;   // an empty cluster keeps its center
+    float center[] = new float[vectorDim];
+    for (int k = 0; k < vectorDim; k++)
+    {
+     double s = 0;
+     for (int c = 0; c < chunks; c++)
+      s += sums[c][i][k];
+     center[k] = (float)(s / n);
+    }
+    shift[i] = (float) Math.sqrt(distance(Centers[i], center, vectorDim, Float.MAX_VALUE));
+    Centers[i] = center;
+    if (shift[i] > maxShift)
+    {
+     secondShift = maxShift;
+     maxShift = shift[i];
+     maxShiftCenter = i;
+    }
+    else if (shift[i] > secondShift)
+     secondShift = shift[i];
+   }
+   if (maxShift <= tolerance)
+    break;
+
+   // keep the bounds valid for the moved centers
+   float otherShift[] = new float[clusters];
+   for (int i = 0; i < clusters; i++)
+    otherShift[i] = i == maxShiftCenter ? secondShift : maxShift;
+   IntStream.range(0, chunks).parallel().forEach(c -> {
+    int end = Math.min(count, (c + 1) * CHUNK);
+    for (int r = c * CHUNK; r < end; r++)
+    {
+     upper[r] += shift[labels[r]];
+     lower[r] -= otherShift[labels[r]];
+    }
+   });
+  }
+  return assign(Mat, Centers);
+ }
+
+ /**
+  * The squared distance between two vectors, summed as the WTransforms
+  * always have; once the partial sum reaches {@code bound} it is returned
+  * as it is, as the whole sum could only be larger still.
+  */
+ private static float distance(float vector1[], float vector2[], int vectorDim, float bound)
+ {
+  float distance = 0;
+  for(int i=0; i < vectorDim; i++)
+  {
+   distance = distance + (float) Math.pow(( vector1[i] - vector2[i] ),2);
+   if (distance >= bound)
+    break;
+  }
+  return distance;
+ }
+
+ /** As above, between {@code center} and the vector at {@code data[base]}, {@code stride} apart. */
+ private static float distance(float center[], float data[], int base, int stride, int vectorDim, float bound)
+ {
+  float distance = 0;
+  if (stride == 1)   // pixel-major: the vector is contiguous
+  {
+   for(int i=0; i < vectorDim; i++)
+   {
+    distance = distance + (float) Math.pow(( center[i] - data[base + i] ),2);
+    if (distance >= bound)
+     break;
+   }
+   return distance;
+  }
+  for(int i=0, index = base; i < vectorDim; i++, index += stride)
+  {
+   distance = distance + (float) Math.pow(( center[i] - data[index] ),2);
+   if (distance >= bound)
+    break;
+  }
+  return distance;
+ }
+}
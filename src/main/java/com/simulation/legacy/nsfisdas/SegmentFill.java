@@ -0,0 +1,94 @@
+package com.simulation.legacy.nsfisdas;
+import java.util.Arrays;
+
+/**
+ * Grows a segment from a seed pixel over the 4-connected pixels of its
+ * colour, marking each one -1 in all three colour planes, with the
+ * pending pixels and the visits held as {@code i * cols + j} in int
+ * arrays that are reused from one segment to the next. It replaces the
+ * SegStack of Pixel objects and the RGBList of RGBNode and RGB objects
+ * that cost several objects per pixel.
+ * <p>
+ * The visits are exactly those of the old fill. A pixel is only marked
+ * when it is taken off the stack, so one pushed by two neighbours before
+ * that is visited, and counted, twice. The segment features the networks
+ * were trained on include those repeats, so they are kept.
+ */
+final class SegmentFill
+{
+ private int stack[] = new int[256];
+ private int visits[] = new int[256];
+ private int count, top, cols;
+
+ /**
+  * Floods R, G and B from (x, y) over the pixels of colour
+  * (valueR, valueG, valueB), the seed's own, and returns the number of
+  * visits, the seed's first.
+  */
+ int fill(int R[][], int G[][], int B[][], int x, int y, int valueR, int valueG, int valueB)
+ {
+  int rows = R.length;
+  cols = R[0].length;
+  count = 0;
+  top = 0;
+  int i = x, j = y;
+  while (true)
+  {
+   R[i][j] = -1;
+   G[i][j] = -1;
+   B[i][j] = -1;
+   if (count == visits.length)
+    visits = Arrays.copyOf(visits, 2 * count);
+   visits[count++] = i * cols + j;
+
+   if (i-1 >= 0 && R[i-1][j] == valueR && G[i-1][j] == valueG && B[i-1][j] == valueB)
+    push((i-1) * cols + j);
+   if (i+1 < rows && R[i+1][j] == valueR && G[i+1][j] == valueG && B[i+1][j] == valueB)
+    push((i+1) * cols + j);
+   if (j-1 >= 0 && R[i][j-1] == valueR && G[i][j-1] == valueG && B[i][j-1] == valueB)
+    push(i * cols + j-1);
+   if (j+1 < cols && R[i][j+1] == valueR && G[i][j+1] == valueG && B[i][j+1] == valueB)
+    push(i * cols + j+1);
+
+   if (top == 0)
+    break;
+   int p = stack[--top];
+   i = p / cols;
+   j = p % cols;
+  }
+  return count;
+ }
+
+ private void push(int p)
+ {
+  if (top == stack.length)
+   stack = Arrays.copyOf(stack, 2 * top);
+  stack[top++] = p;
+ }
+
+ /** Visit n of the last fill, as {@code i * cols + j}. */
+ int visit(int n)
+ {
+  return visits[n];
+ }
+
+ /** The last fill's visits as a Segment, with their colours in image. */
+ Segment segment(ImageMatrix image)
+ {
+  int red[][] = image.getRedPointer();
+  int green[][] = image.getGreenPointer();
+  int blue[][] = image.getBluePointer();
+  int coords[] = new int[count];
+  int r[] = new int[count], g[] = new int[count], b[] = new int[count];
+  for (int n = 0; n < count; n++)
+  {
+   int p = visits[count - 1 - n]; // the last visit first, as RGBList held them
+   int i = p / cols, j = p % cols;
+   coords[n] = p;
+   r[n] = red[i][j];
+   g[n] = green[i][j];
+   b[n] = blue[i][j];
+  }
+  return new Segment(cols, coords, r, g, b);
+ }
+}
@@ -21,7 +21,7 @@ public class TestFrame // extends Frame
 	private BufferedImage image;
 	private MarkSegments markSegments;
 	private String catString;
-	private float waveMat[][];
+	private FeatureTensor waveMat;
 	// private Image img;
 	public URL path;
 	public String str_path;
@@ -141,7 +141,7 @@ public class TestFrame // extends Frame
 		wTransform.Segment();
 		SegmentedImage = wTransform.getSegmentedImage();
 		display = new DisplayImage(outputDirectory + "Segmented_" + fileName, SegmentedImage);
-		waveMat = wTransform.getMatrix();
+		waveMat = wTransform.getFeatures();
 
 		// Mark segments
 		try {
@@ -164,6 +164,10 @@ public class TestFrame // extends Frame
 	}
 
 	public float[][] getWaveMatrix() {
+		return waveMat == null ? null : waveMat.toArray();
+	}
+
+	public FeatureTensor getWaveFeatures() {
 		return waveMat;
 	}
 
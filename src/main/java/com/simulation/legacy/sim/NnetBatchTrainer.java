@@ -0,0 +1,251 @@
+package com.simulation.legacy.sim;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Mini-batch backpropagation for {@link Sda}, with the weights laid out as
+ * flat row-major {@code units[l] x units[l - 1]} matrices.
+ * <p>
+ * Each batch is propagated layer by layer as a matrix product over all of
+ * its samples, and the weight gradient is summed over the batch before one
+ * update. The update keeps the online rule's momentum and learning rate,
+ * applied to the batch mean: {@code dW = Eta * mean(Err * Out)},
+ * {@code W += dW + Alpha * dW'}. Like the online trainer, the bias unit at
+ * index 0 of each layer is not connected.
+ * <p>
+ * Batches are cut into chunks of {@link #CHUNK} samples, which run in
+ * parallel and are reduced in a fixed order, so the result does not depend
+ * on the number of cores.
+ */
+final class NnetBatchTrainer {
+    static final int CHUNK = 64;
+
+    private final int[] units;
+    private final int layers;
+    private final int batch;
+    private final float[][] weights;
+    private final float[][] dWeights;
+    private final Chunk[] chunks;
+
+    NnetBatchTrainer(int[] units, int layers, int batch) {
+        this.units = Arrays.copyOf(units, layers);
+        this.layers = layers;
+        this.batch = batch;
+        this.weights = new float[layers][];
+        this.dWeights = new float[layers][];
+        for (int l = 1; l < layers; l++) {
+            weights[l] = new float[this.units[l] * this.units[l - 1]];
+            dWeights[l] = new float[this.units[l] * this.units[l - 1]];
+        }
+        this.chunks = new Chunk[(batch + CHUNK - 1) / CHUNK];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = new Chunk();
+        }
+    }
+
+    /**
+     * One pass over the first {@code samples} rows of {@code data}, updating
+     * the weights of {@code net} once per batch. Returns the largest sample
+     * error seen, as {@code Sda.TrainNet} records it.
+     */
+    float epoch(NET net, NnetDataset data, int samples) {
+        load(net);
+        float maxErr = 0;
+        for (int start = 0; start < samples; start += batch) {
+            int size = Math.min(batch, samples - start);
+            maxErr = Math.max(maxErr, step(net, data, start, size));
+        }
+        store(net);
+        return maxErr;
+    }
+
+    private float step(NET net, NnetDataset data, int start, int size) {
+        int used = (size + CHUNK - 1) / CHUNK;
+        IntStream range = IntStream.range(0, used);
+        if (used > 1) {
+            range = range.parallel();
+        }
+        range.forEach(c -> chunks[c].run(net.Gain, data, start + c * CHUNK, Math.min(CHUNK, size - c * CHUNK)));
+
+        float maxErr = 0;
+        for (int c = 0; c < used; c++) {
+            maxErr = Math.max(maxErr, chunks[c].maxErr);
+        }
+        float rate = net.Eta / size;
+        for (int l = 1; l < layers; l++) {
+            float[] w = weights[l];
+            float[] dw = dWeights[l];
+            for (int k = 0; k < w.length; k++) {
+                float g = 0;
+                for (int c = 0; c < used; c++) {
+                    g += chunks[c].grads[l][k];
+                }
+                float d = rate * g;
+                w[k] += d + net.Alpha * dw[k];
+                dw[k] = d;
+            }
+        }
+        return maxErr;
+    }
+
+    private void load(NET net) {
+        for (int l = 1; l < layers; l++) {
+            int width = units[l - 1];
+            for (int i = 0; i < units[l]; i++) {
+                System.arraycopy(net.Layer[l].Weight[i + 1], 1, weights[l], i * width, width);
+                System.arraycopy(net.Layer[l].dWeight[i + 1], 1, dWeights[l], i * width, width);
+            }
+        }
+    }
+
+    private void store(NET net) {
+        for (int l = 1; l < layers; l++) {
+            int width = units[l - 1];
+            for (int i = 0; i < units[l]; i++) {
+                System.arraycopy(weights[l], i * width, net.Layer[l].Weight[i + 1], 1, width);
+                System.arraycopy(dWeights[l], i * width, net.Layer[l].dWeight[i + 1], 1, width);
+            }
+        }
+    }
+
+    /**
+     * Activations, deltas and the partial gradient of up to {@link #CHUNK}
+     * samples. Activations and deltas are stored unit-major, value
+     * {@code [j * CHUNK + b]} for unit {@code j} of sample {@code b}, so the
+     * innermost loops run along the batch and compile to vector code.
+     */
+    private final class Chunk {
+        final float[][] acts = new float[layers][];
+        final float[][] deltas = new float[layers][];
+        final float[][] grads = new float[layers][];
+        final float[] sum = new float[CHUNK];
+        float maxErr;
+
+        Chunk() {
+            for (int l = 0; l < layers; l++) {
+                acts[l] = new float[CHUNK * units[l]];
+                deltas[l] = new float[CHUNK * units[l]];
+                if (l > 0) {
+                    grads[l] = new float[units[l] * units[l - 1]];
+                }
+            }
+        }
+
+        void run(float gain, NnetDataset data, int first, int rows) {
+            float[] block = data.block();
+            int stride = data.width();
+            int in = units[0];
+            float[] x = acts[0];
+            for (int b = 0; b < rows; b++) {
+                int row = (first + b) * stride;
+                for (int j = 0; j < in; j++) {
+                    x[j * CHUNK + b] = block[row + j];
+                }
+            }
+            for (int l = 1; l < layers; l++) {
+                forward(gain, l, rows);
+            }
+
+            // Output error against the target columns that follow the inputs
+            int top = layers - 1;
+            int out = units[top];
+            float[] a = acts[top];
+            float[] d = deltas[top];
+            maxErr = 0;
+            for (int b = 0; b < rows; b++) {
+                int target = (first + b) * stride + in;
+                float error = 0;
+                for (int i = 0; i < out; i++) {
+                    float o = a[i * CHUNK + b];
+                    float err = block[target + i] - o;
+                    d[i * CHUNK + b] = gain * o * (1 - o) * err;
+                    error += 0.5 * err * err;
+                }
+                maxErr = Math.max(maxErr, error);
+            }
+
+            for (int l = top; l > 0; l--) {
+                gradient(l, rows);
+                if (l > 1) {
+                    backward(gain, l, rows);
+                }
+            }
+        }
+
+        /** acts[l] = sigmoid(gain * W[l] . acts[l - 1]) for every sample at once. */
+        private void forward(float gain, int l, int rows) {
+            float[] w = weights[l];
+            float[] prev = acts[l - 1];
+            float[] next = acts[l];
+            int width = units[l - 1];
+            for (int i = 0; i < units[l]; i++) {
+                int row = i * width;
+                Arrays.fill(sum, 0, rows, 0f);
+                for (int j = 0; j < width; j++) {
+                    float wij = w[row + j];
+                    int src = j * CHUNK;
+                    for (int b = 0; b < rows; b++) {
+                        sum[b] += wij * prev[src + b];
+                    }
+                }
+                int dst = i * CHUNK;
+                for (int b = 0; b < rows; b++) {
+                    next[dst + b] = (float) (1 / (1 + Math.exp(-gain * sum[b])));
+                }
+            }
+        }
+
+        /** deltas[l - 1] = gain * a (1 - a) * (W[l]^T . deltas[l]). */
+        private void backward(float gain, int l, int rows) {
+            float[] w = weights[l];
+            float[] d = deltas[l];
+            float[] a = acts[l - 1];
+            float[] e = deltas[l - 1];
+            int width = units[l - 1];
+            int n = units[l];
+            for (int j = 0; j < width; j++) {
+                int dst = j * CHUNK;
+                Arrays.fill(e, dst, dst + rows, 0f);
+                for (int i = 0; i < n; i++) {
+                    float wij = w[i * width + j];
+                    int src = i * CHUNK;
+                    for (int b = 0; b < rows; b++) {
+                        e[dst + b] += wij * d[src + b];
+                    }
+                }
+                for (int b = 0; b < rows; b++) {
+                    float o = a[dst + b];
+                    e[dst + b] = gain * o * (1 - o) * e[dst + b];
+                }
+            }
+        }
+
+        /** grads[l] = deltas[l] . acts[l - 1]^T, summed over the chunk. */
+        private void gradient(int l, int rows) {
+            float[] g = grads[l];
+            float[] d = deltas[l];
+            float[] a = acts[l - 1];
+            int width = units[l - 1];
+            for (int i = 0; i < units[l]; i++) {
+                int src = i * CHUNK;
+                for (int j = 0; j < width; j++) {
+                    int act = j * CHUNK;
+                    // Four running sums keep the adds off one dependency chain
+                    float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+                    int b = 0;
+                    for (; b + 3 < rows; b += 4) {
+                        s0 += d[src + b] * a[act + b];
+                        s1 += d[src + b + 1] * a[act + b + 1];
+                        s2 += d[src + b + 2] * a[act + b + 2];
+                        s3 += d[src + b + 3] * a[act + b + 3];
+                    }
+                    for (; b < rows; b++) {
+                        s0 += d[src + b] * a[act + b];
+                    }
+                    g[i * width + j] = (s0 + s1) + (s2 + s3);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.simulation.legacy.sim;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * A whitespace-separated training or test file parsed once into a single
+ * row-major {@code float[]} block of {@code rows * width} values, so the
+ * trainer can sweep it every epoch without touching the file again.
+ * <p>
+ * When {@code -Dnnet.dataset.cache} names a directory, the parsed block is
+ * also written there as a small binary cache named after the source's
+ * checksum, and memory-mapped back on the next load of the same data. Jobs
+ * copy their data into a workspace that is deleted afterwards, so the cache
+ * cannot live next to the source; it is off unless the directory is set.
+ * Uploads rewrite the source in place, so its modification time is not a
+ * safe key.
+ */
+final class NnetDataset {
+    private static final int MAGIC = 0x4E4E4431; // "NND1"
+    private static final int HEADER_BYTES = 4 + 8 + 8 + 4 + 4 + 1;
+    private static final String CACHE_DIR = System.getProperty("nnet.dataset.cache");
+
+    private final int rows;
+    private final int width;
+    private final float[] values;
+
+    private NnetDataset(int rows, int width, float[] values) {
+        this.rows = rows;
+        this.width = width;
+        this.values = values;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int width() {
+        return width;
+    }
+
+    /** The row-major block itself, for callers that sweep it in place. Not to be modified. */
+    float[] block() {
+        return values;
+    }
+
+    /** Copies row {@code i} into {@code dst}. */
+    void copyRow(int i, float[] dst) {
+        System.arraycopy(values, i * width, dst, 0, width);
+    }
+
+    /** Copies columns {@code from..width} of row {@code i} to the start of {@code dst}. */
+    void copyTail(int i, int from, float[] dst) {
+        System.arraycopy(values, i * width + from, dst, 0, width - from);
+    }
+
+    /**
+     * Loads the first {@code rows} lines of {@code file}. Lines that are
+     * blank or do not hold exactly {@code width} numbers are reported and
+     * left as zeros. With {@code compact} the good lines are packed to the
+     * front instead of keeping their line positions. Rows past the end of
+     * the file stay zero.
+     */
+    static NnetDataset load(File file, int rows, int width, boolean compact) throws IOException {
+        if (CACHE_DIR == null || CACHE_DIR.isEmpty()) {
+            return parse(file, rows, width, compact);
+        }
+        long checksum = checksum(file);
+        File cache = new File(CACHE_DIR, String.format("%016x-%dx%d%s.f32", checksum, rows, width,
+                compact ? "c" : ""));
+        NnetDataset cached = readCache(cache, file.length(), checksum, rows, width, compact);
+        if (cached != null) {
+            return cached;
+        }
+        NnetDataset parsed = parse(file, rows, width, compact);
+        try {
+            writeCache(cache, file.length(), checksum, parsed, compact);
+        } catch (IOException e) {
+            // The cache only saves time; the parsed data is already in hand
+            System.err.println("Could not write dataset cache " + cache + ": " + e.getMessage());
+        }
+        return parsed;
+    }
+
+    private static NnetDataset parse(File file, int rows, int width, boolean compact) throws IOException {
+        float[] values = new float[rows * width];
+        int row = 0;
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            for (int i = 0; i < rows && (line = in.readLine()) != null; i++) {
+                int base = (compact ? row : i) * width;
+                int n = parseLine(line, values, base, width);
+                if (n == 0) {
+                    continue;
+                }
+                if (n != width) {
+                    System.err.println("Invalid line in " + file.getName() + " at row " + i + ": " + line.trim());
+                    Arrays.fill(values, base, base + width, 0f);
+                    continue;
+                }
+                row++;
+            }
+        }
+        return new NnetDataset(rows, width, values);
+    }
+
+    /**
+     * Parses up to {@code width} whitespace-separated floats of {@code line}
+     * into {@code out} at {@code base}. Returns the number of tokens on the
+     * line, which is {@code width + 1} if there were more than {@code width}.
+     */
+    private static int parseLine(String line, float[] out, int base, int width) {
+        int len = line.length();
+        int n = 0;
+        int p = 0;
+        while (true) {
+            while (p < len && Character.isWhitespace(line.charAt(p))) {
+                p++;
+            }
+            if (p == len) {
+                return n;
+            }
+            int start = p;
+            while (p < len && !Character.isWhitespace(line.charAt(p))) {
+                p++;
+            }
+            if (n == width) {
+                return n + 1;
+            }
+            try {
+                out[base + n] = Float.parseFloat(line.substring(start, p));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+            n++;
+        }
+    }
+
+    /** CRC32C of the whole file; far cheaper than parsing it. */
+    static long checksum(File file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+        try (FileChannel ch = FileChannel.open(file.toPath())) {
+            while (ch.read(buf) > 0) {
+                buf.flip();
+                crc.update(buf);
+                buf.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static NnetDataset readCache(File cache, long length, long checksum, int rows, int width, boolean compact) {
+        if (!cache.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(cache, "r");
+             FileChannel ch = raf.getChannel()) {
+            long expected = HEADER_BYTES + 4L * rows * width;
+            if (ch.size() != expected) {
+                return null;
+            }
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt() != MAGIC || map.getLong() != length || map.getLong() != checksum
+                    || map.getInt() != rows || map.getInt() != width || map.get() != (compact ? 1 : 0)) {
+                return null;
+            }
+            float[] values = new float[rows * width];
+            map.asFloatBuffer().get(values);
+            return new NnetDataset(rows, width, values);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Writes the cache beside itself and moves it into place, so a reader never maps a half-written file. */
+    private static void writeCache(File cache, long length, long checksum, NnetDataset data, boolean compact)
+            throws IOException {
+        Path dir = cache.toPath().getParent();
+        Files.createDirectories(dir);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + 4 * data.values.length).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putLong(length).putLong(checksum)
+                .putInt(data.rows).putInt(data.width).put((byte) (compact ? 1 : 0));
+        buf.asFloatBuffer().put(data.values);
+        buf.rewind();
+        // Sweep candidates load the same data at once, so each writer needs a temp file of its own
+        Path tmp = Files.createTempFile(dir, cache.getName(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+                ch.force(false);
+            }
+            Files.move(tmp, cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.simulation.legacy.sim;
+
+/**
+ * Told the error of each training epoch as {@link nnet} writes it to
+ * {@code EFile.txt}. Called on the training thread; throwing stops the run.
+ */
+@FunctionalInterface
+public interface NnetEpochListener {
+    void epoch(int epoch, float error);
+}
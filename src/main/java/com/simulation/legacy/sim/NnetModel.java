@@ -0,0 +1,116 @@
+package com.simulation.legacy.sim;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The weights of a trained network, held in memory so it can be evaluated
+ * any number of times without re-reading the weights file.
+ * <p>
+ * Immutable, so one instance can serve concurrent requests. {@link #predict}
+ * performs exactly the float arithmetic of {@code Sda.PropagateNet}, so its
+ * outputs are the ones the test mode writes to {@code results.txt}.
+ */
+public final class NnetModel {
+    private final int[] units;
+    // weights[l][(i - 1) * units[l - 1] + (j - 1)] is Net.Layer[l].Weight[i][j]
+    private final float[][] weights;
+    private final float gain;
+
+    NnetModel(int[] units, float[][] weights, float gain) {
+        this.units = units;
+        this.weights = weights;
+        this.gain = gain;
+    }
+
+    /**
+     * Layer sizes the way {@code Sda} lays them out: input, first hidden and
+     * output nodes, of which the first {@code layers} are used.
+     */
+    public static int[] topology(int inNodes, int hiddenNodes, int outNodes, int layers) {
+        if (layers < 2 || layers > 3) {
+            throw new IllegalArgumentException("Number of layers must be 2 or 3, got " + layers);
+        }
+        return Arrays.copyOf(new int[] {inNodes, hiddenNodes, outNodes}, layers);
+    }
+
+    /** Reads the weights a training run wrote, one value per line, as {@code Sda.ReadWeights} does. */
+    public static NnetModel load(Path weightsFile, int[] units) throws IOException {
+        float[][] weights = new float[units.length][];
+        for (int l = 1; l < units.length; l++) {
+            weights[l] = new float[units[l] * units[l - 1]];
+        }
+        int l = 1;
+        int k = 0;
+        try (BufferedReader in = Files.newBufferedReader(weightsFile, StandardCharsets.UTF_8)) {
+            String line;
+            while (l < units.length && (line = in.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                weights[l][k++] = Float.parseFloat(trimmed);
+                if (k == weights[l].length) {
+                    l++;
+                    k = 0;
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid weight in " + weightsFile.getFileName() + ": " + e.getMessage());
+        }
+        if (l < units.length) {
+            throw new IOException("Insufficient weights in " + weightsFile.getFileName() + " for layer " + l);
+        }
+        return new NnetModel(units.clone(), weights, 1);
+    }
+
+    /** Reads the binary {@code WFile.bin} a training run writes. */
+    public static NnetModel loadBinary(Path weightsFile, int[] units) throws IOException {
+        return new NnetModel(units.clone(), NnetSnapshot.readWeights(weightsFile, units), 1);
+    }
+
+    public int inputs() {
+        return units[0];
+    }
+
+    public int outputs() {
+        return units[units.length - 1];
+    }
+
+    public int[] units() {
+        return units.clone();
+    }
+
+    /**
+     * Runs the network on the first {@link #inputs()} values of {@code input}
+     * and writes {@link #outputs()} values to {@code output}.
+     */
+    public void predict(float[] input, float[] output) {
+        float[] prev = Arrays.copyOf(input, units[0]);
+        for (int l = 1; l < units.length; l++) {
+            float[] w = weights[l];
+            int width = units[l - 1];
+            float[] next = new float[units[l]];
+            for (int i = 0; i < next.length; i++) {
+                int row = i * width;
+                float sum = 0;
+                for (int j = 0; j < width; j++) {
+                    sum += w[row + j] * prev[j];
+                }
+                next[i] = (float) (1 / (1 + Math.exp(-gain * sum)));
+            }
+            prev = next;
+        }
+        System.arraycopy(prev, 0, output, 0, prev.length);
+    }
+
+    public float[] predict(float[] input) {
+        float[] output = new float[outputs()];
+        predict(input, output);
+        return output;
+    }
+}
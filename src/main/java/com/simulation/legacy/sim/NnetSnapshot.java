@@ -0,0 +1,187 @@
+package com.simulation.legacy.sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Little-endian binary snapshots of a network's weights, in place of one
+ * float per text line.
+ * <p>
+ * A weights file ({@code WFile.bin}) holds the trained weights in the order
+ * {@code WFile.txt} lists them. A checkpoint also holds the current weights
+ * and momentum terms, the epoch to resume at and the best error so far, and
+ * is tied to the training file and settings it was taken with, so a stale
+ * checkpoint from another run is never resumed. Both are written to a
+ * sibling file first and moved into place, so a job killed mid-write leaves
+ * the previous snapshot intact.
+ */
+final class NnetSnapshot {
+    private static final int WEIGHTS_MAGIC = 0x4E4E5731; // "NNW1"
+    private static final int CHECKPOINT_MAGIC = 0x4E4E4332; // "NNC2"
+
+    /**
+     * What a checkpoint is valid for: the training file's length and checksum,
+     * its row count, and the batch size, learning rate, momentum and epoch
+     * limit it was trained with.
+     */
+    record Key(long length, long checksum, int rows, int batch, float eta, float alpha, int maxEpochs) {
+    }
+
+    /** Where a resumed run picks up. */
+    record Resume(int epoch, float minTrainError) {
+    }
+
+    private NnetSnapshot() {
+    }
+
+    /** Writes the saved (best) weights of {@code layers}. */
+    static void writeWeights(Path file, int[] units, LAYER[] layers) throws IOException {
+        ByteBuffer buf = allocate(header(units) + 4 * count(units));
+        buf.putInt(WEIGHTS_MAGIC);
+        putUnits(buf, units);
+        for (int l = 1; l < units.length; l++) {
+            putMatrix(buf, layers[l].WeightSave, units[l], units[l - 1]);
+        }
+        write(file, buf);
+    }
+
+    /**
+     * Reads a weights file as flat row-major matrices, {@code [l][(i - 1) * units[l - 1] + (j - 1)]}
+     * for weight {@code [i][j]} of layer {@code l}.
+     */
+    static float[][] readWeights(Path file, int[] units) throws IOException {
+        ByteBuffer buf = read(file);
+        if (buf.remaining() != header(units) + 4 * count(units) || buf.getInt() != WEIGHTS_MAGIC
+                || !unitsMatch(buf, units)) {
+            throw new IOException(file.getFileName() + " does not hold weights for layers " + Arrays.toString(units));
+        }
+        float[][] weights = new float[units.length][];
+        for (int l = 1; l < units.length; l++) {
+            weights[l] = new float[units[l] * units[l - 1]];
+            buf.asFloatBuffer().get(weights[l]);
+            buf.position(buf.position() + 4 * weights[l].length);
+        }
+        return weights;
+    }
+
+    static void writeCheckpoint(Path file, int[] units, LAYER[] layers, Key key, Resume resume) throws IOException {
+        ByteBuffer buf = allocate(header(units) + 44 + 12 * count(units));
+        buf.putInt(CHECKPOINT_MAGIC);
+        putUnits(buf, units);
+        buf.putLong(key.length()).putLong(key.checksum()).putInt(key.rows()).putInt(key.batch());
+        buf.putFloat(key.eta()).putFloat(key.alpha()).putInt(key.maxEpochs());
+        buf.putInt(resume.epoch()).putFloat(resume.minTrainError());
+        for (int l = 1; l < units.length; l++) {
+            putMatrix(buf, layers[l].Weight, units[l], units[l - 1]);
+            putMatrix(buf, layers[l].WeightSave, units[l], units[l - 1]);
+            putMatrix(buf, layers[l].dWeight, units[l], units[l - 1]);
+        }
+        write(file, buf);
+    }
+
+    /**
+     * Loads a checkpoint into {@code layers}. Returns null, leaving the
+     * layers untouched, if there is none or it was taken for a different
+     * network, training file or training settings, or if it is already at
+     * the epoch limit.
+     */
+    static Resume readCheckpoint(Path file, int[] units, LAYER[] layers, Key key) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        ByteBuffer buf = read(file);
+        if (buf.remaining() != header(units) + 44 + 12 * count(units) || buf.getInt() != CHECKPOINT_MAGIC
+                || !unitsMatch(buf, units) || buf.getLong() != key.length() || buf.getLong() != key.checksum()
+                || buf.getInt() != key.rows() || buf.getInt() != key.batch() || buf.getFloat() != key.eta()
+                || buf.getFloat() != key.alpha() || buf.getInt() != key.maxEpochs()) {
+            return null;
+        }
+        Resume resume = new Resume(buf.getInt(), buf.getFloat());
+        // Training runs an epoch before it checks the limit, so a run at its limit must not resume
+        if (resume.epoch() >= key.maxEpochs()) {
+            return null;
+        }
+        for (int l = 1; l < units.length; l++) {
+            getMatrix(buf, layers[l].Weight, units[l], units[l - 1]);
+            getMatrix(buf, layers[l].WeightSave, units[l], units[l - 1]);
+            getMatrix(buf, layers[l].dWeight, units[l], units[l - 1]);
+        }
+        return resume;
+    }
+
+    private static int header(int[] units) {
+        return 4 + 4 + 4 * units.length;
+    }
+
+    private static int count(int[] units) {
+        int n = 0;
+        for (int l = 1; l < units.length; l++) {
+            n += units[l] * units[l - 1];
+        }
+        return n;
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putUnits(ByteBuffer buf, int[] units) {
+        buf.putInt(units.length);
+        for (int u : units) {
+            buf.putInt(u);
+        }
+    }
+
+    private static boolean unitsMatch(ByteBuffer buf, int[] units) {
+        if (buf.getInt() != units.length) {
+            return false;
+        }
+        for (int u : units) {
+            if (buf.getInt() != u) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Rows 1..rows and columns 1..cols of a layer matrix; index 0 is the unconnected bias. */
+    private static void putMatrix(ByteBuffer buf, float[][] m, int rows, int cols) {
+        for (int i = 1; i <= rows; i++) {
+            for (int j = 1; j <= cols; j++) {
+                buf.putFloat(m[i][j]);
+            }
+        }
+    }
+
+    private static void getMatrix(ByteBuffer buf, float[][] m, int rows, int cols) {
+        for (int i = 1; i <= rows; i++) {
+            for (int j = 1; j <= cols; j++) {
+                m[i][j] = buf.getFloat();
+            }
+        }
+    }
+
+    private static ByteBuffer read(Path file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void write(Path file, ByteBuffer buf) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,121 @@
+package com.simulation.legacy.sim;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The train-mode epoch loop of {@link nnet}: trains up to a given number of
+ * epochs, keeps the best weights seen and stops early once the error is
+ * small enough or has grown to half again the best, restoring the best
+ * weights when it does.
+ * <p>
+ * With a checkpoint interval, the full training state is written to
+ * {@code nnet_sia/Checkpoint.bin} every that many epochs (see
+ * {@link NnetSnapshot}). A run started on a server path that holds a
+ * checkpoint for the same network, training file and settings resumes
+ * from it instead of starting over; the checkpoint is removed once training
+ * finishes.
+ */
+final class NnetTrainingSupervisor {
+    private final Sda sda;
+    private final int maxEpochs;
+    private final Path checkpoint;
+    private final Path errorFile;
+    private final int[] units;
+    private final NnetEpochListener listener;
+    private NnetSnapshot.Key key;
+    private int start;
+    private float minTrainError = Float.POSITIVE_INFINITY;
+
+    NnetTrainingSupervisor(Sda sda, int maxEpochs, NnetEpochListener listener) {
+        this.sda = sda;
+        this.maxEpochs = maxEpochs;
+        this.listener = listener;
+        this.checkpoint = Path.of(sda.serverpath, "nnet_sia", "Checkpoint.bin");
+        this.errorFile = sda.fpt2.toPath();
+        this.units = sda.LayerUnits();
+    }
+
+    /**
+     * Starts from the checkpoint on the server path if there is a usable
+     * one, and otherwise from the legacy initial weights. Returns whether
+     * the run resumed, in which case the error file has been cut back to the
+     * epochs before the checkpoint and should be appended to.
+     */
+    boolean prepare() throws IOException {
+        if (sda.CHECKPOINT > 0) {
+            key = new NnetSnapshot.Key(sda.traindata.length(), NnetDataset.checksum(sda.traindata),
+                    sda.N_Traindata, sda.BATCH, sda.ETA, sda.ALPHA, maxEpochs);
+            NnetSnapshot.Resume resume = NnetSnapshot.readCheckpoint(checkpoint, units, sda.Net.Layer, key);
+            if (resume != null) {
+                start = resume.epoch();
+                minTrainError = resume.minTrainError();
+                trimErrorFile();
+                System.out.println("Resuming training at epoch " + start);
+                return true;
+            }
+        }
+        sda.RandomWeights();
+        return false;
+    }
+
+    void run() throws Exception {
+        boolean Stop = false;
+        int n = start;
+        do {
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Training interrupted at epoch " + n);
+            }
+            sda.TrainNet(n);
+            if (listener != null) {
+                listener.epoch(n, sda.TrainError);
+            }
+            if (sda.TrainError < minTrainError) {
+                sda.SaveWeights();
+                minTrainError = sda.TrainError;
+                if (sda.TrainError < sda.MinErr) {
+                    sda.RestoreWeights();
+                    Stop = true;
+                }
+            } else if ((sda.TrainError > (1.5 * minTrainError)) || (sda.TrainError < sda.MinErr)) {
+                sda.RestoreWeights();
+                Stop = true;
+            }
+            n++;
+            if (n >= maxEpochs)
+                Stop = true;
+            if (!Stop && sda.CHECKPOINT > 0 && n % sda.CHECKPOINT == 0)
+                checkpoint(n);
+        } while (!Stop);
+        Files.deleteIfExists(checkpoint);
+    }
+
+    private void checkpoint(int next) throws IOException {
+        // The error file must hold every epoch the checkpoint covers
+        sda.fpt2o.flush();
+        NnetSnapshot.writeCheckpoint(checkpoint, units, sda.Net.Layer, key,
+                new NnetSnapshot.Resume(next, minTrainError));
+    }
+
+    /** Drops error file lines of epochs after the checkpoint, written before the run was killed. */
+    private void trimErrorFile() throws IOException {
+        if (!Files.exists(errorFile)) {
+            return;
+        }
+        List<String> kept = Files.readAllLines(errorFile, StandardCharsets.UTF_8).stream()
+                .filter(line -> {
+                    int comma = line.indexOf(',');
+                    try {
+                        return comma > 0 && Integer.parseInt(line.substring(0, comma)) < start;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                })
+                .collect(Collectors.toList());
+        Files.write(errorFile, kept, StandardCharsets.UTF_8);
+    }
+}
@@ -5,6 +5,8 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
@@ -14,14 +16,54 @@ import org.springframework.stereotype.Component;
  */
 @Component("legacyNnet")
 public class nnet {
-	public static String[] params;
+	/**
+	 * One lock per server path. Every file a run reads or writes lives under
+	 * its server path, so runs on different paths are independent and run in
+	 * parallel, while runs sharing a path take turns. A path's lock is
+	 * dropped when its last run ends.
+	 */
+	private static final Map<String, ReentrantLock> PATH_LOCKS = new ConcurrentHashMap<>();
+	
+	/**
+	 * Size of the fixed table {@code Sda.RandomWeights} starts training
+	 * from; a network with more weights than this cannot be trained.
+	 */
+	public static final int MAX_INITIAL_WEIGHTS = 105;
 	
 	/**
 	 * Main method for neural network training and testing
 	 */
 	public static void main(String args[]) throws Exception {
-		
-		params = args;
+		runNeuralNetwork(args, null);
+	}
+	
+	/**
+	 * Runs one job, reporting each training epoch's error to
+	 * {@code listener} as it is written to EFile.txt. A listener may stop
+	 * training by throwing.
+	 */
+	public static void runNeuralNetwork(String[] parameters, NnetEpochListener listener) throws Exception {
+		String key = new File(parameters[8]).getAbsoluteFile().toPath().normalize().toString();
+		ReentrantLock lock;
+		while (true) {
+			lock = PATH_LOCKS.computeIfAbsent(key, k -> new ReentrantLock());
+			lock.lock();
+			// The last holder may have dropped this lock from the map while we waited for it
+			if (PATH_LOCKS.get(key) == lock)
+				break;
+			lock.unlock();
+		}
+		try {
+			execute(parameters, listener);
+		} finally {
+			// Most paths are one-off job workspaces, so the entry goes once nobody else wants it
+			PATH_LOCKS.computeIfPresent(key, (k, l) -> l.hasQueuedThreads() ? l : null);
+			lock.unlock();
+		}
+	}
+	
+	/** Runs one training or test job; all of its state lives in its own {@link Sda}. */
+	private static void execute(String params[], NnetEpochListener listener) throws Exception {
 		System.out.println(System.getProperty ("user.dir"));  
 		
 		Sda sda=new Sda(params);
@@ -36,86 +78,78 @@ public class nnet {
 
 		sda.GenerateNetwork();
 
-		if(params[7].equals("train")) {
+		try {
+			if(params[7].equals("train")) {
 			
-			// Create output directory if it doesn't exist
-			File outputDir = new File(sda.serverpath + "nnet_sia/");
-			if (!outputDir.exists()) {
-				outputDir.mkdirs();
-			}
+				// Create output directory if it doesn't exist
+				File outputDir = new File(sda.serverpath + "nnet_sia/");
+				if (!outputDir.exists()) {
+					outputDir.mkdirs();
+				}
 			
-			sda.fpt2=new File(sda.serverpath+"nnet_sia/EFile.txt");
-			sda.fpt3= new File(sda.serverpath+"nnet_sia/WFile.txt");
-			sda.fpt5=new File(sda.serverpath+"nnet_sia/WtFile.txt");
-			sda.fpt1=new File(sda.serverpath+"nnet_sia/results.txt");
-			sda.fpt1.delete();
+				sda.fpt2=new File(sda.serverpath+"nnet_sia/EFile.txt");
+				sda.fpt3= new File(sda.serverpath+"nnet_sia/WFile.txt");
+				sda.fpt5=new File(sda.serverpath+"nnet_sia/WtFile.txt");
+				sda.fpt1=new File(sda.serverpath+"nnet_sia/results.txt");
+				sda.fpt1.delete();
 			
-			sda.fpt2o=new FileWriter(sda.fpt2);
-			sda.fpt3o=new FileWriter(sda.fpt3);
-			sda.fpt5o=new FileWriter(sda.fpt5);
-			sda.fpt3i=new FileReader(sda.fpt3);
-			sda.fpt3buffer=new BufferedReader(sda.fpt3i);
-			sda.e=sda.fpt3buffer.readLine();
-
-			System.out.println("Training data");
-			Stop=false;
-			MinTrainError=sda.MAX_REAL;
-			sda.RandomWeights();
-			System.out.println("\n************Running Back Propagation Network****************\n");
-			System.out.println("\nEnter the training set file name : traindata.txt");
-			inputfile="traindata.txt";
-			n=0;
-			do {
-				sda.TrainNet(n);
-				if(sda.TrainError<MinTrainError) {
-					sda.SaveWeights();
-					MinTrainError=sda.TrainError;
-					if(sda.TrainError<sda.MinErr) {
-						sda.RestoreWeights();
-						Stop=true;
-					}
+				System.out.println("Training data");
+				NnetTrainingSupervisor supervisor=new NnetTrainingSupervisor(sda,sda.MAX_EPOCHS,listener);
+				boolean resumed=supervisor.prepare();
+				sda.fpt2o=new FileWriter(sda.fpt2,resumed);
+				if(sda.TEXT_WEIGHTS) {
+					sda.fpt3o=new FileWriter(sda.fpt3);
+					sda.fpt5o=new FileWriter(sda.fpt5);
 				}
-				else if((sda.TrainError>(1.5*MinTrainError))||(sda.TrainError<sda.MinErr)) {
-					sda.RestoreWeights();
-					Stop=true;
+				else {
+					// Stale text weights of an earlier run would not match WFile.bin
+					sda.fpt3.delete();
+					sda.fpt5.delete();
+				}
+				System.out.println("\n************Running Back Propagation Network****************\n");
+				System.out.println("\nEnter the training set file name : traindata.txt");
+				inputfile="traindata.txt";
+				supervisor.run();
+				sda.WriteWeights();
+				sda.TestNet();
+
+				sda.fpt2o.close();
+				if(sda.TEXT_WEIGHTS) {
+					sda.fpt3o.close();
+					sda.fpt5o.close();
 				}
-				n++;
-				if (n==500)   // no of iterations for efile  ?? why 30 check and change accordingly
-					Stop=true;
-			}while(!Stop);
-			sda.WriteWeights();
-			sda.TestNet();
-
-			sda.fpt2o.close();
-			sda.fpt3o.close();
-			sda.fpt5o.close();
 
-		}
-		else if(params[7].equals("test")) {
-			
-			// Create output directory if it doesn't exist
-			File outputDir = new File(sda.serverpath + "nnet_sia/");
-			if (!outputDir.exists()) {
-				outputDir.mkdirs();
 			}
+			else if(params[7].equals("test")) {
 			
-			sda.fpt1=new File(sda.serverpath+"nnet_sia/results.txt");	
-			sda.fpt1.delete(); // Optional: delete if exists to regenerate fresh
-			sda.fpt1o = new FileWriter(sda.fpt1, true); // true = append mode
-			sda.fpt4=new File(sda.serverpath+"nnet_sia/OpError.txt");
-			sda.fpt7=new File(sda.serverpath+"nnet_sia/DWFile.txt");
+				// Create output directory if it doesn't exist
+				File outputDir = new File(sda.serverpath + "nnet_sia/");
+				if (!outputDir.exists()) {
+					outputDir.mkdirs();
+				}
 			
-			System.out.println("\nEnter the testing set file name:testdata.txt ");
-			System.out.println("\nEnter the results file name:results.txt ");
-
-			sda.ReadWeights();
-			sda.RestoreWeights();
-			System.out.println("\nDo you want to disturb weights? (Y/N) :n");
-			choice_dis='n';			//remove this line when reading 'choice_dis'
-			sda.EvaluateNet();
+				sda.fpt1=new File(sda.serverpath+"nnet_sia/results.txt");	
+				sda.fpt1.delete(); // Optional: delete if exists to regenerate fresh
+				sda.fpt1o = new FileWriter(sda.fpt1, true); // true = append mode
+				sda.fpt4=new File(sda.serverpath+"nnet_sia/OpError.txt");
+				sda.fpt7=new File(sda.serverpath+"nnet_sia/DWFile.txt");
 			
-			if(choice_dis=='y')
+				System.out.println("\nEnter the testing set file name:testdata.txt ");
+				System.out.println("\nEnter the results file name:results.txt ");
+
+				sda.ReadWeights();
+				sda.RestoreWeights();
+				System.out.println("\nDo you want to disturb weights? (Y/N) :n");
+				choice_dis='n';			//remove this line when reading 'choice_dis'
 				sda.EvaluateNet();
+			
+				if(choice_dis=='y')
+					sda.EvaluateNet();
+			}
+		}
+		finally {
+			// A cancelled or failed run ends by throwing; its workspace is deleted next
+			sda.CloseFiles();
 		}
 	}
 	
@@ -123,7 +157,6 @@ public class nnet {
 	 * Static method for easy integration with Spring Boot
 	 */
 	public static void runNeuralNetwork(String[] parameters) throws Exception {
-		params = parameters;
 		main(parameters);
 	}
 
@@ -171,7 +204,8 @@ class Sda {
 	int VECTDIM, n_runs, m, BIAS;
 	int opt[], Units[];
 	NET Net;
-	float TrainMatrix[][],TestMatrix[][];
+	NnetDataset TrainData, TestData;
+	NnetBatchTrainer BatchTrainer;
 	
 	float dWeight[], vector[], dOutput[][], dSum[][], dOut[][], OptiVector[], MinVector[], MaxVector[];
 	float Max_Err, TrainError, MIN_REAL, MAX_REAL;
@@ -179,6 +213,10 @@ class Sda {
 	
 	//data in para.h	start
 	int FEATURES, FLAGS, NUM_LAYERS, M, N, MID_NODES1, MID_NODES2, N_Traindata,N_Testdata;
+	int BATCH;			//Samples per weight update; 1 is the classic online training
+	int CHECKPOINT;			//Epochs between training checkpoints; 0 for none
+	int MAX_EPOCHS;			//Training stops after this many epochs at the latest
+	boolean TEXT_WEIGHTS;		//Also write the weights as text to WFile.txt and WtFile.txt
 	float N_Epochs, ALPHA, ETA, GAIN, MinErr;
 	//data in para.h	end
 
@@ -212,6 +250,18 @@ class Sda {
 		
 		serverpath = params[8];
 		
+		BATCH = params.length > 9 ? Math.max(1, Integer.parseInt(params[9])) : 1;
+		CHECKPOINT = params.length > 10 ? Math.max(0, Integer.parseInt(params[10])) : 0;
+		// Callers that predate the binary weights file still get the text ones
+		TEXT_WEIGHTS = params.length > 11 ? Boolean.parseBoolean(params[11]) : true;
+		
+		// Optional overrides of the learning rate, momentum and epoch limit, for tuning
+		if (params.length > 12 && !params[12].isEmpty())
+			ETA = Float.parseFloat(params[12]);
+		if (params.length > 13 && !params[13].isEmpty())
+			ALPHA = Float.parseFloat(params[13]);
+		MAX_EPOCHS = params.length > 14 && !params[14].isEmpty() ? Math.max(1, Integer.parseInt(params[14])) : 500;   // no of iterations for efile
+		
 		Disturbance=(float)0.3;		//Disturbance 30%
 		
 		traindata=new File(serverpath+"upload/traindata.txt");
@@ -242,6 +292,7 @@ class Sda {
 		traindatai=new FileReader(traindata);
 		trainbuffer=new BufferedReader(traindatai);
 		d=trainbuffer.readLine();
+		trainbuffer.close();
 		//System.out.println("d:"+d);
 		st=new StringTokenizer(d);
 
@@ -250,13 +301,11 @@ class Sda {
 		testdatai=new FileReader(testdata);
 		testbuffer=new BufferedReader(testdatai);
 		f=testbuffer.readLine();
+		testbuffer.close();
 
 		VECTDIM=FEATURES + FLAGS;
 		opt=new int[FEATURES+2];
 		dWeight=new float[FEATURES];
-		TrainMatrix=new float[N_Traindata][VECTDIM];
-		// TestMatrix = new float[N_Testdata][FEATURES];
-		TestMatrix = new float[N_Testdata][VECTDIM];
 		vector=new float[FEATURES];
 
 		dOutput=new float[FLAGS][FEATURES];
@@ -324,6 +373,10 @@ class Sda {
 	
 	
 	public void TrainNet(int n) throws Exception {
+		if(BATCH>1) {
+			TrainNetBatched(n);
+			return;
+		}
 		int i,a;
 		float MinTrainError,Prev_Err;
 		float Output[]=new float[M];
@@ -337,12 +390,8 @@ class Sda {
 		temp1=new float[VECTDIM];
 		temp2=new float[FLAGS];
 		for(i=0;i<N_Traindata;i++) {
-			for(a=0;a<VECTDIM;a++) {
-				temp1[a]=TrainMatrix[i][a];
-			}
-			for(a=FEATURES;a<VECTDIM;a++) {
-				temp2[a-FEATURES]=TrainMatrix[i][a];
-			}
+			TrainData.copyRow(i,temp1);
+			TrainData.copyTail(i,FEATURES,temp2);
 			SimulateNet(temp1,Output,temp2,true,false,0);				//%%%%%%%%
 
 			Max_Err=Math.max(Net.Error,Max_Err);
@@ -354,23 +403,20 @@ class Sda {
 		if(TrainError<MinTrainError)
 			MinTrainError=TrainError;
 	}
+	/** One epoch of mini-batch training; see {@link NnetBatchTrainer}. */
+	public void TrainNetBatched(int n) throws Exception {
+		FillTrainMatrix();
+		if(BatchTrainer==null)
+			BatchTrainer=new NnetBatchTrainer(Units,NUM_LAYERS,BATCH);
+		Max_Err=BatchTrainer.epoch(Net,TrainData,N_Traindata);
+		TrainError=Max_Err;
+		fpt2o.write(n+","+Max_Err+"\n"); // writing Into EFile the values
+	}
+	
+	/** Parses the training file on first use; later epochs reuse the block. */
 	public void FillTrainMatrix() throws Exception {
-		List<String> lines = Files.readAllLines(Paths.get(traindata.getAbsolutePath()));
-		for (int i = 0; i < Math.min(lines.size(), N_Traindata); i++) {
-			String line = lines.get(i).trim();
-			if (line.isEmpty()) continue;
-
-			String[] tokens = line.split("\\s+");
-
-			if (tokens.length != VECTDIM) {
-				System.err.println("Invalid line at row " + i + ": " + line);
-				continue; // Skip malformed line
-			}
-
-			for (int j = 0; j < VECTDIM; j++) {
-				TrainMatrix[i][j] = Float.parseFloat(tokens[j]);
-			}
-		}
+		if(TrainData==null)
+			TrainData=NnetDataset.load(traindata,N_Traindata,VECTDIM,false);
 	}
 	
 	public void SimulateNet(float Input[], float Output[], float Target[], boolean Training, boolean Optimize, int n) {
@@ -495,24 +541,42 @@ class Sda {
 		}
 	}
 	
+	/**
+	 * Snapshots the current weights as the best so far. A layer whose
+	 * weights were restored shares its saved buffer, so it gets a fresh one.
+	 */
 	public void SaveWeights() {
-		int l,i,j;
-		for(l=1;l<NUM_LAYERS;l++)
-			for(i=1;i<=Net.Layer[l].Units;i++)
-				for(j=1;j<=Net.Layer[l-1].Units;j++)
-					Net.Layer[l].WeightSave[i][j]=Net.Layer[l].Weight[i][j];
+		int l,i;
+		for(l=1;l<NUM_LAYERS;l++) {
+			LAYER layer=Net.Layer[l];
+			if(layer.WeightSave==layer.Weight)
+				layer.WeightSave=new float[layer.Weight.length][layer.Weight[0].length];
+			for(i=1;i<=layer.Units;i++)
+				System.arraycopy(layer.Weight[i],0,layer.WeightSave[i],0,layer.Weight[i].length);
+		}
 	}
 	
+	/**
+	 * Makes the saved weights current by pointing each layer at its saved
+	 * buffer rather than copying it. Nothing trains after a restore, and
+	 * {@link #SaveWeights} separates the buffers again if it ever does.
+	 */
 	public void RestoreWeights() {
-		int l,i,j;
+		int l;
 		for(l=1;l<NUM_LAYERS;l++)
-			for(i=1;i<=Net.Layer[l].Units;i++)
-				for(j=1;j<=Net.Layer[l-1].Units;j++)
-					Net.Layer[l].Weight[i][j]=Net.Layer[l].WeightSave[i][j];
+			Net.Layer[l].Weight=Net.Layer[l].WeightSave;
+	}
+	
+	/** Layer sizes of the layers in use. */
+	int[] LayerUnits() {
+		return Arrays.copyOf(Units,NUM_LAYERS);
 	}
 	
 	public void WriteWeights() throws Exception {
 		int l,i,j;
+		NnetSnapshot.writeWeights(Paths.get(serverpath+"nnet_sia/WFile.bin"),LayerUnits(),Net.Layer);
+		if(!TEXT_WEIGHTS)
+			return;
 		for(l=1;l<NUM_LAYERS;l++) {
 			fpt5o.write("Weights from ["+l+"] layer to ["+(l+1)+"] layer\n"); // Writing to WtFile 
 			for(i=1;i<=Net.Layer[l].Units;i++) {
@@ -534,18 +598,25 @@ class Sda {
 		temp1=new float[VECTDIM];
 		temp2=new float[FLAGS];
 		for(int i=0;i<N_Traindata;i++) {
-			for(a=0;a<VECTDIM;a++){
-				temp1[a]=TrainMatrix[i][a];
-			}
-			for(a=FEATURES;a<VECTDIM;a++){
-				temp2[a-FEATURES]=TrainMatrix[i][a];
-			}
+			TrainData.copyRow(i,temp1);
+			TrainData.copyTail(i,FEATURES,temp2);
 			SimulateNet(temp1,Output,temp2,false,false,0);
 			Max_Err=Math.max(Max_Err,Net.Error);
 		}
 	}
 	
+	/** Reads WFile.bin if the run left one, and the text WFile.txt otherwise. */
 	public void ReadWeights() throws Exception {
+    Path binary = Paths.get(serverpath + "nnet_sia/WFile.bin");
+    if (Files.exists(binary)) {
+        float[][] weights = NnetSnapshot.readWeights(binary, LayerUnits());
+        for (int l = 1; l < NUM_LAYERS; l++) {
+            int width = Net.Layer[l - 1].Units;
+            for (int i = 1; i <= Net.Layer[l].Units; i++)
+                System.arraycopy(weights[l], (i - 1) * width, Net.Layer[l].WeightSave[i], 1, width);
+        }
+        return;
+    }
     List<String> lines = Files.readAllLines(Paths.get(serverpath + "nnet_sia/WFile.txt"));
     List<Float> weights = new ArrayList<>();
     for (String line : lines) {
@@ -579,16 +650,8 @@ class Sda {
 		temp1=new float[VECTDIM];
 		temp2=new float[FLAGS];
 		for(int i=0;i<N_Testdata;i++) {
-			if (TestMatrix[i] == null || TestMatrix[i].length < VECTDIM) {
-				System.err.println("Skipping row " + i + " due to size mismatch");
-				continue;
-			}
-			for(a=0;a<VECTDIM;a++){
-				temp1[a]=TestMatrix[i][a];
-			}
-			for(a=FEATURES;a<VECTDIM;a++){
-				temp2[a-FEATURES]=TestMatrix[i][a];
-			}
+			TestData.copyRow(i,temp1);
+			TestData.copyTail(i,FEATURES,temp2);
 			SimulateNet(temp1,Output,temp2,false,false,0);
 			// Log input -> output to results.txt
 			if (this.fpt1o != null) {
@@ -612,34 +675,26 @@ class Sda {
 		}
 	}
 	
-	public void FillTestVector() throws Exception {
-		int row = 0;
-
-		// Read all lines from the testdata file
-		List<String> lines = Files.readAllLines(Paths.get(testdata.getAbsolutePath()));
-
-		for (int i = 0; i < Math.min(lines.size(), N_Testdata); i++) {
-			String line = lines.get(i).trim();
-			if (line.isEmpty()) continue;
-
-			String[] tokens = line.split("\\s+");
-			if (tokens.length != VECTDIM) {
-				System.err.println("Invalid line in testdata at row " + i + ": " + line);
-				continue; // skip malformed lines
+	/** Closes whichever output files are still open; closing one again does nothing. */
+	public void CloseFiles() {
+		for(FileWriter writer : new FileWriter[] { fpt1o, fpt2o, fpt3o, fpt5o }) {
+			if(writer==null)
+				continue;
+			try {
+				writer.close();
 			}
-
-			for (int j = 0; j < VECTDIM; j++) {
-				try {
-					TestMatrix[row][j] = Float.parseFloat(tokens[j]);
-				} catch (ArrayIndexOutOfBoundsException e) {
-					System.err.println("Skipping invalid row (index mismatch): " + Arrays.toString(tokens));
-					continue;
-				}
+			catch(IOException e) {
+				System.err.println(" Error closing output file: "+e.getMessage());
 			}
-			row++;
 		}
 	}
 
+	/** Well-formed test rows are packed to the front, as before. */
+	public void FillTestVector() throws Exception {
+		if(TestData==null)
+			TestData=NnetDataset.load(testdata,N_Testdata,VECTDIM,true);
+	}
+
 	
 }
 /*	public void Optimize_Options() throws Exception {
@@ -2,15 +2,13 @@ package com.simulation.corrosion.service;
 
 import com.simulation.corrosion.dto.NeuralNetworkRequestDTO;
 import com.simulation.corrosion.dto.NeuralNetworkResponseDTO;
+import com.simulation.legacy.sim.NnetModel;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
-import org.mockito.InjectMocks;
-import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -19,11 +17,14 @@ import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@ExtendWith(MockitoExtension.class)
 class NeuralNetworkServiceTest {
 
-    @InjectMocks
+    // A 1-2-1 network, one weight per line as Sda writes WFile.txt
+    private static final List<String> WEIGHTS = Arrays.asList("1.0", "-1.0", "2.0", "0.5");
+    private static final List<String> OTHER_WEIGHTS = Arrays.asList("-3.0", "0.25", "1.5", "-2.0");
+
     private NeuralNetworkService neuralNetworkService;
+    private NeuralNetworkModelRegistry registry;
 
     @TempDir
     Path tempDir;
@@ -38,6 +39,8 @@ class NeuralNetworkServiceTest {
         Files.createDirectories(uploadDir);
         Files.createDirectories(outputDir);
 
+        registry = new NeuralNetworkModelRegistry(2);
+        neuralNetworkService = new NeuralNetworkService(null, null, registry);
         ReflectionTestUtils.setField(neuralNetworkService, "uploadPath", uploadDir.toString());
         ReflectionTestUtils.setField(neuralNetworkService, "outputPath", outputDir.toString());
     }
@@ -62,7 +65,7 @@ class NeuralNetworkServiceTest {
         Files.write(eFile, lines);
 
         NeuralNetworkResponseDTO response = new NeuralNetworkResponseDTO();
-        neuralNetworkService.parseTrainingMetrics(response);
+        neuralNetworkService.parseTrainingMetrics(response, outputDir);
 
         assertNotNull(response.getTrainingResults());
         assertEquals(3, response.getTrainingResults().get("iterations"));
@@ -70,39 +73,163 @@ class NeuralNetworkServiceTest {
     }
 
     @Test
-    void testParseTestResults() throws Exception {
-        // Create dummy results.txt and testdata.txt
-        Path resultsFile = outputDir.resolve("results.txt");
-        // Format: Input: ... => Output: ...
-        List<String> resultLines = Arrays.asList(
-                "Input: 0.1 \t => Output: 0.85 ",
-                "Input: 0.2 \t => Output: 0.95 ");
-        Files.write(resultsFile, resultLines);
-
-        Path testDataFile = uploadDir.resolve("testdata.txt");
-        // Format: Input Target (assuming 1 in, 1 out for simplicity in this test)
-        // Service expects space separated
-        List<String> dataLines = Arrays.asList(
-                "0.1 0.80",
-                "0.2 0.90");
-        Files.write(testDataFile, dataLines);
+    void testNetworkLoadsPublishedWeightsOnce() throws Exception {
+        Files.write(outputDir.resolve("WFile.txt"), WEIGHTS);
+        Files.write(uploadDir.resolve("testdata.txt"), Arrays.asList("0.1 0.8", "0.2 0.9"));
+
+        NeuralNetworkResponseDTO first = neuralNetworkService.testNetwork(request(10), null);
+        assertTrue(first.isSuccess(), first.getError());
+        assertNotNull(first.getModelId());
+        assertEquals(1, registry.size());
+
+        // The cached model is the latest for its topology, so the file is not read again
+        Files.delete(outputDir.resolve("WFile.txt"));
+        NeuralNetworkResponseDTO second = neuralNetworkService.testNetwork(request(10), null);
+        assertTrue(second.isSuccess(), second.getError());
+        assertEquals(first.getModelId(), second.getModelId());
+        assertEquals(first.getPredictions(), second.getPredictions());
+    }
 
-        NeuralNetworkRequestDTO request = new NeuralNetworkRequestDTO();
-        request.setInNodes("1");
-        request.setOutNodes("1");
+    @Test
+    void testNetworkUsesTheRequestedModel() throws Exception {
+        NnetModel model = model(WEIGHTS);
+        NeuralNetworkModelRegistry.Topology topology = new NeuralNetworkModelRegistry.Topology(model.units());
+        String older = registry.register(topology, model).id();
+        registry.register(topology, model(OTHER_WEIGHTS));
+        Files.write(uploadDir.resolve("testdata.txt"), Arrays.asList("0.4 0.5"));
+
+        NeuralNetworkRequestDTO request = request(10);
+        request.setModelId(older);
+        NeuralNetworkResponseDTO response = neuralNetworkService.testNetwork(request, null);
+
+        assertTrue(response.isSuccess(), response.getError());
+        assertEquals(older, response.getModelId());
+        assertEquals(model.predict(new float[] { 0.4f })[0],
+                (Double) response.getPredictions().get(0).get("predicted"), 1e-6);
+    }
 
-        NeuralNetworkResponseDTO response = new NeuralNetworkResponseDTO();
+    @Test
+    void testNetworkRejectsAnUnknownModel() throws Exception {
+        Files.write(outputDir.resolve("WFile.txt"), WEIGHTS);
+        Files.write(uploadDir.resolve("testdata.txt"), Arrays.asList("0.4 0.5"));
+
+        NeuralNetworkRequestDTO request = request(10);
+        request.setModelId("no-such-run");
+        NeuralNetworkResponseDTO response = neuralNetworkService.testNetwork(request, null);
+
+        assertFalse(response.isSuccess());
+        assertTrue(response.getError().startsWith("Unknown model no-such-run"), response.getError());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void testNetworkWithoutWeightsFails() throws Exception {
+        Files.write(uploadDir.resolve("testdata.txt"), Arrays.asList("0.4 0.5"));
+
+        NeuralNetworkResponseDTO response = neuralNetworkService.testNetwork(request(10), null);
+
+        assertFalse(response.isSuccess());
+        assertEquals("No trained network available; train one first", response.getError());
+    }
+
+    @Test
+    void testNetworkPicksRowsAsTheLegacyTestMode() throws Exception {
+        Files.write(outputDir.resolve("WFile.txt"), WEIGHTS);
+        // The header and the malformed lines count towards the row limit but are not tested
+        Files.write(uploadDir.resolve("testdata.txt"), Arrays.asList(
+                "1 1",
+                "0.1 0.2",
+                "not a row",
+                "0.3",
+                "0.5 0.6 0.7",
+                "0.8 0.9",
+                "0.4 0.5"));
+
+        NeuralNetworkResponseDTO response = neuralNetworkService.testNetwork(request(6), null);
+
+        assertTrue(response.isSuccess(), response.getError());
+        NnetModel model = model(WEIGHTS);
+        List<Map<String, Object>> predictions = response.getPredictions();
+        assertEquals(2, predictions.size());
+        assertPrediction(model, 0.1f, 0.2, predictions.get(0));
+        assertPrediction(model, 0.8f, 0.9, predictions.get(1));
+
+        double e0 = (double) model.predict(new float[] { 0.1f })[0] - 0.2f;
+        double e1 = (double) model.predict(new float[] { 0.8f })[0] - 0.9f;
+        assertEquals((e0 * e0 + e1 * e1) / 2, (Double) response.getTestingResults().get("loss"), 1e-9);
+        assertEquals((Math.abs(e0) + Math.abs(e1)) / 2, (Double) response.getErrorAnalysis().get("mae"), 1e-9);
+    }
 
-        neuralNetworkService.parseTestResults(response, request, "testdata.txt");
+    @Test
+    void testNetworkCleansAndKeepsAnUpload() throws Exception {
+        Files.write(outputDir.resolve("WFile.txt"), WEIGHTS);
+        // No header, and one short row that is padded with a zero target
+        MockMultipartFile upload = new MockMultipartFile("testFile", "mine.txt", "text/plain",
+                "0.1 0.2\n\n0.3\n".getBytes());
 
-        assertNotNull(response.getTestingResults());
-        assertNotNull(response.getPredictions());
+        NeuralNetworkResponseDTO response = neuralNetworkService.testNetwork(request(10), upload);
+
+        assertTrue(response.isSuccess(), response.getError());
+        assertEquals(Arrays.asList("1 1", "0.1 0.2", "0.3 0"), Files.readAllLines(uploadDir.resolve("testdata.txt")));
         assertEquals(2, response.getPredictions().size());
+        assertEquals(0.0, (Double) response.getPredictions().get(1).get("actual"), 0);
+    }
+
+    @Test
+    void registryEvictsTheLeastRecentlyUsedModel() throws Exception {
+        NnetModel model = model(WEIGHTS);
+        NeuralNetworkModelRegistry.Topology topology = new NeuralNetworkModelRegistry.Topology(model.units());
+        String a = registry.register(topology, model).id();
+        String b = registry.register(topology, model).id();
+        assertSame(model, registry.get(topology, a));
+
+        String c = registry.register(topology, model).id();
+
+        assertEquals(2, registry.size());
+        assertNotNull(registry.get(topology, a));
+        assertNull(registry.get(topology, b));
+        assertEquals(c, registry.latest(topology).id());
+    }
+
+    @Test
+    void registryLatestIsPerTopologyAndGoneOnceEvicted() throws Exception {
+        NnetModel model = model(WEIGHTS);
+        NeuralNetworkModelRegistry.Topology small = new NeuralNetworkModelRegistry.Topology(model.units());
+        NeuralNetworkModelRegistry.Topology large = new NeuralNetworkModelRegistry.Topology(new int[] { 3, 4, 1 });
+        assertNull(registry.latest(small));
+
+        String first = registry.register(small, model).id();
+        String second = registry.register(large, model).id();
+        assertEquals(first, registry.latest(small).id());
+        assertEquals(second, registry.latest(large).id());
+        assertNull(registry.get(large, first));
+
+        // Two more runs of the large topology push the small one's only model out
+        registry.register(large, model);
+        String fourth = registry.register(large, model).id();
+        assertNull(registry.latest(small));
+        assertEquals(fourth, registry.latest(large).id());
+    }
 
-        // Check first prediction error: 0.85 - 0.80 = 0.05
-        Map<String, Object> pred1 = response.getPredictions().get(0);
-        assertEquals(0.85, (Double) pred1.get("predicted"), 0.001);
-        assertEquals(0.80, (Double) pred1.get("actual"), 0.001);
-        assertEquals(0.05, (Double) pred1.get("error"), 0.001);
+    private NnetModel model(List<String> weights) throws Exception {
+        Path file = Files.write(Files.createTempFile(tempDir, "weights", ".txt"), weights);
+        return NnetModel.load(file, NnetModel.topology(1, 2, 1, 3));
+    }
+
+    private static void assertPrediction(NnetModel model, float input, double actual, Map<String, Object> prediction) {
+        assertEquals(model.predict(new float[] { input })[0], (Double) prediction.get("predicted"), 1e-6);
+        assertEquals(actual, (Double) prediction.get("actual"), 1e-6);
+    }
+
+    private static NeuralNetworkRequestDTO request(int testRows) {
+        NeuralNetworkRequestDTO request = new NeuralNetworkRequestDTO();
+        request.setInNodes("1");
+        request.setOutNodes("1");
+        request.setNoLayers("3");
+        request.setNoFirstLayer("2");
+        request.setNoSecLayer("2");
+        request.setNoTrainData("10");
+        request.setNoTestData(String.valueOf(testRows));
+        return request;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+package com.simulation.corrosion.service;
+
+import com.simulation.corrosion.dto.NeuralNetworkSweepCandidateDTO;
+import com.simulation.corrosion.dto.NeuralNetworkSweepDTO;
+import com.simulation.corrosion.dto.NeuralNetworkSweepRequestDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NeuralNetworkSweepServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ForkJoinPool pool;
+    private ExecutorService streams;
+    private NeuralNetworkSweepService sweepService;
+    private Path workDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = new ForkJoinPool(1);
+        streams = Executors.newVirtualThreadPerTaskExecutor();
+        sweepService = new NeuralNetworkSweepService(pool, streams);
+        Path uploadDir = tempDir.resolve("upload");
+        workDir = tempDir.resolve("work");
+        Files.createDirectories(uploadDir);
+        ReflectionTestUtils.setField(sweepService, "uploadPath", uploadDir.toString());
+        ReflectionTestUtils.setField(sweepService, "workPath", workDir.toString());
+        ReflectionTestUtils.setField(sweepService, "maxActive", 1);
+
+        Random random = new Random(5);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            float x = random.nextFloat(), y = random.nextFloat();
+            rows.add(x + " " + y + " " + (0.2f + 0.5f * x * y));
+        }
+        Files.write(uploadDir.resolve("traindata.txt"), rows);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        streams.shutdownNow();
+    }
+
+    private static NeuralNetworkSweepRequestDTO request(List<Double> etas) {
+        NeuralNetworkSweepRequestDTO request = new NeuralNetworkSweepRequestDTO();
+        request.setInNodes(2);
+        request.setOutNodes(1);
+        request.setNoTrainData(50);
+        request.setHiddenNodes(List.of(4));
+        request.setEpochs(List.of(30));
+        request.setEtas(etas);
+        return request;
+    }
+
+    /** Keeps the pool's only worker busy until the returned latch is counted down. */
+    private CountDownLatch blockPool() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        return release;
+    }
+
+    private void awaitDone(NeuralNetworkSweepJob sweep) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        // The sweep's slot is freed, then its directory deleted, just after its last candidate
+        while (!sweep.isFinished() || Files.exists(workDir.resolve("sweep-" + sweep.getId()))) {
+            assertTrue(System.currentTimeMillis() < deadline, "sweep did not finish");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void sweepsBeyondTheActiveLimitAreRejected() throws Exception {
+        CountDownLatch release = blockPool();
+        NeuralNetworkSweepJob first = sweepService.submit(request(List.of(0.5)));
+
+        assertThrows(RejectedExecutionException.class, () -> sweepService.submit(request(List.of(0.5))));
+        assertNull(sweepService.getSweep("unknown"));
+        try (Stream<Path> dirs = Files.list(workDir)) {
+            assertEquals(1, dirs.count(), "a rejected sweep must not leave a directory behind");
+        }
+
+        release.countDown();
+        awaitDone(first);
+        NeuralNetworkSweepJob next = sweepService.submit(request(List.of(0.5)));
+        awaitDone(next);
+        assertEquals(NeuralNetworkSweepJob.Status.COMPLETED, next.getStatus());
+    }
+
+    @Test
+    void cancelledSweepSkipsItsQueuedCandidates() throws Exception {
+        CountDownLatch release = blockPool();
+        NeuralNetworkSweepJob sweep = sweepService.submit(request(List.of(0.2, 0.5)));
+
+        assertTrue(sweepService.cancel(sweep.getId()));
+        release.countDown();
+        awaitDone(sweep);
+
+        NeuralNetworkSweepDTO dto = sweep.toDTO();
+        assertEquals("cancelled", dto.getStatus());
+        assertEquals(2, dto.getFinishedCandidates());
+        for (NeuralNetworkSweepCandidateDTO c : dto.getLeaderboard()) {
+            assertEquals("cancelled", c.getStatus());
+            assertEquals(0, c.getEpochsRun());
+            assertNull(c.getRank());
+        }
+        assertFalse(sweepService.cancel(sweep.getId()), "a finished sweep cannot be cancelled");
+        // The cancelled sweep no longer counts towards the limit
+        awaitDone(sweepService.submit(request(List.of(0.5))));
+    }
+
+    @Test
+    void leaderboardRanksCompletedCandidatesByBestError() throws Exception {
+        NeuralNetworkSweepJob sweep = sweepService.submit(request(List.of(0.05, 0.3, 0.9)));
+        awaitDone(sweep);
+
+        NeuralNetworkSweepDTO dto = sweep.toDTO();
+        assertEquals("completed", dto.getStatus());
+        assertEquals(3, dto.getFinishedCandidates());
+        List<NeuralNetworkSweepCandidateDTO> board = dto.getLeaderboard();
+        assertEquals(3, board.size());
+        for (int i = 0; i < board.size(); i++) {
+            NeuralNetworkSweepCandidateDTO c = board.get(i);
+            assertEquals("completed", c.getStatus());
+            assertEquals(i + 1, c.getRank());
+            assertTrue(c.getEpochsRun() > 0);
+            assertNotNull(c.getBestError());
+            if (i > 0) {
+                assertTrue(board.get(i - 1).getBestError() <= c.getBestError(), "board out of order at " + i);
+            }
+        }
+    }
+}
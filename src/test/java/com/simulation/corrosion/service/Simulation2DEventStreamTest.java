@@ -0,0 +1,128 @@
+package com.simulation.corrosion.service;
+
+import com.simulation.corrosion.dto.Simulation2DIterationDTO;
+import com.simulation.corrosion.dto.Simulation2DJobDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Simulation2DEventStreamTest {
+
+    /** Records what would be written to an NDJSON response. */
+    private static class RecordingEmitter extends ResponseBodyEmitter {
+        final List<Object> sent = new ArrayList<>();
+        final List<MediaType> types = new ArrayList<>();
+
+        @Override
+        public synchronized void send(Object object, MediaType mediaType) {
+            sent.add(object);
+            types.add(mediaType);
+        }
+    }
+
+    /** Records the text of each Server-Sent Event, with the event objects standing in for their JSON. */
+    private static class RecordingSseEmitter extends SseEmitter {
+        final List<String> frames = new ArrayList<>();
+        final List<Object> sent = new ArrayList<>();
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) {
+            StringBuilder frame = new StringBuilder();
+            for (DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof String text) {
+                    frame.append(text);
+                } else {
+                    sent.add(part.getData());
+                    assertEquals(MediaType.APPLICATION_JSON, part.getMediaType());
+                    frame.append("{json}");
+                }
+            }
+            frames.add(frame.toString());
+        }
+    }
+
+    private static Simulation2DIterationDTO iteration(int n) {
+        Simulation2DIterationDTO event = new Simulation2DIterationDTO();
+        event.setJobId("job");
+        event.setIteration(n);
+        event.setTotalIterations(10);
+        event.setFrame(new int[][] {{n}});
+        return event;
+    }
+
+    private static Simulation2DJobDTO status() {
+        Simulation2DJobDTO status = new Simulation2DJobDTO();
+        status.setJobId("job");
+        status.setStatus("completed");
+        return status;
+    }
+
+    @Test
+    void slowClientLosesTheOldestIterationsButAlwaysGetsTheStatus() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        Simulation2DEventStream stream = new Simulation2DEventStream(emitter, true, 4);
+        // Nothing is drained until the whole run has been offered
+        for (int n = 1; n <= 10; n++) {
+            stream.offer(iteration(n));
+        }
+        Simulation2DJobDTO status = status();
+        stream.finish(status);
+        stream.offer(iteration(11));
+
+        stream.run();
+
+        List<Object> events = emitter.sent.stream().filter(e -> !"\n".equals(e)).toList();
+        assertEquals(4, events.size());
+        for (int i = 0; i < 3; i++) {
+            Simulation2DIterationDTO event = (Simulation2DIterationDTO) events.get(i);
+            assertEquals(8 + i, event.getIteration(), "only the newest iterations are kept");
+            assertEquals(7, event.getDropped());
+            assertArrayEquals(new int[][] {{8 + i}}, event.getFrame());
+        }
+        assertSame(status, events.get(3));
+        assertTrue(stream.isClosed());
+    }
+
+    @Test
+    void ndjsonWritesOneJsonObjectPerLine() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        Simulation2DEventStream stream = new Simulation2DEventStream(emitter, false, 4);
+        stream.offer(iteration(1));
+        stream.finish(status());
+
+        stream.run();
+
+        assertEquals(4, emitter.sent.size());
+        assertInstanceOf(Simulation2DIterationDTO.class, emitter.sent.get(0));
+        assertNull(((Simulation2DIterationDTO) emitter.sent.get(0)).getFrame(), "frames were not asked for");
+        assertEquals("\n", emitter.sent.get(1));
+        assertInstanceOf(Simulation2DJobDTO.class, emitter.sent.get(2));
+        assertEquals("\n", emitter.sent.get(3));
+        assertEquals(List.of(MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN,
+                MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN), emitter.types);
+    }
+
+    @Test
+    void sseNamesIterationAndStatusEvents() {
+        RecordingSseEmitter emitter = new RecordingSseEmitter();
+        Simulation2DEventStream stream = new Simulation2DEventStream(emitter, false, 4);
+        stream.offer(iteration(1));
+        stream.offer(iteration(2));
+        stream.finish(status());
+
+        stream.run();
+
+        assertEquals(List.of(
+                "event:iteration\ndata:{json}\n\n",
+                "event:iteration\ndata:{json}\n\n",
+                "event:status\ndata:{json}\n\n"), emitter.frames);
+        assertEquals(2, ((Simulation2DIterationDTO) emitter.sent.get(1)).getIteration());
+        assertInstanceOf(Simulation2DJobDTO.class, emitter.sent.get(2));
+    }
+}
@@ -0,0 +1,185 @@
+package com.simulation.corrosion.service;
+
+import com.simulation.corrosion.dto.Simulation2DRequestDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Simulation2DServiceTest {
+
+    private ThreadPoolExecutor jobs;
+    private ForkJoinPool steps;
+    private ExecutorService io;
+    private Simulation2DService service;
+    /** Output path relative to user.dir, as the service resolves it. */
+    private String outputPath;
+
+    @BeforeEach
+    void setUp() {
+        // One job at a time and one queued, as a small simulationExecutor bean would be
+        jobs = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        steps = new ForkJoinPool(2);
+        io = Executors.newVirtualThreadPerTaskExecutor();
+        service = new Simulation2DService(jobs, steps, io);
+        outputPath = "target/sim2d-test/" + UUID.randomUUID() + "/";
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        jobs.shutdownNow();
+        steps.shutdownNow();
+        io.shutdownNow();
+        Path output = Paths.get(System.getProperty("user.dir"), outputPath);
+        if (Files.exists(output)) {
+            try (Stream<Path> files = Files.walk(output)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private Simulation2DRequestDTO request(int size, int iterations) {
+        Simulation2DRequestDTO request = new Simulation2DRequestDTO();
+        request.setNoRows(size);
+        request.setNoColumns(size);
+        request.setParam1(0.5);
+        request.setParam2(0.3);
+        request.setParam3(0.2);
+        request.setParam4(0.1);
+        request.setConstant(1.0);
+        request.setStressFact(1);
+        request.setNoIterations(iterations);
+        request.setNumPits(1);
+        request.setPitSize(2);
+        request.setSeed(11L);
+        request.setPath(outputPath);
+        return request;
+    }
+
+    /** Keeps the job executor's only thread busy until the returned latch is counted down. */
+    private CountDownLatch blockJobs() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        jobs.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static void awaitFinished(Simulation2DJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (!job.isFinished()) {
+            assertTrue(System.nanoTime() < deadline, "job did not finish");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void completedJobWritesItsOutputs() throws Exception {
+        Simulation2DJob job = service.submit(request(24, 3));
+        awaitFinished(job);
+
+        assertEquals(Simulation2DJob.Status.COMPLETED, job.getStatus(), job.toDTO().getMessage());
+        assertEquals(3, job.getIteration());
+        assertTrue(job.getResult().isSuccess());
+        assertEquals(3, job.getResult().getStats().get("iterations"));
+        Path outputDir = Paths.get(System.getProperty("user.dir"), outputPath, job.getId());
+        // A header line and one per iteration
+        assertEquals(4, Files.readAllLines(outputDir.resolve("Features.txt")).size());
+        assertTrue(Files.size(outputDir.resolve("result.png")) > 0);
+        assertTrue(Files.exists(outputDir.resolve("Others.txt")));
+    }
+
+    @Test
+    void queuedJobCancelledBeforeItStartsNeverRuns() throws Exception {
+        CountDownLatch release = blockJobs();
+        Simulation2DJob job = service.submit(request(24, 3));
+
+        assertTrue(service.cancel(job.getId()));
+        assertEquals(Simulation2DJob.Status.CANCELLED, job.getStatus());
+        release.countDown();
+
+        jobs.shutdown();
+        assertTrue(jobs.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(Simulation2DJob.Status.CANCELLED, job.getStatus());
+        assertEquals(0, job.getIteration());
+        assertFalse(service.cancel(job.getId()), "a finished job cannot be cancelled again");
+    }
+
+    @Test
+    void runningJobStopsAtTheNextIterationWhenCancelled() throws Exception {
+        Simulation2DJob job = service.submit(request(200, 100000));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (job.getIteration() == 0) {
+            assertTrue(System.nanoTime() < deadline, "job did not start");
+            Thread.sleep(5);
+        }
+
+        assertTrue(service.cancel(job.getId()));
+        awaitFinished(job);
+
+        assertEquals(Simulation2DJob.Status.CANCELLED, job.getStatus());
+        assertTrue(job.getIteration() < 100000);
+        assertNull(job.getResult());
+    }
+
+    @Test
+    void jobIsRejectedWhenTheQueueIsFull() throws Exception {
+        CountDownLatch release = blockJobs();
+        try {
+            Simulation2DJob queued = service.submit(request(24, 3));
+
+            assertThrows(RejectedExecutionException.class, () -> service.submit(request(24, 3)));
+            Map<?, ?> held = (Map<?, ?>) ReflectionTestUtils.getField(service, "jobs");
+            assertEquals(1, held.size(), "a rejected job is not kept");
+            assertSame(queued, service.getJob(queued.getId()));
+            service.cancel(queued.getId());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void failedJobKeepsItsCause() throws Exception {
+        Path blocker = Paths.get(System.getProperty("user.dir"), outputPath);
+        Files.createDirectories(blocker);
+        // The job's output directory would have to go inside a plain file
+        Files.createFile(blocker.resolve("file"));
+        Simulation2DRequestDTO request = request(24, 3);
+        request.setPath(outputPath + "file/");
+
+        Simulation2DJob job = service.submit(request);
+        awaitFinished(job);
+
+        assertEquals(Simulation2DJob.Status.FAILED, job.getStatus());
+        assertInstanceOf(IOException.class, job.getFailure());
+        assertTrue(job.toDTO().getMessage().startsWith("Simulation failed: "));
+    }
+}
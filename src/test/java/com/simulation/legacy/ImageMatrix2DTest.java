@@ -0,0 +1,67 @@
+package com.simulation.legacy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageMatrix2DTest {
+
+    private static final int SIZE = 48;
+
+    private static ImageMatrix2D seededRun(GridBackend backend, ForkJoinPool pool, long seed) {
+        return seededRun(backend, pool, seed, false);
+    }
+
+    private static ImageMatrix2D seededRun(GridBackend backend, ForkJoinPool pool, long seed, boolean sparse) {
+        ImageMatrix2D m = new ImageMatrix2D(SIZE, SIZE, 1, 4, "", 3.5, 280, 0.5, 0.2, backend);
+        m.setStepPool(pool);
+        m.setSeed(seed);
+        m.setSparseStepping(sparse);
+        for (int step = 0; step < 20; step++) {
+            m.simulate(3.5, 0.5, 280, 0.2, 0.5, 3, 0, 1, step);
+        }
+        return m;
+    }
+
+    private static void assertSameLattice(ImageMatrix2D expected, ImageMatrix2D actual) {
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                assertEquals(expected.getPixel(i, j), actual.getPixel(i, j), "cell " + i + "," + j);
+            }
+        }
+    }
+
+    @Test
+    void seededRunIsIdenticalAcrossBackendsAndThreadCounts() {
+        ImageMatrix2D reference = seededRun(GridBackend.JAGGED, null, 42L);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertSameLattice(reference, seededRun(GridBackend.FLAT, null, 42L));
+            assertSameLattice(reference, seededRun(GridBackend.JAGGED, pool, 42L));
+            assertSameLattice(reference, seededRun(GridBackend.FLAT, pool, 42L));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(reference.stat2D(), seededRun(GridBackend.FLAT, null, 42L).stat2D());
+    }
+
+    @Test
+    void sparseSteppingIsReproducibleAcrossThreadCounts() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ImageMatrix2D sequential = seededRun(GridBackend.FLAT, null, 9L, true);
+            assertSameLattice(sequential, seededRun(GridBackend.JAGGED, pool, 9L, true));
+            assertTrue(sequential.getActiveTileCount() > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void differentSeedsDiverge() {
+        assertNotEquals(seededRun(GridBackend.FLAT, null, 1L).stat2D(),
+                seededRun(GridBackend.FLAT, null, 2L).stat2D());
+    }
+}
@@ -0,0 +1,54 @@
+package com.simulation.legacy.nsfisdas;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BPKernelTest {
+
+    private static final float TOLERANCE = 1e-5f;
+
+    @Test
+    void vectorKernelMatchesScalarWithinFloatTolerance() {
+        // surefire adds the module; without it this would quietly compare nothing
+        assertTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "jdk.incubator.vector must be added to the test JVM");
+        BPKernel vector = new BPVectorKernel();
+        assertTrue(vector.name().startsWith("vector-"), vector.name());
+
+        BPKernel scalar = new BPKernel.Scalar();
+        Random random = new Random(7);
+        // Small layers take the scalar tails, larger ones each vector width the CPU has
+        int[] sizes = {1, 3, 7, 8, 10, 15, 16, 31, 32, 40, 64};
+        for (int inputs : sizes) {
+            for (int units : sizes) {
+                float[][] weight = new float[units + 1][inputs + 1];
+                float[] input = new float[inputs + 1];
+                input[0] = 1; // the bias
+                for (int j = 1; j <= inputs; j++) {
+                    input[j] = random.nextFloat();
+                }
+                for (int i = 1; i <= units; i++) {
+                    for (int j = 0; j <= inputs; j++) {
+                        weight[i][j] = (float) random.nextGaussian() / (float) Math.sqrt(inputs + 1);
+                    }
+                }
+
+                float[] expected = new float[units + 1];
+                float[] actual = new float[units + 1];
+                scalar.propagate(weight, input, inputs, 1.0f, expected, units);
+                vector.propagate(weight, input, inputs, 1.0f, actual, units);
+                for (int i = 1; i <= units; i++) {
+                    assertEquals(expected[i], actual[i], TOLERANCE, inputs + " inputs, " + units + " units, unit " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void scalarKernelIsTheDefault() {
+        assertInstanceOf(BPKernel.Scalar.class, BPKernel.INSTANCE);
+    }
+}
@@ -0,0 +1,63 @@
+package com.simulation.legacy.nsfisdas;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BPNetTest {
+
+    private static final String WEIGHTS = "Equalized-Weights-Identify-PC10-EC-04k";
+
+    private static float[][] features(int count, int width, long seed) {
+        Random random = new Random(seed);
+        float[][] features = new float[count][width];
+        for (float[] row : features) {
+            for (int j = 0; j < width; j++) {
+                row[j] = random.nextFloat();
+            }
+        }
+        return features;
+    }
+
+    private static void assertBatchMatchesTestNet(int count) {
+        BPNet net = new BPNet(WEIGHTS);
+        ModelBundle.Net shape = ModelBundle.net(WEIGHTS);
+        // TestNet reads the targets after the inputs, so give every row room for them
+        float[][] features = features(count, shape.inputs + shape.outputs, count);
+
+        float[][] batch = net.TestBatch(features);
+
+        assertEquals(count, batch.length);
+        float[] output = new float[shape.outputs];
+        for (int n = 0; n < count; n++) {
+            net.TestNet(features[n], output);
+            assertArrayEquals(output, batch[n], "row " + n);
+        }
+    }
+
+    @Test
+    void testBatchMatchesTestNetInOneChunk() {
+        assertBatchMatchesTestNet(37);
+    }
+
+    @Test
+    void testBatchMatchesTestNetAcrossChunks() {
+        // Three parallel chunks of 256 rows, the last one partial
+        assertBatchMatchesTestNet(600);
+    }
+
+    @Test
+    void testBatchOnlyScoresTheFirstCountRows() {
+        BPNet net = new BPNet(WEIGHTS);
+        ModelBundle.Net shape = ModelBundle.net(WEIGHTS);
+        float[][] features = features(300, shape.inputs + shape.outputs, 1);
+        float[][] outputs = new float[300][shape.outputs];
+
+        net.TestBatch(features, outputs, 257);
+
+        assertArrayEquals(net.TestBatch(features)[256], outputs[256]);
+        assertArrayEquals(new float[shape.outputs], outputs[257]);
+    }
+}
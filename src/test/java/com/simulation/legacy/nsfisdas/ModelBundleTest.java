@@ -0,0 +1,87 @@
+package com.simulation.legacy.nsfisdas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelBundleTest {
+
+    private String category;
+    private Path resources;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        category = "Test-" + UUID.randomUUID();
+        // Test classes are on the classpath, so this is where ModelBundle looks too
+        resources = Path.of(ModelBundleTest.class.getResource("/").toURI()).resolve(ModelBundle.RESOURCE_DIR);
+        Files.createDirectories(resources);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ModelBundle.evict(category);
+        Files.deleteIfExists(resources.resolve(ModelBundle.histoName(category)));
+        Files.deleteIfExists(resources.resolve(ModelBundle.bundleName(category)));
+    }
+
+    /** Writes a histogram whose every count is {@code value}, last written at {@code seconds}. */
+    private void writeHistogram(float value, long seconds) throws Exception {
+        Path file = resources.resolve(ModelBundle.histoName(category));
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < 3 * 256; i++) {
+                out.writeFloat(value);
+            }
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(seconds * 1000));
+    }
+
+    private float histogramValue() {
+        float[] r = new float[256], g = new float[256], b = new float[256];
+        ModelBundle.forCategory(category).histogram(r, g, b);
+        return b[255];
+    }
+
+    private void pack(long seconds) throws Exception {
+        Path bundle = resources.resolve(ModelBundle.bundleName(category));
+        ModelBundle.pack(category, bundle);
+        Files.setLastModifiedTime(bundle, FileTime.fromMillis(seconds * 1000));
+    }
+
+    @Test
+    void bundleIsReadInPlaceOfTheFilesItWasPackedFrom() throws Exception {
+        writeHistogram(1, 1_000);
+        pack(2_000);
+        Files.delete(resources.resolve(ModelBundle.histoName(category)));
+
+        assertEquals(1, histogramValue());
+    }
+
+    @Test
+    void histogramRetrainedAfterPackingWinsOverTheBundle() throws Exception {
+        writeHistogram(1, 1_000);
+        pack(2_000);
+        assertEquals(1, histogramValue());
+
+        writeHistogram(2, 3_000);
+        ModelBundle.evict(category);
+
+        assertEquals(2, histogramValue());
+    }
+
+    @Test
+    void fileOlderThanTheBundleDoesNotOverrideIt() throws Exception {
+        writeHistogram(1, 1_000);
+        pack(2_000);
+        writeHistogram(2, 1_500);
+
+        assertEquals(1, histogramValue());
+    }
+}
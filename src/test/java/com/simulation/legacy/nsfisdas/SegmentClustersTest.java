@@ -0,0 +1,137 @@
+package com.simulation.legacy.nsfisdas;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentClustersTest {
+
+    private static final int PIXELS = 600;
+    private static final int FEATURES = 3;
+    private static final int CLUSTERS = 4;
+
+    /** Overlapping blobs, so that the clusters keep changing for a few iterations. */
+    private static float[][] vectors(long seed) {
+        Random random = new Random(seed);
+        float[][] blobs = {{0, 0, 0}, {3, 0, 1}, {0, 3, 2}, {3, 3, 0}};
+        float[][] vectors = new float[PIXELS][FEATURES];
+        for (int p = 0; p < PIXELS; p++) {
+            float[] blob = blobs[random.nextInt(blobs.length)];
+            for (int k = 0; k < FEATURES; k++) {
+                vectors[p][k] = blob[k] + (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+
+    private static float[][] startingCenters(float[][] vectors) {
+        // Deliberately poor: the first few vectors, wherever they fall
+        float[][] centers = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centers[c] = vectors[c].clone();
+        }
+        return centers;
+    }
+
+    private static float squaredDistance(float[] a, float[] b) {
+        float d = 0;
+        for (int k = 0; k < a.length; k++) {
+            d += (float) Math.pow(a[k] - b[k], 2);
+        }
+        return d;
+    }
+
+    private static int[] nearest(float[][] vectors, float[][] centers) {
+        int[] labels = new int[vectors.length];
+        for (int p = 0; p < vectors.length; p++) {
+            float min = Float.MAX_VALUE;
+            for (int c = 0; c < centers.length; c++) {
+                float d = squaredDistance(centers[c], vectors[p]);
+                if (d < min) {
+                    min = d;
+                    labels[p] = c;
+                }
+            }
+        }
+        return labels;
+    }
+
+    /** Plain Lloyd iterations, every distance computed; an empty cluster keeps its center. */
+    private static int[] lloyd(float[][] vectors, float[][] centers, int iterations, float tolerance) {
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            int[] labels = nearest(vectors, centers);
+            double[][] sums = new double[centers.length][FEATURES];
+            int[] members = new int[centers.length];
+            for (int p = 0; p < vectors.length; p++) {
+                members[labels[p]]++;
+                for (int k = 0; k < FEATURES; k++) {
+                    sums[labels[p]][k] += vectors[p][k];
+                }
+            }
+            float maxShift = 0;
+            for (int c = 0; c < centers.length; c++) {
+                if (members[c] == 0) {
+                    continue;
+                }
+                float[] center = new float[FEATURES];
+                for (int k = 0; k < FEATURES; k++) {
+                    center[k] = (float) (sums[c][k] / members[c]);
+                }
+                maxShift = Math.max(maxShift, (float) Math.sqrt(squaredDistance(centers[c], center)));
+                centers[c] = center;
+            }
+            if (maxShift <= tolerance) {
+                break;
+            }
+        }
+        return nearest(vectors, centers);
+    }
+
+    private static void assertRefineMatchesLloyd(FeatureTensor tensor, float[][] vectors, int iterations) {
+        float[][] expectedCenters = startingCenters(vectors);
+        int[] expected = lloyd(vectors, expectedCenters, iterations, 0);
+        float[][] centers = startingCenters(vectors);
+        int[] before = SegmentClusters.assign(tensor, centers);
+
+        int[] labels = SegmentClusters.refine(tensor, centers, iterations, 0);
+
+        assertArrayEquals(expected, labels);
+        for (int c = 0; c < CLUSTERS; c++) {
+            assertArrayEquals(expectedCenters[c], centers[c], "center " + c);
+        }
+        assertFalse(Arrays.equals(before, labels), "refinement should have moved some vectors");
+    }
+
+    @Test
+    void refineMatchesNaiveLloyd() {
+        float[][] vectors = vectors(11);
+        for (int iterations : new int[] {1, 2, 5, 100}) {
+            assertRefineMatchesLloyd(FeatureTensor.of(vectors), vectors, iterations);
+        }
+    }
+
+    @Test
+    void refineMatchesNaiveLloydOnPlaneMajorFeatures() {
+        float[][] vectors = vectors(12);
+        FeatureTensor tensor = new FeatureTensor(PIXELS, FEATURES, FeatureTensor.Layout.PLANE_MAJOR);
+        for (int p = 0; p < PIXELS; p++) {
+            for (int k = 0; k < FEATURES; k++) {
+                tensor.set(p, k, vectors[p][k]);
+            }
+        }
+        assertRefineMatchesLloyd(tensor, vectors, 100);
+    }
+
+    @Test
+    void noIterationsIsJustTheAssignment() {
+        float[][] vectors = vectors(13);
+        FeatureTensor tensor = FeatureTensor.of(vectors);
+        float[][] centers = startingCenters(vectors);
+
+        assertArrayEquals(nearest(vectors, centers), SegmentClusters.refine(tensor, centers, 0, 0));
+        assertArrayEquals(startingCenters(vectors), centers);
+    }
+}
@@ -0,0 +1,83 @@
+package com.simulation.legacy.nsfisdas;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentFillTest {
+
+    // Labels of a 2x3 map: a 2x2 block of one colour beside a column of another
+    private static final int[][] LABELS = {
+            {5, 5, 9},
+            {5, 5, 9}};
+
+    private static int[][] plane(int offset) {
+        int[][] plane = new int[LABELS.length][];
+        for (int i = 0; i < LABELS.length; i++) {
+            plane[i] = LABELS[i].clone();
+            for (int j = 0; j < plane[i].length; j++) {
+                plane[i][j] += offset;
+            }
+        }
+        return plane;
+    }
+
+    @Test
+    void visitsInStackOrderAndCountsAPixelPushedTwice() {
+        int[][] r = plane(0), g = plane(1), b = plane(2);
+        SegmentFill fill = new SegmentFill();
+
+        int count = fill.fill(r, g, b, 0, 0, 5, 6, 7);
+
+        // (0,0) pushes (1,0) then (0,1); (0,1) pushes (1,1); (1,1) pushes (1,0)
+        // again before the first push of it is popped, so it is visited twice
+        int[] expected = {0, 1, 4, 3, 3};
+        assertEquals(expected.length, count);
+        for (int n = 0; n < count; n++) {
+            assertEquals(expected[n], fill.visit(n), "visit " + n);
+        }
+        int[][][] planes = {r, g, b};
+        for (int k = 0; k < planes.length; k++) {
+            assertArrayEquals(new int[] {-1, -1, 9 + k}, planes[k][0]);
+            assertArrayEquals(new int[] {-1, -1, 9 + k}, planes[k][1]);
+        }
+    }
+
+    @Test
+    void segmentHoldsTheVisitsLastFirstWithTheImageColours() {
+        ImageMatrix image = new ImageMatrix(2, 3);
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 3; j++) {
+                image.setPixelValue(i, j, 10 * i + j, 100 + 10 * i + j, 200 + 10 * i + j);
+            }
+        }
+        SegmentFill fill = new SegmentFill();
+        fill.fill(plane(0), plane(1), plane(2), 0, 0, 5, 6, 7);
+
+        Segment segment = fill.segment(image);
+
+        int[] coords = {3, 3, 4, 1, 0};
+        assertEquals(coords.length, segment.getNumMembers());
+        for (int n = 0; n < coords.length; n++) {
+            int i = coords[n] / 3, j = coords[n] % 3;
+            assertEquals(coords[n], segment.getCoord(n), "member " + n);
+            assertEquals(10 * i + j, segment.getRed(n));
+            assertEquals(100 + 10 * i + j, segment.getGreen(n));
+            assertEquals(200 + 10 * i + j, segment.getBlue(n));
+        }
+        assertEquals(10L + 10 + 11 + 1 + 0, segment.getRedSum());
+    }
+
+    @Test
+    void reusedFillStartsAfresh() {
+        SegmentFill fill = new SegmentFill();
+        int[][] r = plane(0), g = plane(1), b = plane(2);
+        fill.fill(r, g, b, 0, 0, 5, 6, 7);
+
+        int count = fill.fill(r, g, b, 1, 2, 9, 10, 11);
+
+        assertEquals(2, count);
+        assertEquals(5, fill.visit(0));
+        assertEquals(2, fill.visit(1));
+    }
+}
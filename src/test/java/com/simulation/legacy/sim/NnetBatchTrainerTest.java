@@ -0,0 +1,91 @@
+package com.simulation.legacy.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NnetBatchTrainerTest {
+
+    private static final int ROWS = 300;
+
+    @TempDir
+    Path tempDir;
+
+    /** A workspace with {@link #ROWS} rows of a smooth two-input function to learn. */
+    private Path workspace(String name) throws Exception {
+        Path workspace = tempDir.resolve(name);
+        Files.createDirectories(workspace.resolve("upload"));
+        Random random = new Random(3);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            float x = random.nextFloat(), y = random.nextFloat();
+            rows.add(x + "\t" + y + "\t" + (0.2f + 0.3f * x + 0.4f * x * y));
+        }
+        Files.write(workspace.resolve("upload").resolve("traindata.txt"), rows);
+        // Sda opens the test file even when only training
+        Files.createFile(workspace.resolve("upload").resolve("testdata.txt"));
+        return workspace;
+    }
+
+    /** The arguments of a 2-4-1 training run, as the services pass them, ending with {@code tail}. */
+    private static String[] args(Path workspace, String... tail) {
+        List<String> args = new ArrayList<>(List.of("2", "1", "3", "4", "4", String.valueOf(ROWS), "0", "train",
+                workspace.toString() + File.separator));
+        args.addAll(List.of(tail));
+        return args.toArray(new String[0]);
+    }
+
+    private static void assertSameOutputs(Path expected, Path actual) throws Exception {
+        for (String name : new String[] {"EFile.txt", "WFile.txt", "WFile.bin"}) {
+            Path e = expected.resolve("nnet_sia").resolve(name);
+            Path a = actual.resolve("nnet_sia").resolve(name);
+            assertTrue(Files.size(e) > 0, name + " is empty");
+            assertArrayEquals(Files.readAllBytes(e), Files.readAllBytes(a), name);
+        }
+    }
+
+    private static void train(ForkJoinPool pool, String[] args) throws Exception {
+        try {
+            pool.submit(() -> {
+                nnet.runNeuralNetwork(args, null);
+                return null;
+            }).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void batchOfOneReproducesOnlineTraining() throws Exception {
+        Path online = workspace("online");
+        Path batchOfOne = workspace("batch-1");
+
+        // A caller that predates batching passes no batch size at all
+        nnet.runNeuralNetwork(args(online), null);
+        nnet.runNeuralNetwork(args(batchOfOne, "1", "0", "true"), null);
+
+        assertSameOutputs(online, batchOfOne);
+    }
+
+    @Test
+    void batchedTrainingDoesNotDependOnParallelism() throws Exception {
+        Path serial = workspace("serial");
+        Path parallel = workspace("parallel");
+
+        // Batches of 200 and 100 rows, split into four and two chunks
+        train(new ForkJoinPool(1), args(serial, "200", "0", "true", "", "", "40"));
+        train(new ForkJoinPool(4), args(parallel, "200", "0", "true", "", "", "40"));
+
+        assertSameOutputs(serial, parallel);
+        assertEquals(40, Files.readAllLines(serial.resolve("nnet_sia").resolve("EFile.txt")).size());
+    }
+}
@@ -0,0 +1,100 @@
+package com.simulation.legacy.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NnetCheckpointTest {
+
+    private static final int ROWS = 120;
+    private static final int INTERVAL = 4;
+    private static final int KILLED_AT = 6;
+
+    @TempDir
+    Path tempDir;
+
+    /** A workspace holding {@link #ROWS} rows of the same data for every name. */
+    private Path workspace(String name) throws Exception {
+        Path workspace = tempDir.resolve(name);
+        Files.createDirectories(workspace.resolve("upload"));
+        Random random = new Random(7);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            float x = random.nextFloat(), y = random.nextFloat();
+            rows.add(x + "\t" + y + "\t" + (0.1f + 0.6f * x * y));
+        }
+        Files.write(workspace.resolve("upload").resolve("traindata.txt"), rows);
+        // Sda opens the test file even when only training
+        Files.createFile(workspace.resolve("upload").resolve("testdata.txt"));
+        return workspace;
+    }
+
+    private static String[] args(Path workspace, String eta) {
+        return new String[] {"2", "1", "3", "4", "4", String.valueOf(ROWS), "0", "train",
+                workspace.toString() + File.separator, "1", String.valueOf(INTERVAL), "false", eta, "", "40"};
+    }
+
+    /** Trains to the end, returning the first and last epochs it ran. */
+    private static int[] train(Path workspace, String eta) throws Exception {
+        AtomicInteger first = new AtomicInteger(-1);
+        AtomicInteger last = new AtomicInteger(-1);
+        nnet.runNeuralNetwork(args(workspace, eta), (epoch, error) -> {
+            first.compareAndSet(-1, epoch);
+            last.set(epoch);
+        });
+        return new int[] {first.get(), last.get()};
+    }
+
+    /** Starts a run that is killed during epoch {@link #KILLED_AT}, after a checkpoint but before the next. */
+    private static void trainUntilKilled(Path workspace) {
+        IllegalStateException killed = new IllegalStateException("killed");
+        Exception thrown = assertThrows(Exception.class, () ->
+                nnet.runNeuralNetwork(args(workspace, ""), (epoch, error) -> {
+                    if (epoch == KILLED_AT) {
+                        throw killed;
+                    }
+                }));
+        assertSame(killed, thrown);
+        assertTrue(Files.exists(workspace.resolve("nnet_sia").resolve("Checkpoint.bin")));
+    }
+
+    private static byte[] output(Path workspace, String file) throws Exception {
+        return Files.readAllBytes(workspace.resolve("nnet_sia").resolve(file));
+    }
+
+    @Test
+    void runKilledMidwayResumesToTheSameResultAsAnUninterruptedRun() throws Exception {
+        Path solo = workspace("solo");
+        int[] soloEpochs = train(solo, "");
+        assertTrue(soloEpochs[1] > KILLED_AT, "the run must outlast the kill for the test to mean anything");
+
+        Path resumed = workspace("resumed");
+        trainUntilKilled(resumed);
+        int[] resumedEpochs = train(resumed, "");
+
+        assertEquals(INTERVAL, resumedEpochs[0], "resumes at the last checkpoint");
+        assertEquals(soloEpochs[1], resumedEpochs[1], "stops at the same epoch");
+        assertArrayEquals(output(solo, "EFile.txt"), output(resumed, "EFile.txt"));
+        assertArrayEquals(output(solo, "WFile.bin"), output(resumed, "WFile.bin"));
+        assertFalse(Files.exists(resumed.resolve("nnet_sia").resolve("Checkpoint.bin")));
+    }
+
+    @Test
+    void checkpointTakenWithOtherSettingsIsNotResumed() throws Exception {
+        Path workspace = workspace("retuned");
+        trainUntilKilled(workspace);
+
+        int[] epochs = train(workspace, "0.3");
+
+        assertEquals(0, epochs[0]);
+    }
+}
@@ -0,0 +1,155 @@
+package com.simulation.legacy.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NnetConcurrencyTest {
+
+    private static final int ROWS = 120;
+
+    @TempDir
+    Path tempDir;
+
+    /** A workspace holding {@link #ROWS} rows of {@code seed}'s data. */
+    private Path workspace(String name, long seed) throws Exception {
+        Path workspace = tempDir.resolve(name);
+        Files.createDirectories(workspace.resolve("upload"));
+        Random random = new Random(seed);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            float x = random.nextFloat(), y = random.nextFloat();
+            rows.add(x + "\t" + y + "\t" + (0.1f + 0.6f * x * y));
+        }
+        Files.write(workspace.resolve("upload").resolve("traindata.txt"), rows);
+        // Sda opens the test file even when only training
+        Files.createFile(workspace.resolve("upload").resolve("testdata.txt"));
+        return workspace;
+    }
+
+    private static String[] args(Path workspace, String eta) {
+        return new String[] {"2", "1", "3", "4", "4", String.valueOf(ROWS), "0", "train",
+                workspace.toString() + File.separator, "1", "0", "true", eta, "", "60"};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> pathLocks() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(nnet.class, "PATH_LOCKS");
+    }
+
+    @Test
+    void pathLockIsDroppedWhenTheRunEnds() throws Exception {
+        Path workspace = workspace("once", 1);
+        String key = workspace.toAbsolutePath().normalize().toString();
+
+        nnet.runNeuralNetwork(args(workspace, ""), (epoch, error) ->
+                assertTrue(pathLocks().containsKey(key), "the path is locked while its run lasts"));
+
+        assertFalse(pathLocks().containsKey(key));
+        assertTrue(Files.size(workspace.resolve("nnet_sia").resolve("EFile.txt")) > 0);
+    }
+
+    @Test
+    void runsOnOnePathStillTakeTurnsAfterTheLockIsDropped() throws Exception {
+        Path workspace = workspace("shared", 2);
+        String key = workspace.toAbsolutePath().normalize().toString();
+        // The run that most recently started; another run's epoch in between means they overlapped
+        AtomicReference<Thread> current = new AtomicReference<>();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    nnet.runNeuralNetwork(args(workspace, ""), (epoch, error) -> {
+                        if (epoch == 0) {
+                            current.set(Thread.currentThread());
+                        } else if (current.get() != Thread.currentThread()) {
+                            overlapped.set(true);
+                        }
+                    });
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(60000);
+        }
+
+        assertEquals(List.of(), failures);
+        assertFalse(overlapped.get(), "runs on one path overlapped");
+        assertFalse(pathLocks().containsKey(key));
+    }
+
+    private static void assertSameOutputs(Path expected, Path actual) throws Exception {
+        for (String name : new String[] {"EFile.txt", "WFile.txt", "WtFile.txt", "WFile.bin"}) {
+            Path e = expected.resolve("nnet_sia").resolve(name);
+            Path a = actual.resolve("nnet_sia").resolve(name);
+            assertTrue(Files.size(e) > 0, name + " is empty");
+            assertArrayEquals(Files.readAllBytes(e), Files.readAllBytes(a), name);
+        }
+    }
+
+    @Test
+    void concurrentJobsInSeparateWorkspacesMatchSoloRuns() throws Exception {
+        // Different data and learning rates, so that a mix-up would show
+        Path soloA = workspace("solo-a", 3);
+        Path soloB = workspace("solo-b", 4);
+        nnet.runNeuralNetwork(args(soloA, "0.3"), null);
+        nnet.runNeuralNetwork(args(soloB, "0.8"), null);
+
+        Path a = workspace("a", 3);
+        Path b = workspace("b", 4);
+        // Each run waits for the other after its first epoch, so both have their files open at once
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        NnetEpochListener listener = (epoch, error) -> {
+            if (epoch == 0) {
+                bothStarted.countDown();
+                try {
+                    assertTrue(bothStarted.await(30, TimeUnit.SECONDS), "the other run never started");
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        List<Throwable> failures = new ArrayList<>();
+        Thread other = new Thread(() -> {
+            try {
+                nnet.runNeuralNetwork(args(b, "0.8"), listener);
+            } catch (Throwable e) {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+            }
+        });
+        other.start();
+        try {
+            nnet.runNeuralNetwork(args(a, "0.3"), listener);
+        } finally {
+            other.join(60000);
+        }
+
+        assertEquals(List.of(), failures);
+        assertSameOutputs(soloA, a);
+        assertSameOutputs(soloB, b);
+    }
+}